@@ -199,23 +199,23 @@ public class JourneyListActivity extends AppCompatActivity implements OnMapReady
 
         //Now Handle Map - First Add Line
         if (mPrevLine != null)  { mPrevLine.remove(); }
-        mPrevLine = mJourMapM.addPolyline(((JourneyListAdapter)mJourView.getAdapter()).getJourney(position).getPolyLine(5, Color.BLUE));
+        mPrevLine = mJourMapM.addPolyline(Utilities.JourneyPolyLine(((JourneyListAdapter)mJourView.getAdapter()).getJourney(position), 5, Color.BLUE));
 
         //Next Add start/stop markers
         if (mStartM != null)    { mStartM.remove(); }
-        mStartM = mJourMapM.addMarker(new MarkerOptions().position(((JourneyListAdapter)mJourView.getAdapter()).getJourney(position).getPt(0).Point())
+        mStartM = mJourMapM.addMarker(new MarkerOptions().position(Utilities.ToLatLng(((JourneyListAdapter)mJourView.getAdapter()).getJourney(position).getPt(0)))
                 .title("Start")
                 .snippet(((JourneyListAdapter)mJourView.getAdapter()).getJourney(position).toString())
                 .icon(BitmapDescriptorFactory.defaultMarker(BitmapDescriptorFactory.HUE_BLUE)));
 
         if (mEndM != null) { mEndM.remove(); }
-        mEndM = mJourMapM.addMarker(new MarkerOptions().position(((JourneyListAdapter)mJourView.getAdapter()).getJourney(position).getEnd().Point())
+        mEndM = mJourMapM.addMarker(new MarkerOptions().position(Utilities.ToLatLng(((JourneyListAdapter)mJourView.getAdapter()).getJourney(position).getEnd()))
                 .title("End")
                 .snippet(((JourneyListAdapter)mJourView.getAdapter()).getJourney(position).toString())
                 .icon(BitmapDescriptorFactory.defaultMarker(BitmapDescriptorFactory.HUE_RED)));
 
         //Then Zoom in to location
-        mJourMapM.moveCamera(CameraUpdateFactory.newLatLngBounds(((JourneyListAdapter) mJourView.getAdapter()).getJourney(position).getBounds(), 10));
+        mJourMapM.moveCamera(CameraUpdateFactory.newLatLngBounds(Utilities.JourneyBounds(((JourneyListAdapter) mJourView.getAdapter()).getJourney(position)), 10));
     }
 
     /**
@@ -102,8 +102,8 @@ public class JourneyListAdapter extends ArrayAdapter<Journey>
         {
             mItem = item;
 
-            mTitle.setText(mItem.mJourney.getTitle());
-            mTimes.setText(mItem.mJourney.getTimes());
+            mTitle.setText(Utilities.JourneyTitle(mItem.mJourney));
+            mTimes.setText(Utilities.JourneyTimes(mItem.mJourney));
             if (mShowMode)
             {
                 mModeBtn.setText(mItem.mJourney.getStrMode());
@@ -73,6 +73,27 @@ public class LogView extends Handler implements Runnable
      */
     private static LogView instance = new LogView();
 
+    /**
+     * \brief Forward the log messages from the (platform-independent) detection core
+     */
+    static
+    {
+        DebugLog.SetSink(new DebugLog.Sink()
+        {
+            @Override
+            public void Log(int level, String tag, String str)
+            {
+                switch (level)
+                {
+                    case DebugLog.DEBUG:   Debug(tag, str); break;
+                    case DebugLog.INFO:    Info(tag, str);  break;
+                    case DebugLog.WARNING: Warn(tag, str);  break;
+                    default:               Error(tag, str); break;
+                }
+            }
+        });
+    }
+
     /**
      * \brief Private Constructor
      */
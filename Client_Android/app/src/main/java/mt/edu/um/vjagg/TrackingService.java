@@ -26,18 +26,23 @@ import android.location.GpsSatellite;
 import android.location.GpsStatus;
 import android.location.Location;
 import android.location.LocationManager;
+import android.os.Build;
 import android.os.Bundle;
 import android.os.Environment;
+import android.os.Handler;
 import android.os.IBinder;
+import android.os.Looper;
 import android.os.PowerManager;
+import android.os.SystemClock;
 import android.support.annotation.CheckResult;
 
 import com.google.android.gms.common.ConnectionResult;
 import com.google.android.gms.common.api.GoogleApiClient;
 import com.google.android.gms.common.api.GoogleApiClient.ConnectionCallbacks;
 import com.google.android.gms.common.api.GoogleApiClient.OnConnectionFailedListener;
-import com.google.android.gms.location.LocationListener;
+import com.google.android.gms.location.LocationCallback;
 import com.google.android.gms.location.LocationRequest;
+import com.google.android.gms.location.LocationResult;
 import com.google.android.gms.location.LocationServices;
 
 import java.io.BufferedWriter;
@@ -45,13 +50,16 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.lang.ref.WeakReference;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Locale;
 
 /**
  * Created by drt_researcher on 05/10/2016.
  */
 
-public class TrackingService extends Service implements LocationListener, ConnectionCallbacks, OnConnectionFailedListener, GpsStatus.Listener, SensorEventListener, Watchdog.TimeOut
+public class TrackingService extends Service implements ConnectionCallbacks, OnConnectionFailedListener, GpsStatus.Listener, SensorEventListener, Watchdog.TimeOut, GPSLogger.JourneyHandler
 {
     //========================== INTENT PARAMETERS ==========================//
     static final String EXTRA_WAKEFUL = "vjagg.wakeful";
@@ -61,12 +69,26 @@ public class TrackingService extends Service implements LocationListener, Connec
     static final String GPS_STA_FILE   = "VJAGG_GPS.";         //!< Stores all GPS data... (file-stub)
     static final String GPS_RPP_FILE   = "VJAGG_GPS_PP.dat";   //!< Stores the Formatted GPS Data
     static final String GPS_PER_FILE   = "VJAGG_JOUR_HIST.dat";//!< Stores the Journeys in the Personal History...
+    static final String ACC_ADAPT_FILE = "VJAGG_ACC_ADAPT.dat";//!< The learnt accelerometer thresholds (ThresholdAdapter)
 
     //============================ STATE CONTROL ============================//
     private static final int TS_OFF = 0;    //!< The Tracking Service is off
     private static final int TS_GPS = 1;    //!< The Tracking Service is actively using the GPS location controller
     private static final int TS_ACC = 2;    //!< The Tracking Service is actively using the Accelerometer Sensor
 
+    //=========================== PIPELINE EVENTS ===========================//
+    private static final int EV_FIX     = 0;    //!< A fix (time, latitude, longitude)
+    private static final int EV_BATCH   = 1;    //!< End of a delivery of fixes: process them
+    private static final int EV_START   = 2;    //!< The GPS was started
+    private static final int EV_STOP    = 3;    //!< The GPS was stopped (a = 1 if by the user)
+    private static final int EV_LOSS    = 4;    //!< The GPS signal was lost (time)
+    private static final int EV_LINE    = 5;    //!< A line for the raw log (obj)
+    private static final int EV_JOURNEY = 6;    //!< A journey to store (obj, with a = the reason): writer only
+    private static final int EV_WINDOW  = 7;    //!< Battery level ping: writer only
+    private static final int EV_MOTION  = 8;    //!< Accelerometer check while bridging a signal loss (a = 1 if moving)
+    private static final int EV_ADAPT   = 9;    //!< Store the accelerometer thresholds (a = scale, b = wake-ups, c = false ones, obj = the file)
+    private static final int QUEUE_SIZE = 1024; //!< Capacity of each pipeline queue
+
     private static int mState = TS_OFF;
     private boolean    mConnx;              //!< Indicate if Google API is connected...
 
@@ -86,13 +108,38 @@ public class TrackingService extends Service implements LocationListener, Connec
     private LocationManager mLocations;   //!< Location Manager
     private SensorManager   mSensors;     //!< Sensor Manager
     private boolean         mAccelAvail;  //!< Accelerometer is present on the device...
+    private boolean         mAccelBatch;  //!< Accelerometer can buffer (at least a quick check of) samples in a hardware FIFO
 
     //=========================== LOGGING CONTROL ===========================//
     private static BufferedWriter   mWriteFile = null;  //!< Storage File: Greedy (Early) Initialisation
     private boolean                 mStoreAll;          //!< Store Everything...
     private GPSLogger               mGPSLogger;         //!< The GPS Logging Framework
     private AccelLogger             mAccLogger;         //!< The Accelerometer Logging Framework
-    private long                    mStartTime;         //!< Start Accelerometer Run
+    private ThresholdAdapter        mAccAdapter;        //!< Adapts the accelerometer thresholds to the wake-up outcomes (null if not gating)
+    private boolean                 mAccWake;           //!< The current GPS session was started by the accelerometer gate
+    private volatile boolean        mWakeJourney;       //!< The detector reached JOUR_LOGD in the current GPS session (set by the detection thread)
+    private volatile boolean        mBridging;          //!< The detector is bridging a signal loss (set by the detection thread)
+    private boolean                 mBridgeAcc;         //!< An accelerometer check for the bridge is running
+    private final SamplingController mSampling = new SamplingController(new LoggingParams()); //!< Adaptive GPS sampling rate/priority/batching (detection thread)
+    private long                    mAccLast;           //!< Sensor time-stamp of the last accelerometer sample written (ns)
+    private long                    mFixTime;           //!< (Location) time-stamp of the last fix (0 if none yet)...
+    private long                    mFixClock;          //!< ...and the elapsed realtime (ms) at which it was taken: signal losses are stamped on the fix clock
+
+    //============================== PIPELINE ==============================//
+    //  The GPS Logger runs on a dedicated detection thread, and the raw log and journey storage on a writer thread: the
+    //  callbacks (all on the main looper, which is hence the single producer) only post events. While the detection
+    //  thread is running, it is the only one which touches mGPSLogger and mSampling.
+    private static volatile PipelineThread mDetector = null;  //!< Detection thread (null if not running)
+    private PipelineThread          mWriter;            //!< Writer thread (fed by the detection thread only)
+    private Handler                 mMainHandler;       //!< For posting back to the main looper (timers, location requests)
+    private File                    mLogFile;           //!< The journey log (GPS_LOG_FILE)
+    private boolean                 mGPSOn;             //!< Whether location updates are on (main looper): stale posts are ignored otherwise
+    private long                    mReqInterval;       //!< The location request to renew to (written by the detection thread before posting mRenewRequest)
+    private int                     mReqPriority;
+    private long                    mReqMaxWait;
+    private long                    mCbCount;           //!< Callback durations (main looper, ns)
+    private long                    mCbTotal;
+    private long                    mCbMax;
 
     private static final String TAG    = "TS"; //!< Debug Name
 
@@ -129,7 +176,17 @@ public class TrackingService extends Service implements LocationListener, Connec
         }
     }
 
-    public synchronized static void Write(String str)
+    /**
+     * \brief Write a line to the raw log (from the main looper): while the pipeline is running, this is done on the writer
+     *        thread, in order with the lines generated from the location/satellite events
+     */
+    public static void Write(String str)
+    {
+        PipelineThread detector = mDetector;
+        if ((detector == null) || !detector.Post(EV_LINE, 0, 0, 0, 0, str)) { WriteNow(str); }
+    }
+
+    private synchronized static void WriteNow(String str)
     {
         try
         {
@@ -159,12 +216,17 @@ public class TrackingService extends Service implements LocationListener, Connec
 
         mGPSLogger  = null;
         mAccLogger  = null;
+        mAccAdapter = null;
+        mAccWake    = false;
+        mBridging   = false;
+        mBridgeAcc  = false;
 
         mAPIClient = null;
         mLocations = null;
         mSensors   = null;
 
         mAccelAvail = false;
+        mAccelBatch = false;
         mConnx      = false;
 
         mStoreAll   = false;
@@ -227,6 +289,9 @@ public class TrackingService extends Service implements LocationListener, Connec
                 //Open Storage
                 if (mStoreAll) { Open(); }
 
+                //Start the detection/writer threads
+                StartPipeline();
+
                 //Connect API
                 mAPIClient.connect();
             }
@@ -246,6 +311,7 @@ public class TrackingService extends Service implements LocationListener, Connec
                 //Get Sensors
                 mSensors    = (SensorManager)   getSystemService(Context.SENSOR_SERVICE);
                 mAccelAvail = (((SensorManager) getSystemService(Context.SENSOR_SERVICE)).getDefaultSensor(Sensor.TYPE_ACCELEROMETER) != null);
+                mAccelBatch = CanBatch(mSensors.getDefaultSensor(Sensor.TYPE_ACCELEROMETER));
 
                 //Register Timers (some are optional)
                 mTimer      = new Watchdog(10);
@@ -279,11 +345,11 @@ public class TrackingService extends Service implements LocationListener, Connec
                 //Get Sensors
                 mSensors    = (SensorManager)   getSystemService(Context.SENSOR_SERVICE);
                 mAccelAvail = (((SensorManager) getSystemService(Context.SENSOR_SERVICE)).getDefaultSensor(Sensor.TYPE_ACCELEROMETER) != null);
+                mAccelBatch = CanBatch(mSensors.getDefaultSensor(Sensor.TYPE_ACCELEROMETER));
 
                 //Start Logger
                 mAccLogger = new AccelLogger();
-                mSensors.registerListener(this, mSensors.getDefaultSensor(Sensor.TYPE_ACCELEROMETER), LoggingParams.ACCEL_SAMPLE_RATE);
-                mStartTime = -1;
+                RegisterAccel(false);
 
                 //Enforce Storage
                 mStoreAll = true;
@@ -344,6 +410,7 @@ public class TrackingService extends Service implements LocationListener, Connec
             mLocations  = (LocationManager) getSystemService(Context.LOCATION_SERVICE);
             mSensors    = (SensorManager)   getSystemService(Context.SENSOR_SERVICE);
             mAccelAvail = (((SensorManager) getSystemService(Context.SENSOR_SERVICE)).getDefaultSensor(Sensor.TYPE_ACCELEROMETER) != null);
+            mAccelBatch = CanBatch(mSensors.getDefaultSensor(Sensor.TYPE_ACCELEROMETER));
 
             //Get Settings
             mStoreAll = SettingsActivity.GetSettings(getApplicationContext()).mStoreEverything;
@@ -360,8 +427,8 @@ public class TrackingService extends Service implements LocationListener, Connec
 
             //Create Logger(s)
             mGPSLogger = new GPSLogger(this);
-            if (!mStoreAll) { mAccLogger = new AccelLogger(); }
-            else            { mAccLogger = null; }
+            if (!mStoreAll) { mAccLogger = new AccelLogger(LoadAdapter()); }
+            else            { mAccLogger = null; mAccAdapter = null; }
 
             //Check Settings Flag
             if (mStoreAll || Utilities.DEBUG_BATTERY)
@@ -370,6 +437,9 @@ public class TrackingService extends Service implements LocationListener, Connec
                 Open();
             }
 
+            //Start the detection/writer threads
+            StartPipeline();
+
             //Write Battery Status
             BatteryLogger.pingBatteryLevel(this);
 
@@ -436,7 +506,7 @@ public class TrackingService extends Service implements LocationListener, Connec
                     if ((mRegistered != null) && (mState == TS_OFF)) { mRegistered.get().OnStateUpdate(true); } //update only if previously off...
 
                     //Optionally enable Accelerometer if this is the Full-Logging Version (no optimisations)
-                    if (mStoreAll) { mStartTime = -1; mSensors.registerListener(this, mSensors.getDefaultSensor(Sensor.TYPE_ACCELEROMETER), LoggingParams.ACCEL_SAMPLE_RATE); }
+                    if (mStoreAll) { RegisterAccel(false); }
 
                     //Update State
                     mState = TS_GPS;
@@ -507,6 +577,9 @@ public class TrackingService extends Service implements LocationListener, Connec
                         break;
                 }
 
+                //Finish off the pending detection/storage
+                StopPipeline();
+
                 //Kill all Watchdogs
                 mTimer.KillWatchdog(mGPSTimeout);
                 mTimer = null;
@@ -621,6 +694,9 @@ public class TrackingService extends Service implements LocationListener, Connec
                     break;
             }
 
+            //Finish off the pending detection/storage
+            StopPipeline();
+
             //Kill all Watchdogs
             mTimer.KillWatchdog(mGPSTimeout);
             if (mAccelAvail)
@@ -633,6 +709,7 @@ public class TrackingService extends Service implements LocationListener, Connec
             //Nullify Controllers
             mGPSLogger = null;
             mAccLogger = null;
+            mAccAdapter = null;
 
             //Disconnect from Google Play Services
             mAPIClient.disconnect();
@@ -645,23 +722,15 @@ public class TrackingService extends Service implements LocationListener, Connec
 
             //Do Post-Processing...
             RoutePostProcessor rpp = new RoutePostProcessor();
-            if (rpp.LoadLoggedJourneys(getApplicationContext()) != null) { LogView.Error(TAG, "PP load"); }
+            File log_file = new File(getFilesDir(), GPS_LOG_FILE);
+            if (rpp.LoadLoggedJourneys(log_file) != null) { LogView.Error(TAG, "PP load"); }
             else
             {
-                //First eliminate all journeys whose bounds are less than 50 metres
-                rpp.ThresholdDistance(LoggingParams.PP_CONS_DIST_THRESH);
-
-                //Now Join Journeys
-                rpp.JoinJourneys(LoggingParams.PP_JOIN_TIME_THRESH, LoggingParams.PP_JOIN_VEL_FACTOR);
-
-                //Then truncate journeys less than 500m
-                rpp.ThresholdDistance(LoggingParams.PP_ABS_DIST_THRESH);
-
-                //Finally Trim ends of journeys to prevent spurious bursts (faster than 5m/s)
-                rpp.TrimEnds(LoggingParams.PP_TRIM_MAX, LoggingParams.PP_TRIM_VEL_THRESH);
+                //Run the Post-Processing passes (thresholding, joining and trimming)
+                rpp.PostProcess();
 
                 //Save Journeys
-                if (rpp.SaveJourneys(getApplicationContext()) != null) { LogView.Error(TAG, "PP save"); }
+                if (rpp.SaveJourneys(log_file, new File(getFilesDir(), GPS_RPP_FILE)) != null) { LogView.Error(TAG, "PP save"); }
             }
 
             //Now State is off!
@@ -704,14 +773,15 @@ public class TrackingService extends Service implements LocationListener, Connec
         LogView.Debug(TAG, "gps-start");
         try
         {
-            //Create New Location Request
-            LocationServices.FusedLocationApi.requestLocationUpdates(mAPIClient, (new LocationRequest().setInterval(LoggingParams.GPS_SAMPLE_RATE).setFastestInterval(LoggingParams.GPS_SAMPLE_RATE).setPriority(LocationRequest.PRIORITY_HIGH_ACCURACY)), this);
+            //Create New Location Request (at the base rate: the detection thread resets the adaptive sampling to match)
+            RequestLocations(LoggingParams.GPS_SAMPLE_RATE, SamplingController.SP_HIGH_ACCURACY, 0);
+            mGPSOn = true;
 
             //Add GPS Status Listener
             mLocations.addGpsStatusListener(this);
 
             //Start GPS Logger
-            mGPSLogger.OnStart();
+            PutEvent(EV_START, 0);
 
             //Start Watchdogs
             mTimer.StartWatchdog(mGPSTimeout);
@@ -733,6 +803,65 @@ public class TrackingService extends Service implements LocationListener, Connec
         }
     }
 
+    /**
+     * \brief (Re-)Issue the location request: this replaces any previous one
+     * @param interval  The interval (ms)
+     * @param priority  The priority (SamplingController.SP_)
+     * @param max_wait  The maximum batching delay (ms: 0 for no batching)
+     */
+    private void RequestLocations(long interval, int priority, long max_wait) throws SecurityException
+    {
+        int gms_priority = (priority == SamplingController.SP_BALANCED) ? LocationRequest.PRIORITY_BALANCED_POWER_ACCURACY : LocationRequest.PRIORITY_HIGH_ACCURACY;
+        LocationRequest request = new LocationRequest().setInterval(interval).setFastestInterval(interval).setPriority(gms_priority);
+        if (max_wait > 0) { request.setMaxWaitTime(max_wait); } //Batched delivery
+        LocationServices.FusedLocationApi.requestLocationUpdates(mAPIClient, request, mLocationCallback, Looper.getMainLooper());
+    }
+
+    /**
+     * \brief Renew the location request with the adaptive sampling values (posted by the detection thread)
+     */
+    private final Runnable mRenewRequest = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            if (!mGPSOn) { return; }
+            LogView.Debug(TAG, "rate " + mReqInterval);
+            try { RequestLocations(mReqInterval, mReqPriority, mReqMaxWait); } catch (SecurityException e) { LogView.Error(TAG, e.toString()); }
+        }
+    };
+
+    /**
+     * \brief Ping the journey timeout (posted by the detection thread while a journey is active)
+     */
+    private final Runnable mPingJourney = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            if (mGPSOn) { LogView.Debug(TAG, "ping-jour"); mTimer.PingOK(mJourTimeout); }
+        }
+    };
+
+    /**
+     * \brief Start an accelerometer check for motion evidence while the detector bridges a signal loss (posted by the
+     *        detection thread, first on the loss and then ACCEL_CHECK_RATE after each check while still bridging)
+     * \detail The result goes back to the detector as EV_MOTION. Without an accelerometer (or when storing everything) the
+     *         bridge is simply resolved by the returning fixes or the timeouts.
+     */
+    private final Runnable mStartBridge = new Runnable()
+    {
+        @Override
+        public void run()
+        {
+            if (!mGPSOn || !mBridging || mBridgeAcc || mStoreAll || !mAccelAvail || mAccLogger == null) { return; }
+            LogView.Debug(TAG, "bridge-acc");
+            mBridgeAcc = true;
+            RegisterAccel(true);
+            mAccLogger.onStart();
+        }
+    };
+
     /**
      * TODO Revisit the user flag...
      * @param user
@@ -741,12 +870,18 @@ public class TrackingService extends Service implements LocationListener, Connec
     {
         LogView.Debug(TAG, "gps-stop");
 
-        //Stop GPS Logger
-        mGPSLogger.onStop(user);   //Stopping due to non-user intervention
+        //Stop GPS Logger (on the detection thread, after any pending fixes)
+        PutEvent(EV_STOP, user ? 1 : 0);
 
         //Stop Location/Satellite Updates
-        LocationServices.FusedLocationApi.removeLocationUpdates(mAPIClient, this);
+        mGPSOn = false;
+        mAccWake = false;
+        LocationServices.FusedLocationApi.removeLocationUpdates(mAPIClient, mLocationCallback);
         mLocations.removeGpsStatusListener(this);
+        mMainHandler.removeCallbacks(mRenewRequest);
+        mMainHandler.removeCallbacks(mPingJourney);
+        mMainHandler.removeCallbacks(mStartBridge);
+        if (mBridgeAcc) { mBridgeAcc = false; StopAccLogger(false); }
 
         //Stop Timers
         mTimer.PauseWatchdog(mGPSTimeout);
@@ -755,17 +890,32 @@ public class TrackingService extends Service implements LocationListener, Connec
         if (Utilities.DEBUG_BATTERY) { Write((new StringBuilder("O ")).append(System.currentTimeMillis()).toString()); } //GPS is turned off
     }
 
-    @Override
-    public void onLocationChanged(Location location)
+    /**
+     * \brief Location delivery: a single fix, or (if batched) all the fixes held back since the last delivery
+     */
+    private final LocationCallback mLocationCallback = new LocationCallback()
     {
-        //First Attempt write(s)
-        if (mStoreAll) { Write((new StringBuilder("L ")).append(location.getTime()).append(" ").append(location.getLatitude()).append(" ").append(location.getLongitude()).toString()); }
-
-        //Now call the gps logger method
-        mGPSLogger.onNewLocation(location);
+        @Override
+        public void onLocationResult(LocationResult result) { onLocationsChanged(result.getLocations()); }
+    };
 
-        //Also ping the State Timer if valid journey
-        if (mGPSLogger.IsActive()) { LogView.Debug(TAG, "ping-jour"); mTimer.PingOK(mJourTimeout); }
+    /**
+     * \brief Handle a batch of fixes (oldest first): these are just passed on to the detection thread, which processes
+     *        (and logs) them together
+     * @param locations The fixes
+     */
+    private void onLocationsChanged(List<Location> locations)
+    {
+        long start = System.nanoTime();
+        for (int i = 0; i < locations.size(); i++)
+        {
+            Location location = locations.get(i);
+            if (!PutEvent(EV_FIX, location.getTime(), location.getLatitude(), location.getLongitude(), 0, null)) { return; }
+            mFixTime  = location.getTime();
+            mFixClock = (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR1) ? location.getElapsedRealtimeNanos()/1000000 : SystemClock.elapsedRealtime();
+        }
+        PutEvent(EV_BATCH, 0);
+        TimeCallback(start);
     }
 
     @Override
@@ -773,6 +923,7 @@ public class TrackingService extends Service implements LocationListener, Connec
     {
         if (event == GpsStatus.GPS_EVENT_SATELLITE_STATUS)
         {
+            long start = System.nanoTime();
             int usedInFix = 0;
             try
             {
@@ -789,10 +940,216 @@ public class TrackingService extends Service implements LocationListener, Connec
             if (mStoreAll) { Write((new StringBuilder("S ")).append(System.currentTimeMillis()).append(" ").append(usedInFix).toString()); }
 
             //Ping Appropriately
-            if (usedInFix >= LoggingParams.GPS_MIN_SATS) { mTimer.PingOK(mGPSTimeout); } //Ping Watchdog to prevent timeout
+            if (mGPSLogger.OnSatellites(usedInFix)) { mTimer.PingOK(mGPSTimeout); } //Ping Watchdog to prevent timeout (this only reads the parameters)
+            TimeCallback(start);
+        }
+    }
+
+    @Override
+    public void OnWindow()
+    {
+        //Set Battery Level (detection thread)
+        mWriter.Put(EV_WINDOW, 0, 0, 0, 0, null);
+    }
+
+    @Override
+    public void OnJourneyEnd(Journey journey, int reason)
+    {
+        //Store it (detection thread): should the writer have died, store it here rather than lose it
+        if (!mWriter.Put(EV_JOURNEY, 0, reason, 0, 0, journey)) { journey.storeRoute(reason, mLogFile); }
+    }
+
+    //============================== PIPELINE ==============================//
+
+    /**
+     * \brief The detection thread: runs the GPS Logger (and the adaptive sampling) on the posted events, and passes the
+     *        raw log lines and journeys on to the writer thread
+     */
+    private final class DetectionStage implements PipelineThread.EventHandler
+    {
+        private double[]            mLat   = new double[16];    //!< The current batch (grown as needed)
+        private double[]            mLon   = new double[16];
+        private long[]              mTime  = new long[16];
+        private int                 mNum   = 0;
+        private final StringBuilder mLines = new StringBuilder(); //!< Raw log lines for the current batch
+
+        @Override
+        public void OnEvent(int type, long time, double a, double b, double c, Object obj)
+        {
+            switch (type)
+            {
+                case EV_FIX:
+                    if (mNum == mTime.length)
+                    {
+                        mLat  = Arrays.copyOf(mLat, mNum*2);
+                        mLon  = Arrays.copyOf(mLon, mNum*2);
+                        mTime = Arrays.copyOf(mTime, mNum*2);
+                    }
+                    mLat[mNum] = a; mLon[mNum] = b; mTime[mNum] = time; mNum++;
+                    if (mStoreAll) { mLines.append((mLines.length() > 0) ? "\nL " : "L ").append(time).append(" ").append(a).append(" ").append(b); }
+                    break;
+
+                case EV_BATCH:
+                    //First Attempt write(s)
+                    if (mLines.length() > 0) { mWriter.Post(EV_LINE, 0, 0, 0, 0, mLines.toString()); mLines.setLength(0); }
+
+                    //Now call the gps logger method, and ping the State Timer if valid journey
+                    if (mGPSLogger.onNewLocations(mLat, mLon, mTime, mNum)) { mMainHandler.post(mPingJourney); }
+                    if (mGPSLogger.getState() == GPSLogger.JOUR_LOGD) { mWakeJourney = true; }
+                    mBridging = mGPSLogger.IsBridging();
+                    mNum = 0;
+
+                    //Finally adapt the sampling rate to the detector state/speed (renewing the request only on change)
+                    if (mSampling.Update(mGPSLogger.getState(), mGPSLogger.getSpeed()))
+                    {
+                        mReqInterval = mSampling.getInterval();
+                        mReqPriority = mSampling.getPriority();
+                        mReqMaxWait  = mSampling.getMaxWait();
+                        mMainHandler.post(mRenewRequest);
+                    }
+                    break;
+
+                case EV_START:
+                    mSampling.Reset();
+                    mGPSLogger.OnStart();
+                    mWakeJourney = false;   //Here rather than on the main looper, so that no batch of the previous session can set it
+                    break;
+
+                case EV_STOP:
+                    mNum = 0;
+                    mLines.setLength(0);
+                    mGPSLogger.onStop(a > 0);
+                    mBridging = false;
+
+                    //Report the outlier rejections (cumulative over the logger's lifetime)
+                    OutlierFilter outliers = mGPSLogger.getOutliers();
+                    if (outliers != null) { LogView.Info(TAG, "outliers " + outliers.getRejected() + "/" + (outliers.getAccepted() + outliers.getRejected())); }
+                    LogView.Info(TAG, "detector " + mGPSLogger.getStats());
+                    break;
+
+                case EV_LOSS:
+                    boolean bridging = mBridging;
+                    mGPSLogger.OnSignalLoss(time);
+                    mBridging = mGPSLogger.IsBridging();
+                    if (!bridging && mBridging) { mMainHandler.post(mStartBridge); }
+                    break;
+
+                case EV_MOTION:
+                    mGPSLogger.OnMotion(a > 0);
+                    mBridging = mGPSLogger.IsBridging();
+                    if (mBridging) { mMainHandler.postDelayed(mStartBridge, LoggingParams.ACCEL_CHECK_RATE); }
+                    break;
+
+                case EV_LINE:
+                    mWriter.Post(EV_LINE, 0, 0, 0, 0, obj); //In order with the fixes
+                    break;
+
+                case EV_ADAPT:
+                    mWriter.Put(EV_ADAPT, time, a, b, c, obj);
+                    break;
+            }
         }
     }
 
+    /**
+     * \brief The writer thread: all the file output while the pipeline is running
+     */
+    private final class WriterStage implements PipelineThread.EventHandler
+    {
+        @Override
+        public void OnEvent(int type, long time, double a, double b, double c, Object obj)
+        {
+            switch (type)
+            {
+                case EV_LINE:    WriteNow((String)obj); break;
+                case EV_JOURNEY: ((Journey)obj).storeRoute((int)a, mLogFile); break;
+                case EV_WINDOW:  BatteryLogger.pingBatteryLevel(getApplicationContext()); break;
+                case EV_ADAPT:
+                    Exception e = ThresholdAdapter.Store((File)obj, a, (int)b, (int)c);
+                    if (e != null) { LogView.Error(TAG, "adapt-store " + e.toString()); }
+                    break;
+            }
+        }
+    }
+
+    /**
+     * \brief Post an event (from the main looper) to the detection thread: unlike raw log lines, fixes and control events
+     *        must not be lost (a lost EV_STOP would leave the GPS Logger running into the next EV_START), and hence wait for
+     *        space if the queue is full. Events which arrive once the pipeline is stopped (e.g. a late location delivery)
+     *        are ignored. Should the detection thread have died, the service is stopped: the events cannot be handled here
+     *        instead, since the detection stage posts to the writer queue, which only the detection thread may feed.
+     * @param type  The event type (one of EV_)
+     * @param a     The event value
+     * @return      False if the event was not posted
+     */
+    private boolean PutEvent(int type, double a)
+    {
+        return PutEvent(type, 0, a, 0, 0, null);
+    }
+
+    /**
+     * \brief Post an event with all the event fields (see PutEvent(int, double))
+     */
+    private boolean PutEvent(int type, long time, double a, double b, double c, Object obj)
+    {
+        PipelineThread detector = mDetector;
+        if (detector == null) { LogView.Warn(TAG, "pipeline-off " + type); return false; }
+        if (detector.Put(type, time, a, b, c, obj)) { return true; }
+
+        LogView.Error(TAG, "detector-dead " + type);
+        StopPipeline();
+        stopSelf();
+        return false;
+    }
+
+    /**
+     * \brief Start the detection and writer threads (the GPS Logger must already be created)
+     */
+    private void StartPipeline()
+    {
+        mMainHandler = new Handler(Looper.getMainLooper());
+        mLogFile     = new File(getFilesDir(), GPS_LOG_FILE);
+        mGPSOn       = false;
+        mCbCount = mCbTotal = mCbMax = 0;
+
+        PipelineThread detector = new PipelineThread("vjagg-detect", QUEUE_SIZE, new DetectionStage());
+        mWriter = new PipelineThread("vjagg-write", QUEUE_SIZE, new WriterStage());
+        mWriter.Start();
+        detector.Start();
+        mDetector = detector;
+    }
+
+    /**
+     * \brief Stop the threads, once everything posted so far is processed (and stored), and report the latencies
+     */
+    private void StopPipeline()
+    {
+        PipelineThread detector = mDetector;
+        if (detector == null) { return; }
+
+        mDetector = null;   //Any further lines are written directly
+        detector.Stop();    //First the detector, since it feeds the writer
+        mWriter.Stop();
+
+        LogView.Info(TAG, String.format(Locale.US, "callback %.1f/%.1fus, detect %.1f/%.1fus, write %.1f/%.1fus, dropped %d/%d, waited %d/%d",
+                (mCbCount > 0) ? mCbTotal/1000.0/mCbCount : 0.0, mCbMax/1000.0,
+                detector.getMeanDelay()/1000.0, detector.getMaxDelay()/1000.0, mWriter.getMeanDelay()/1000.0, mWriter.getMaxDelay()/1000.0,
+                detector.getDropped(), mWriter.getDropped(), detector.getWaited(), mWriter.getWaited()));
+        mWriter = null;
+    }
+
+    /**
+     * \brief Account for the duration of a (main looper) callback
+     * @param start System.nanoTime() at the start of the callback
+     */
+    private void TimeCallback(long start)
+    {
+        long duration = System.nanoTime() - start;
+        mCbCount++;
+        mCbTotal += duration;
+        mCbMax    = Math.max(mCbMax, duration);
+    }
+
     //============================= ACC CONTROL =============================//
 
     @CheckResult
@@ -809,9 +1166,8 @@ public class TrackingService extends Service implements LocationListener, Connec
         //Pause the timer itself..
         mTimer.PauseWatchdog(mAccTimeout);
 
-        //Register Listener
-        mSensors.registerListener(this, mSensors.getDefaultSensor(Sensor.TYPE_ACCELEROMETER), LoggingParams.ACCEL_SAMPLE_RATE);
-        mStartTime = -1;
+        //Register Listener (batched if possible: the check only needs the samples, not their timing)
+        RegisterAccel(true);
 
         //Initialise the Logger
         mAccLogger.onStart();
@@ -836,26 +1192,93 @@ public class TrackingService extends Service implements LocationListener, Connec
         mTimer.PauseWatchdog(mAccTimeout);
     }
 
+    /**
+     * \brief Create the threshold adapter, restoring the thresholds learnt in previous sessions
+     * @return The (adapted) parameters for the AccelLogger
+     */
+    private LoggingParams LoadAdapter()
+    {
+        LoggingParams params = new LoggingParams();
+        mAccAdapter = new ThresholdAdapter(params);
+        Exception e = mAccAdapter.Load(new File(getFilesDir(), ACC_ADAPT_FILE));
+        if (e != null) { LogView.Error(TAG, "adapt-load " + e.toString()); }
+        LogView.Info(TAG, "adapt " + mAccAdapter.getScale() + " (" + mAccAdapter.getFalse() + "/" + mAccAdapter.getWakes() + " false)");
+        return params;
+    }
+
+    /**
+     * \brief Feed back the outcome of an accelerometer wake-up, and persist the adapted thresholds
+     * \detail The thresholds are adapted here (they are read by the AccelLogger on the main looper), but the file is written
+     *         on the writer thread (through the detection thread, which feeds it), with a copy of the state.
+     * @param journey Whether a journey was logged
+     */
+    private void RecordWake(boolean journey)
+    {
+        mAccAdapter.OnOutcome(journey);
+        File file = new File(getFilesDir(), ACC_ADAPT_FILE);
+        PutEvent(EV_ADAPT, 0, mAccAdapter.getScale(), mAccAdapter.getWakes(), mAccAdapter.getFalse(), file);
+    }
+
+    /**
+     * \brief Register for accelerometer updates at ACCEL_SAMPLE_RATE
+     * \detail The rate is left to the sensor (there is no software throttling of the callbacks). When batched, the samples
+     *         are buffered in the sensor hub FIFO and delivered (with their sensor time-stamps) ACCEL_BATCH_LATENCY at a
+     *         time, so that the application processor is woken up once per batch rather than for every sample.
+     *         Batching needs KitKat: mAccelBatch already implies it, but the check is repeated where the API 19 call is made.
+     * @param batch Batch the samples if the sensor supports it
+     */
+    private void RegisterAccel(boolean batch)
+    {
+        Sensor sensor = mSensors.getDefaultSensor(Sensor.TYPE_ACCELEROMETER);
+        mAccLast = -1;
+        if (batch && mAccelBatch && Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT)
+        {
+            mSensors.registerListener(this, sensor, LoggingParams.ACCEL_SAMPLE_RATE, LoggingParams.ACCEL_BATCH_LATENCY);
+        }
+        else
+        {
+            mSensors.registerListener(this, sensor, LoggingParams.ACCEL_SAMPLE_RATE);
+        }
+    }
+
+    /**
+     * \brief Whether the sensor can batch a quick check worth of samples (KitKat onwards)
+     */
+    private static boolean CanBatch(Sensor sensor)
+    {
+        return (sensor != null) && (Build.VERSION.SDK_INT >= Build.VERSION_CODES.KITKAT) && (sensor.getFifoMaxEventCount() >= LoggingParams.QUICK_SAMPLE_SIZE);
+    }
+
     @Override
     public final void onAccuracyChanged(Sensor sensor, int accuracy) { /*Nothing to do here*/ }
 
     @Override
     public final void onSensorChanged(SensorEvent event)
     {
-        long curr_time = System.currentTimeMillis();
-
-        //Guard against excessive frequency of update
-        if (curr_time - mStartTime < LoggingParams.ACCEL_SAMPLE_RATE_T) { return; }
-
-        LogView.Debug(TAG, "sense");
-        mStartTime = curr_time;
+        long start = System.nanoTime();
 
         //Note that this generates a lot of data... with a 100ms update rate, this amounts to ~8.2MB/Hour
-        if (mStoreAll) { Write((new StringBuilder("A ")).append(curr_time).append(" ").append(event.values[0]).append(" ").append(event.values[1]).append(" ").append(event.values[2]).toString()); }
+        //  (the sensor may deliver faster than requested: this is limited on the sensor time-stamps)
+        if (mStoreAll && (mAccLast < 0 || event.timestamp - mAccLast >= LoggingParams.ACCEL_SAMPLE_RATE_T*1000000L))
+        {
+            mAccLast = event.timestamp;
+            Write((new StringBuilder("A ")).append(System.currentTimeMillis()).append(" ").append(event.values[0]).append(" ").append(event.values[1]).append(" ").append(event.values[2]).toString());
+        }
 
-        if (!mStoreAll)
+        if (mBridgeAcc)
         {
-            switch (mAccLogger.onNewAcceleration(event.values))
+            //Motion evidence for the bridge: the GPS stays on, so this only reports back to the detector
+            int ret = mAccLogger.onNewAcceleration(event.values, event.timestamp);
+            if (ret != AccelLogger.RET_WAIT)
+            {
+                mBridgeAcc = false;
+                StopAccLogger(false);
+                PutEvent(EV_MOTION, (ret == AccelLogger.RET_PASS) ? 1 : 0);
+            }
+        }
+        else if (!mStoreAll)
+        {
+            switch (mAccLogger.onNewAcceleration(event.values, event.timestamp))
             {
                 case AccelLogger.RET_SLEEP:
                     if(Utilities.DEBUG_MODE && Utilities.DEBUG_TYPE == 3)
@@ -893,12 +1316,14 @@ public class TrackingService extends Service implements LocationListener, Connec
                         StopAccLogger(false);
                         StopAccTimer();
                         mState = TS_GPS;    //Indicate need to go to gps
+                        mAccWake = true;    //The outcome is fed back on the journey timeout
                         //Use Side-Effects (short-circuit)
                         if (mConnx && !StartGPSLogger(mAccelAvail)) { stopSelf(); }
                     }
                     break;
             }
         }
+        TimeCallback(start);
     }
 
     //============================ TIMER CONTROL ============================//
@@ -917,7 +1342,9 @@ public class TrackingService extends Service implements LocationListener, Connec
             }
             else
             {
-                mGPSLogger.OnSignalLoss();
+                //The detector compares this against the fix times, which need not follow the wall clock
+                long loss = (mFixTime > 0) ? mFixTime + SystemClock.elapsedRealtime() - mFixClock : System.currentTimeMillis();
+                PutEvent(EV_LOSS, loss, 0, 0, 0, null);
             }
         }
         else if ((!mStoreAll) && (wd == mJourTimeout))
@@ -929,6 +1356,7 @@ public class TrackingService extends Service implements LocationListener, Connec
             }
             else
             {
+                if (mAccWake && mAccAdapter != null) { RecordWake(mWakeJourney); }
                 StopGPSLogger(false);
                 if (StartAccTimer()) { mState = TS_ACC; }
                 else                  { LogView.Error(TAG, "acc-start"); stopSelf(); }
@@ -946,487 +1374,3 @@ public class TrackingService extends Service implements LocationListener, Connec
         }
     }
 }
-
-/**
- * \brief the Non-Member GPS Logger class
- */
-class GPSLogger implements DownSampler.DownSampleHandler
-{
-    //===================== STATE CONTROL =====================//
-    private static final int JOUR_INV   = -1; //!< Invalid State - Starts off here...
-    private static final int JOUR_IDLE  =  0; //!< Idle and not logging to persistent storage
-    private static final int JOUR_SRCH  =  1; //!< Searching for potential start point (as soon as two windows have been filled)
-    private static final int JOUR_FIND  =  2; //!< Found Journey start... waiting for buffer to fill up to TERM_NUM_SUC_WIN
-    private static final int JOUR_LOGD  =  3; //!< Fully Logging
-
-    private static final int PNTBUFFER_SIZE = LoggingParams.GPS_WINDOW_SIZE * LoggingParams.GPS_DOWNSAMPLE;
-    private static final String TAG         = "GL";
-
-    //======================= VARIABLES =======================//
-    private int             mState;         //!< The Journey State Controller
-    private DownSampler     mDownSampler;   //!< DownSampling framework
-    private WindowBuffer    mPointBuffer;   //!< Individual Point Buffer
-    private WindowBuffer    mWindBuffer;    //!< Average Point Buffer
-    private MarkovChain     mStartSearch;   //!< Idle to Log state change markov buffer
-    private int             mStartPtr;      //!< Start Pointer for Journey (actual data point): Note that this is the normalised index into the mRawBuffer... not cyclic...
-    private int             mStorePtr;      //!< The next item to store... on a call to store pointer...
-    private Journey         mJourney;       //!< The journey object
-
-    private Context         mApplication;   //!< The Application Context
-
-    //!< Public Constructor...
-    GPSLogger(Context context)
-    {
-        mState = JOUR_INV;  //Start off Invalid
-
-        //Initialise Variables
-        mDownSampler = null;
-        mPointBuffer = null;
-        mWindBuffer  = null;
-        mStartSearch = null;
-        mJourney     = null;
-        FlushStart(-1);
-
-        //Keep Track of Application Context
-        mApplication = context.getApplicationContext();
-    }
-
-    //========================= State Control =========================//
-
-    /**
-     * \brief Should be called before the first location is given.. used to initialise everything...
-     */
-    boolean OnStart()
-    {
-        LogView.Debug(TAG, "start");
-        //Ensure we have indeed not started yet!
-        if (mState > JOUR_INV) { LogView.Warn(TAG, "already-active"); return false; }
-
-        //Invalidate Pointers
-        FlushStart(-1);
-
-        //Initialise buffers and down-sampler
-        mDownSampler = new DownSampler(LoggingParams.GPS_DOWNSAMPLE, this);
-        mWindBuffer  = new WindowBuffer(LoggingParams.GPS_WINDOW_SIZE);
-        mPointBuffer = new WindowBuffer(PNTBUFFER_SIZE);
-
-        //Note that I do not initialise the journey or the start-search here: this is done within the respective state changes....
-
-        //Set State
-        mState = JOUR_IDLE;
-
-        //If OK so far, return true...
-        return true;
-    }
-
-    /**
-     * \brief Called when the GPS signal is lost for an extended amount of time...
-     */
-    void OnSignalLoss()
-    {
-        LogView.Debug(TAG, "loss");
-        //First Clean Up Journey if need be
-        if (mState >= JOUR_FIND)
-        {
-            LogView.Info(TAG, "Jour active");
-
-            //Find the Stop Point
-            int stop_point = findStop(GetStartWindow()-LoggingParams.GPS_VEL_EN_NUM);
-            LogView.Debug(TAG, "stop @ " + Integer.toString(stop_point));
-
-            //Copy Journey up to stop point or 0
-            StoreEntire(Math.max(stop_point, 0));
-            mJourney.storeRoute((stop_point >= 0) ? Journey.TC_RE_SF : Journey.TC_RE_SL, new File(mApplication.getFilesDir(), TrackingService.GPS_LOG_FILE));
-        }
-
-        //Change State
-        mState = JOUR_IDLE;  //Start from the idle invalid state...
-
-        //Prepare for it
-        mWindBuffer.flush();
-        mPointBuffer.flush();
-        mDownSampler.flush();
-        FlushStart(-1);
-    }
-
-    /**
-     * \brief Called when stopping GPS logging (due to some reason or another)
-     */
-    void onStop(boolean user)
-    {
-        LogView.Debug(TAG, "stop");
-        if (mState >= JOUR_FIND)
-        {
-            LogView.Info(TAG, "Jour active");
-
-            //Find the Stop Point
-            int stop_point = findStop(GetStartWindow()-LoggingParams.GPS_VEL_EN_NUM);
-            LogView.Debug(TAG, "stop @ " + Integer.toString(stop_point));
-
-            //Copy Journey up to stop point or 0
-            StoreEntire(Math.max(stop_point, 0));
-            mJourney.storeRoute(user ? Journey.TC_RE_US : Journey.TC_RE_OS, new File(mApplication.getFilesDir(), TrackingService.GPS_LOG_FILE));
-        }
-
-        mDownSampler = null;
-        mPointBuffer = null;
-        mWindBuffer  = null;
-        mStartSearch = null;
-        mJourney     = null;
-
-        mState = JOUR_INV;
-    }
-
-    /**
-     * \brief Indicates if a journey is active...
-     * @return
-     */
-    public boolean IsActive()
-    {
-        return mState > JOUR_SRCH;
-    }
-
-    //======================= Tracking Implementation =======================//
-
-    /**
-     * \brief Envisioned to be called each time there is a new GPS point...
-     * @param location The Location object to act upon
-     */
-    public void onNewLocation(Location location)
-    {
-        //First Store any pending data which would be lost with this iteration. This will be ignored if stateless...
-        StorePending(new RoutePoint(location));
-
-        //Add to Downsampler
-        mDownSampler.AddPoint(new RoutePoint(location));
-    }
-
-    /**
-     * \brief Internal
-     * @param rp The Routepoint which is the averaged value passed to the downsampler
-     */
-    public void OnDownSample(RoutePoint rp)
-    {
-        //Set Battery Level
-        BatteryLogger.pingBatteryLevel(mApplication);
-
-        //Initialise prerequisites...
-        int next_state = mState;    //State initialised to current state
-        mWindBuffer.AddPoint(rp);
-
-        //State Change Logic
-        switch (mState)
-        {
-            case JOUR_IDLE:
-                LogView.Debug(TAG, "IDLE");
-                if (mWindBuffer.getFilledFirst(2))
-                {
-                    //Change State
-                    LogView.Debug(TAG, "Fill 2");
-                    next_state = JOUR_SRCH;
-
-                    //Prepare for Next State
-                    mStartSearch = new MarkovChain(LoggingParams.GPS_VEL_ST_TRIG, LoggingParams.GPS_VEL_ST_TOTAL, LoggingParams.GPS_VEL_ST_NUM, mWindBuffer.getPoint(1));
-                    mStartSearch.CheckMinTrigger(getDistance(1, 0), getTimeDiffer(1, 0), mWindBuffer.getPoint(0));
-                    FlushStart(-1);
-                }
-                break;
-
-            case JOUR_SRCH:
-                LogView.Debug(TAG, "SRCH");
-                if (mStartSearch.CheckMinTrigger(getDistance(1,0), getTimeDiffer(1,0), mWindBuffer.getPoint(0)))
-                {
-                    //Change State
-                    LogView.Debug(TAG, "Found");
-                    next_state = JOUR_FIND;
-
-                    //Prepare for Next State
-                    FlushStart(LoggingParams.GPS_VEL_ST_NUM); //These points are already part of the journey: since the velocities are one less than windows this coincides with 0-based indexing
-                    mJourney = new Journey(); //Prepare the Journey
-                }
-                break;
-
-            case JOUR_FIND:
-                LogView.Debug(TAG, "FIND");
-                if (GetStartWindow() >= LoggingParams.GPS_TERM_WIND - 1)
-                {
-                    //Switch State
-                    LogView.Debug(TAG, "Accumulated");
-                    next_state = JOUR_LOGD;
-                }
-                break;
-
-            case JOUR_LOGD:
-                LogView.Debug(TAG, "LOGD");
-                if (getDistance(LoggingParams.GPS_TERM_WIND -1, 0) < LoggingParams.GPS_TERM_DIST_TOT) //If did not move enough
-                {
-                    //Attempt to find Stop Point
-                    int stop_point = findStop(LoggingParams.GPS_TERM_WIND - 1);
-
-                    //Branch
-                    if (stop_point > LoggingParams.GPS_VEL_EN_NUM)
-                    {
-                        LogView.Info(TAG, "Stop @ " + stop_point);
-
-                        //Store Journey
-                        StoreEntire(stop_point);
-
-                        //Attempt to locate Start Point
-                        int start_pt = findStart(stop_point - 1);
-                        if (start_pt > 0)
-                        {
-                            //Change State
-                            LogView.Debug(TAG, "End @ ".concat(Integer.toString(stop_point)).concat(" & start @ win").concat(Integer.toString(start_pt)));
-                            next_state = JOUR_FIND;
-
-                            //Prepare for Next State
-                            FlushStart(start_pt);
-                        }
-                        else
-                        {
-                            //Change State
-                            LogView.Debug(TAG, "End @ ".concat(Integer.toString(stop_point)));
-                            next_state = JOUR_SRCH;
-
-                            //Prepare for State
-                            FlushStart(-1); //Go to search but retain Markov Chain State which may have a partial trigger
-                        }
-                    }
-                    else //TODO Consider just remaining in this state if this is the case...
-                    {
-                        LogView.Info(TAG, "No Stop");
-
-                        //Store entire Journey
-                        StoreEntire(0);
-
-                        //Update State
-                        next_state = JOUR_SRCH;
-
-                        //Prepare for Next State
-                        FlushStart(-1);
-                        mStartSearch.Refresh(mWindBuffer.getPoint(0));
-                    }
-
-                    //In any case store journey
-                    mJourney.storeRoute(Journey.TC_RE_NM, new File(mApplication.getFilesDir(), TrackingService.GPS_LOG_FILE));
-                    if (next_state == JOUR_FIND) { mJourney = new Journey(); }//Prepare the Journey
-                }
-                break;
-        }
-
-        //Update State
-        mState = next_state;
-    }
-
-    //======================== Storage Control ========================//
-    private void FlushStart(int window)
-    {
-        LogView.Debug(TAG, "flush");
-        if (window > -1) { mStorePtr = mStartPtr = (window+1)*LoggingParams.GPS_DOWNSAMPLE - 1;  } //Since for the zeroth window, the first (oldest) point is point DOWNSAMPLE_RATE-1
-        else             { mStorePtr = 0; mStartPtr = -1; }
-    }
-
-    private void StorePending(RoutePoint rp)
-    {
-        LogView.Debug(TAG, "store-pend");
-        //First Store any point which may be lost...
-        if ((mStartPtr == PNTBUFFER_SIZE-1) && (mStorePtr == mStartPtr))
-        {
-            mJourney.addPoint(mPointBuffer.getPoint(mStartPtr).copy());
-            mStorePtr--;
-        }
-
-        //Now Add point to buffer
-        mPointBuffer.AddPoint(rp);
-
-        //Now update the start/store pointers
-        if (mStartPtr > -1)
-        {
-            mStorePtr = Math.min(mStorePtr + 1, PNTBUFFER_SIZE - 1); //Update the Storage pointer (which is the next point to be stored if needed...
-            mStartPtr = Math.min(mStartPtr + 1, PNTBUFFER_SIZE - 1);
-        }
-    }
-
-    private void StoreEntire(int end_window)
-    {
-        LogView.Debug(TAG, "store-all");
-        //Modify end_window to point to correct raw point
-        int end_point = end_window*LoggingParams.GPS_DOWNSAMPLE + mDownSampler.GetProcessed(); //Calculation involves the fact that if we are at window 1, then the last point is point 3, first point is point 5 (or 6-1)
-
-        if ((mStorePtr <= mStartPtr) && (mStorePtr >= end_point)) //Copy only if store pointer is between start pointer and end pointer
-        {
-            //Copy all from store pointer up to end pointer. Now the End pointer is a window... but since the call to StoreEntire can happen
-            //  from the GPS Timeout Handler, which is asynchronous, other samples may have gotten in since the last window update.
-            //  Hence, the window boundary will have moved as well... to this end, we need to move the lower limit by the number of samples
-            //  processed so far, which can be anywhere from 0 up to the DOWNSAMPLE_RATE-2.
-            for (int i=mStorePtr; i >= end_point; i--)
-            {
-                mJourney.addPoint(mPointBuffer.getPoint(i).copy());
-            }
-
-            //Clean up
-            mStorePtr = end_window*LoggingParams.GPS_DOWNSAMPLE - 1;
-        }
-    }
-
-    //============================= Utilities =============================//
-    /**
-     * \brief Calculates the distance between the 'start' window and 'end' window
-     * @param start Start Window to consider (inclusive)
-     * @param end   End Window to consider (inclusive)
-     * @return      Distance in metres...
-     */
-    private float getDistance(int start, int end)
-    {
-        float dist[] = new float[1];
-        RoutePoint startPt, endPt;
-
-        //Calculate Distanc/Velocity
-        startPt = mWindBuffer.getPoint(start);
-        endPt   = mWindBuffer.getPoint(end);
-        Location.distanceBetween(startPt.mLatitude, startPt.mLongitude, endPt.mLatitude, endPt.mLongitude, dist);
-
-        return dist[0];
-    }
-
-    /**
-     * \brief Calculates the time difference between two windows as indexed
-     * @param start Start Window to consider
-     * @param end   End Window to consider
-     * @return      The Time Differences (in milliseconds)
-     */
-    private long getTimeDiffer(int start, int end)
-    {
-        return mWindBuffer.getPoint(end).mTimeSt - mWindBuffer.getPoint(start).mTimeSt;
-    }
-
-    /**
-     * \brief  Retrieve the window containing valid points
-     * @return Start Window
-     */
-    private int GetStartWindow()
-    {
-        return (int)(Math.floor((mStartPtr + 1.0d)/LoggingParams.GPS_DOWNSAMPLE) - 1); //TODO this can be causing problems! need to verify that working ok...
-    }
-
-    /**
-     * \brief  Attempts to identify the stopping point of the journey...
-     * \detail This uses an internal Markov Chain Buffer and does not modify the actual start chain buffer
-     * @param start The index from where to start searching
-     * @return      The index of the last journey point which is valid...This points to the window before the end-trigger... -1 if none could be identified
-     */
-    private int findStop(int start)
-    {
-        /*LogView.Debug(TAG, "Searching for stop starting at Window " + Integer.toString(start));*/
-        MarkovChain buf = new MarkovChain(LoggingParams.GPS_VEL_EN_TRIG, LoggingParams.GPS_VEL_EN_TOTAL, LoggingParams.GPS_VEL_EN_NUM, mWindBuffer.getPoint(start));
-        int fndIdx  = -1 - LoggingParams.GPS_VEL_EN_NUM;    //By default, will return -1 when not found....
-
-        for (int i = start; i > 0; i--)
-        {
-            if (buf.CheckMaxTrigger(getDistance(i, i - 1), getTimeDiffer(i, i - 1), mWindBuffer.getPoint(i - 1))) { fndIdx = i-1; }
-        }
-
-        return fndIdx+LoggingParams.GPS_VEL_EN_NUM; //We need to point to the window just before the stop trigger...
-    }
-
-    /**
-     * \brief  Attempts to identify a potential Journey-Start trigger
-     * \detail Note that this uses the actual member Markov Chain buffer, hence if at return time no full trigger was found, its state reflects the current MC state
-     * @param start The start position from which to search (will search until the most recent)
-     * @return      The index of the tentative start point or -1 if fails to find a valid one
-     */
-    private int findStart(int start)
-    {
-        mStartSearch.Refresh(mWindBuffer.getPoint(start)); //Flush buffer since we do not know the last time we used it...
-        int fndIdx  = -1;    //!< Indicates that we found a potential starting point...
-
-        for (int i = start; i>0; i--)
-        {
-            if (mStartSearch.CheckMinTrigger(getDistance(i, i - 1), getTimeDiffer(i, i - 1), mWindBuffer.getPoint(i - 1))) { fndIdx = i+2; break; }
-        }
-
-        return fndIdx;
-    }
-}
-
-class AccelLogger
-{
-    //===================== STATE CONTROL =====================//
-    private static final int ALS_UNDEF = 0;  //!< Undefined State...
-    private static final int ALS_CHECK = 1;  //!< Quick Sample Size (3/4 accelerometer samples)
-    private static final int ALS_ENSUR = 2;  //!< Extra Sample Set (10-15 accelerometer samples)
-
-    public  static final int RET_SLEEP = 0;  //!< Go Back to sleep
-    public  static final int RET_WAIT  = 1;  //!< Wait for another sample
-    public  static final int RET_PASS  = 2;  //!< We passed the thresholds...
-
-    private static final String TAG = "AL";  //!< Debugging Tag
-
-    //======================= VARIABLES =======================//
-    private int         mState;     //!< State Control
-    private double[]    mAverage;   //!< Average Calculation (window)
-    private int         mCount;     //!< Sample Count...
-
-
-    public AccelLogger()
-    {
-        mState = ALS_UNDEF;
-        mCount = -1;
-        mAverage = null;
-    }
-
-    public boolean onStart()
-    {
-        LogView.Debug(TAG, "start");
-        if (mState > ALS_UNDEF) { LogView.Warn(TAG, "already-start"); return false; }
-
-        mCount   = LoggingParams.QUICK_SAMPLE_SIZE;
-        mAverage = new double[mCount];
-        mState   = ALS_CHECK;
-
-        //If everything still here..
-        return true;
-    }
-
-    public int onNewAcceleration(float[] acceleration)
-    {
-        LogView.Debug(TAG, "new " + Integer.toString(mCount));
-
-        //Calculate Magnitude and store in window...
-        mAverage[mAverage.length - (mCount--)] = Math.sqrt(Math.pow(acceleration[0], 2) + Math.pow(acceleration[1], 2) + Math.pow(acceleration[2], 2));
-
-        //If count is greater than 0, i.e. we can put in more samples...
-        if (mCount > 0) { return RET_WAIT; }
-
-        //else
-        double average = 0;
-        for (double reading : mAverage) { average += Math.pow(reading - 9.81, 2); }
-
-        //Branch based on state
-        if (mState == ALS_CHECK)
-        {
-            //Check if we passed the threshold
-            if (average < LoggingParams.QUICK_SAMPLE_THRESH) { mState = ALS_CHECK; return RET_SLEEP; }
-            else
-            {
-                mState = ALS_ENSUR;
-                mCount = LoggingParams.EXTRA_SAMPLE_SIZE;
-                mAverage = new double[mCount];
-                return RET_WAIT;
-            }
-        }
-        else
-        {
-            //Check if we passed the threshold
-            if (average < LoggingParams.EXTRA_SAMPLE_THRESH) { mState = ALS_CHECK; return RET_SLEEP; }
-            else                                             { mState = ALS_UNDEF; return RET_PASS;  }
-        }
-    }
-
-    public void onStop()
-    {
-        mState = ALS_UNDEF;
-        mCount = -1;
-        mAverage = null;
-    }
-}
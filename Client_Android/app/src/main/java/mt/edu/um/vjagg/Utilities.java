@@ -26,6 +26,10 @@ import android.content.Context;
 import android.content.DialogInterface.OnClickListener;
 import android.support.v7.app.AlertDialog;
 
+import com.google.android.gms.maps.model.LatLng;
+import com.google.android.gms.maps.model.LatLngBounds;
+import com.google.android.gms.maps.model.PolylineOptions;
+
 import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.Locale;
@@ -53,6 +57,41 @@ class Utilities
         return (new SimpleDateFormat("HH:mm:ss", Locale.ENGLISH)).format(new Date(time_val));
     }
 
+    //============= Journey Display (Maps) Helpers ================//
+    static LatLng ToLatLng(RoutePoint rp)
+    {
+        return new LatLng(rp.mLatitude, rp.mLongitude);
+    }
+
+    static LatLngBounds JourneyBounds(Journey journey)
+    {
+        return new LatLngBounds(new LatLng(journey.getSouth(), journey.getWest()), new LatLng(journey.getNorth(), journey.getEast()));
+    }
+
+    static PolylineOptions JourneyPolyLine(Journey journey, int width, int clr)
+    {
+        PolylineOptions options = new PolylineOptions();
+        for (int i=0; i<journey.getNumPoints(); ++i)
+        {
+            options.add(ToLatLng(journey.getPt(i)));
+        }
+        options.width(width).color(clr);
+
+        return options;
+    }
+
+    static String JourneyTitle(Journey journey)
+    {
+        if (journey.getNumPoints() < 1) { return "Invalid Journey"; }
+        else                            { return ConvertDate(journey.getPt(0).mTimeSt); }
+    }
+
+    static String JourneyTimes(Journey journey)
+    {
+        if (journey.getNumPoints() < 1) { return "Invalid Journey"; }
+        else                            { return "[" + ConvertTime(journey.getPt(0).mTimeSt) + "] - [" + ConvertTime(journey.getEnd().mTimeSt) + "]"; }
+    }
+
     static String FormatDayTime(SettingsActivity.DailyTime time_val)
     {
         return String.format("%02d:%02d", time_val.mHrs, time_val.mMin);
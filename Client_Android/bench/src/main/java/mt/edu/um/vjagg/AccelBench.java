@@ -0,0 +1,104 @@
+/**
+ *   Copyright (C) 2019  Michael Camilleri
+ *
+ * 	This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ *	License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * 	version.
+ *	This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ *	warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 	You should have received a copy of the GNU General Public License along with this program. If not, see
+ *	http://www.gnu.org/licenses/.
+ *
+ *	Author: Michael Camilleri
+ *
+ */
+
+package mt.edu.um.vjagg;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * \brief The accelerometer gate: a whole check (AccelLogger, from onStart to the decision) and the spectral stage alone
+ *        (MotionSpectrum). Both should show no allocation under the gc profiler.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class AccelBench
+{
+    private static final int    NUM      = 1024;   //!< Length of the (cyclic) synthetic input: power of 2
+    private static final double SPEC_LOW = 0.5;    //!< The spectral stage is off by default (ACCEL_SPEC_LOW): measure the check with it on
+
+    /**
+     * \brief The device motion: still (fails early), shaken (one-off low frequency handling) or walking (passes)
+     */
+    @State(Scope.Thread)
+    public static class GateState
+    {
+        @Param({"STILL", "HANDLED", "WALKING"})
+        public String motion;
+
+        float[][]      mSamples;
+        AccelLogger    mLogger;
+        MotionSpectrum mSpectrum;
+        int            mIdx;
+
+        @Setup(Level.Trial)
+        public void setup()
+        {
+            switch (motion)
+            {
+                case "STILL":   mSamples = BenchData.Accel(NUM, 0.0, 0.0, 0.05); break;
+                case "HANDLED": mSamples = BenchData.Accel(NUM, 3.0, 0.3, 0.2);  break;
+                default:        mSamples = BenchData.Accel(NUM, 4.0, 1.9, 0.5);  break;
+            }
+            LoggingParams params = new LoggingParams();
+            params.Set("ACCEL_SPEC_LOW", SPEC_LOW);
+            mLogger   = new AccelLogger(params);
+            mSpectrum = new MotionSpectrum(1000000.0/LoggingParams.ACCEL_SAMPLE_RATE);
+            mIdx      = 0;
+        }
+
+        float[] next() { return mSamples[(mIdx++) & (NUM - 1)]; }
+    }
+
+    /**
+     * \brief One complete check, returning the decision
+     */
+    @Benchmark
+    public int accelCheck(GateState s)
+    {
+        int ret;
+        s.mLogger.onStart();
+        do { ret = s.mLogger.onNewAcceleration(s.next()); } while (ret == AccelLogger.RET_WAIT);
+        s.mLogger.onStop();
+        return ret;
+    }
+
+    /**
+     * \brief Add a sample and analyse the (full) window, as the spectral stage does on its decision
+     */
+    @Benchmark
+    public double spectrumAnalyse(GateState s)
+    {
+        float[] a = s.next();
+        s.mSpectrum.Add(a[0]*a[0] + a[1]*a[1] + a[2]*a[2]);
+        s.mSpectrum.Analyse();
+        return s.mSpectrum.getLowFraction();
+    }
+}
@@ -0,0 +1,130 @@
+/**
+ *   Copyright (C) 2019  Michael Camilleri
+ *
+ * 	This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ *	License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * 	version.
+ *	This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ *	warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 	You should have received a copy of the GNU General Public License along with this program. If not, see
+ *	http://www.gnu.org/licenses/.
+ *
+ *	Author: Michael Camilleri
+ *
+ */
+
+package mt.edu.um.vjagg;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * \brief Allocation-Budget check for the per-fix ingestion path (GPSLogger.onNewLocation)
+ * \detail Drives the detector over long synthetic traces, and measures the bytes allocated per fix (after warm-up) with the
+ *         per-thread allocation counters of the (HotSpot) ThreadMXBean. The process exits with an error (failing the
+ *         build, since the check task depends on it) if any scenario goes over its budget:
+ *          > SEARCH  : Stationary (noisy) fixes: the detector stays in SRCH. Nothing should be allocated.
+ *          > JOURNEY : Continuous motion: the detector stays in LOGD. The only allocation should be the journey itself
+ *                      (one RoutePoint per fix, plus the amortised growth of the point list).
+ *          > CYCLE   : Repeated 10 minute journeys with 10 minute stops: this includes the stop/start searches and the
+ *                      hand-over of each journey.
+ *         Budgets (bytes/fix) can be overridden on the command line: AllocationBudget [search] [journey] [cycle]
+ */
+public class AllocationBudget
+{
+    //!< Default Budgets (bytes per fix)
+    static final double BUDGET_SEARCH  =  0.01;  //!< i.e. zero (less than 10KB over the whole measurement)
+    static final double BUDGET_JOURNEY = 56.0;   //!< The RoutePoint (40 bytes) + the amortised growth of the point list
+    static final double BUDGET_CYCLE   = 56.0;
+
+    private static final int WARMUP = 200000;   //!< Fixes for warm-up (JIT compilation, buffer allocation)
+    private static final int FIXES  = 1000000;  //!< Fixes to measure over
+    private static final int CYCLE  = 300;      //!< Fixes per half-cycle (10 minutes at 2s)
+
+    private static final int SC_SEARCH  = 0;
+    private static final int SC_JOURNEY = 1;
+    private static final int SC_CYCLE   = 2;
+
+    private static final String[] NAMES = {"SEARCH", "JOURNEY", "CYCLE"};
+
+    /**
+     * \brief Generates the fixes for a scenario, without allocating
+     */
+    private static final class Scenario implements GPSLogger.JourneyHandler
+    {
+        private final int        mType;
+        private final double[][] mMoving;
+        private final double[][] mStill;
+        private final GPSLogger  mLogger;
+        private long             mTime;
+        private int              mFix;
+        private int              mJourneys;
+
+        Scenario(int type)
+        {
+            mType     = type;
+            mMoving   = BenchData.Circle(4096, 2000.0, 10.0, 3.0);
+            mStill    = BenchData.Circle(4096, 2000.0, 0.0, 3.0);
+            mLogger   = new GPSLogger(this);
+            mTime     = BenchData.START_TIME;
+            mFix      = 0;
+            mJourneys = 0;
+            mLogger.OnStart();
+        }
+
+        void Run(int fixes)
+        {
+            for (int n = 0; n < fixes; n++, mFix++)
+            {
+                int        i   = mFix & 4095;
+                boolean    mov = (mType == SC_JOURNEY) || (mType == SC_CYCLE && (mFix / CYCLE) % 2 == 1);
+                double[][] pts = mov ? mMoving : mStill;
+                mLogger.onNewLocation(pts[0][i], pts[1][i], mTime += LoggingParams.GPS_SAMPLE_RATE);
+            }
+        }
+
+        @Override
+        public void OnWindow() { /*Nothing to do here*/ }
+
+        @Override
+        public void OnJourneyEnd(Journey journey, int reason) { mJourneys++; /*Discarded*/ }
+    }
+
+    /**
+     * \brief Measure the allocation per fix for the scenario
+     */
+    static double Measure(int type)
+    {
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        long thread = Thread.currentThread().getId();
+
+        Scenario scenario = new Scenario(type);
+        scenario.Run(WARMUP);
+
+        long before = bean.getThreadAllocatedBytes(thread);
+        scenario.Run(FIXES);
+        long after  = bean.getThreadAllocatedBytes(thread);
+
+        return (after - before)/(double)FIXES;
+    }
+
+    public static void main(String[] args)
+    {
+        double[] budgets = {BUDGET_SEARCH, BUDGET_JOURNEY, BUDGET_CYCLE};
+        for (int i = 0; i < Math.min(args.length, budgets.length); i++) { budgets[i] = Double.parseDouble(args[i]); }
+
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean();
+        if (!bean.isThreadAllocatedMemorySupported()) { System.err.println("Thread allocation counters not supported"); System.exit(2); }
+        bean.setThreadAllocatedMemoryEnabled(true);
+
+        boolean ok = true;
+        for (int type = SC_SEARCH; type <= SC_CYCLE; type++)
+        {
+            double per_fix = Measure(type);
+            boolean pass   = per_fix <= budgets[type];
+            System.out.println(String.format("%-8s %8.2f bytes/fix (budget %.2f) %s", NAMES[type], per_fix, budgets[type], pass ? "OK" : "OVER BUDGET"));
+            ok &= pass;
+        }
+
+        if (!ok) { System.exit(1); }
+    }
+}
@@ -0,0 +1,97 @@
+/**
+ *   Copyright (C) 2019  Michael Camilleri
+ *
+ * 	This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ *	License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * 	version.
+ *	This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ *	warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 	You should have received a copy of the GNU General Public License along with this program. If not, see
+ *	http://www.gnu.org/licenses/.
+ *
+ *	Author: Michael Camilleri
+ *
+ */
+
+package mt.edu.um.vjagg;
+
+import java.util.Random;
+
+/**
+ * \brief Synthetic (deterministic) inputs for the benchmarks
+ * \detail Motion is along a circle (so that it can go on indefinitely without drifting off the map) centred in Malta, with
+ *         the usual 2s fix interval.
+ */
+final class BenchData
+{
+    static final double CENTRE_LAT = 35.90;     //!< Centre of the synthetic traces
+    static final double CENTRE_LON = 14.45;
+    static final long   START_TIME = 1477384917968L;
+    static final double M_PER_DEG  = 111320.0;  //!< Approximate metres per degree of latitude
+
+    private BenchData() {}
+
+    /**
+     * \brief Fixes along a circle
+     * @param num       Number of fixes (the sequence wraps around after this)
+     * @param radius    Radius of the circle (m)
+     * @param speed     Speed along the circle (m/s): 0 gives a stationary (noisy) sequence
+     * @param noise     Standard deviation of the position noise (m)
+     * @return          {latitudes, longitudes} (time-stamps are START_TIME + i*GPS_SAMPLE_RATE)
+     */
+    static double[][] Circle(int num, double radius, double speed, double noise)
+    {
+        Random rand = new Random(42);
+        double[][] pts = new double[2][num];
+        double lon_scale = Math.cos(Math.toRadians(CENTRE_LAT));
+        double step      = speed*LoggingParams.GPS_SAMPLE_RATE/1000.0/radius; //Angle per fix
+
+        for (int i = 0; i < num; i++)
+        {
+            double angle = (speed > 0) ? step*i : 0;
+            pts[0][i] = CENTRE_LAT + (radius*Math.sin(angle) + noise*rand.nextGaussian())/M_PER_DEG;
+            pts[1][i] = CENTRE_LON + (radius*Math.cos(angle) + noise*rand.nextGaussian())/(M_PER_DEG*lon_scale);
+        }
+        return pts;
+    }
+
+    /**
+     * \brief Accelerometer samples at ACCEL_SAMPLE_RATE: gravity (along z), an oscillation of the magnitude and noise
+     * @param num       Number of samples
+     * @param amplitude Amplitude of the oscillation (m/s2): 0 gives a still device
+     * @param freq      Frequency of the oscillation (Hz)
+     * @param noise     Standard deviation of the noise on each axis (m/s2)
+     * @return          One {x, y, z} sample per entry
+     */
+    static float[][] Accel(int num, double amplitude, double freq, double noise)
+    {
+        Random rand = new Random(42);
+        float[][] samples = new float[num][3];
+        double dt = LoggingParams.ACCEL_SAMPLE_RATE/1000000.0;
+
+        for (int i = 0; i < num; i++)
+        {
+            samples[i][0] = (float)(noise*rand.nextGaussian());
+            samples[i][1] = (float)(noise*rand.nextGaussian());
+            samples[i][2] = (float)(9.81 + amplitude*Math.sin(2*Math.PI*freq*i*dt) + noise*rand.nextGaussian());
+        }
+        return samples;
+    }
+
+    /**
+     * \brief A moving journey with the specified number of points
+     * @param length    Number of points
+     * @param start     Time of the first point
+     * @param speed     Speed (m/s)
+     */
+    static Journey MakeJourney(int length, long start, double speed)
+    {
+        double[][] pts = Circle(length, 2000.0, speed, 3.0);
+        Journey journey = new Journey();
+        for (int i = 0; i < length; i++)
+        {
+            journey.addPoint(new RoutePoint(pts[0][i], pts[1][i], start + i*LoggingParams.GPS_SAMPLE_RATE));
+        }
+        return journey;
+    }
+}
@@ -0,0 +1,234 @@
+/**
+ *   Copyright (C) 2019  Michael Camilleri
+ *
+ * 	This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ *	License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * 	version.
+ *	This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ *	warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 	You should have received a copy of the GNU General Public License along with this program. If not, see
+ *	http://www.gnu.org/licenses/.
+ *
+ *	Author: Michael Camilleri
+ *
+ */
+
+package mt.edu.um.vjagg;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * \brief Per-fix/per-window detection hot paths: DownSampler, KalmanSmoother, GPSLogger (in each state), MarkovChain and findStop
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DetectionBench
+{
+    private static final int  NUM    = 4096;    //!< Length of the (cyclic) synthetic input: power of 2
+    private static final long WIN_DT = LoggingParams.GPS_SAMPLE_RATE * LoggingParams.GPS_DOWNSAMPLE; //!< Time between windows
+
+    //====================== DownSampler ======================//
+
+    @State(Scope.Thread)
+    public static class SamplerState implements DownSampler.DownSampleHandler
+    {
+        double[][]  mPts;
+        DownSampler mSampler;
+        KalmanSmoother mSmoother;
+        int         mIdx;
+        long        mTime;
+        double      mSink;  //!< Consumes the output (so it is not optimised away)
+
+        @Setup(Level.Trial)
+        public void setup()
+        {
+            mPts     = BenchData.Circle(NUM, 500.0, 10.0, 3.0);
+            mSampler = new DownSampler(LoggingParams.GPS_DOWNSAMPLE, this);
+            mSmoother = new KalmanSmoother(LoggingParams.GPS_KF_ACCEL, LoggingParams.GPS_KF_NOISE, new DistanceKernel(LoggingParams.GPS_DIST_MODE), this);
+            mIdx     = 0;
+            mTime    = BenchData.START_TIME;
+        }
+
+        @Override
+        public void OnDownSample(double lat, double lon, long time) { mSink += lat + lon + time; }
+    }
+
+    @Benchmark
+    public double downSamplerAddPoint(SamplerState s)
+    {
+        int i = (s.mIdx++) & (NUM - 1);
+        s.mSampler.AddPoint(s.mPts[0][i], s.mPts[1][i], s.mTime += LoggingParams.GPS_SAMPLE_RATE);
+        return s.mSink;
+    }
+
+    @Benchmark
+    public double kalmanAddPoint(SamplerState s)
+    {
+        int i = (s.mIdx++) & (NUM - 1);
+        s.mSmoother.AddPoint(s.mPts[0][i], s.mPts[1][i], s.mTime += LoggingParams.GPS_SAMPLE_RATE);
+        return s.mSink + s.mSmoother.getSpeed();
+    }
+
+    //====================== GPSLogger ======================//
+
+    /**
+     * \brief A GPSLogger held in a specific state
+     * \detail The logger is brought into the state through the full per-fix path (onNewLocation): the benchmark then calls
+     *         OnDownSample directly, with inputs which keep it in that state (stationary for SRCH, moving otherwise: since
+     *         the start pointer only advances with raw fixes, FIND persists). IDLE only lasts for two windows, and hence
+     *         its operation also includes the OnSignalLoss which resets it. The state is verified after every iteration.
+     */
+    @State(Scope.Thread)
+    public static class LoggerState implements GPSLogger.JourneyHandler
+    {
+        @Param({"IDLE", "SRCH", "FIND", "LOGD"})
+        public String state;
+
+        double[][] mPts;
+        GPSLogger  mLogger;
+        int        mTarget;
+        int        mIdx;
+        long       mTime;
+
+        @Setup(Level.Iteration)
+        public void setup()
+        {
+            switch (state)
+            {
+                case "IDLE": mTarget = GPSLogger.JOUR_IDLE; break;
+                case "SRCH": mTarget = GPSLogger.JOUR_SRCH; break;
+                case "FIND": mTarget = GPSLogger.JOUR_FIND; break;
+                default:     mTarget = GPSLogger.JOUR_LOGD; break;
+            }
+            mPts    = BenchData.Circle(NUM, 500.0, (mTarget == GPSLogger.JOUR_SRCH) ? 0.0 : 10.0, 1.0);
+            mLogger = new GPSLogger(this);
+            mLogger.OnStart();
+            mIdx    = DriveTo(mLogger, mPts, mTarget);
+            mTime   = BenchData.START_TIME + mIdx*LoggingParams.GPS_SAMPLE_RATE;
+        }
+
+        @TearDown(Level.Iteration)
+        public void check()
+        {
+            if (mLogger.getState() != mTarget) { throw new IllegalStateException("Left " + state); }
+        }
+
+        @Override
+        public void OnWindow() { /*Nothing to do here*/ }
+
+        @Override
+        public void OnJourneyEnd(Journey journey, int reason) { /*Discarded*/ }
+    }
+
+    /**
+     * \brief Feed raw fixes to the logger until it reaches the target state
+     * @return The number of fixes used
+     */
+    static int DriveTo(GPSLogger logger, double[][] pts, int target)
+    {
+        int idx = 0;
+        while (target != GPSLogger.JOUR_IDLE && logger.getState() != target)
+        {
+            if (idx >= NUM) { throw new IllegalStateException("Could not reach state " + target); }
+            logger.onNewLocation(pts[0][idx], pts[1][idx], BenchData.START_TIME + (idx + 1)*LoggingParams.GPS_SAMPLE_RATE);
+            idx++;
+        }
+        return idx;
+    }
+
+    @Benchmark
+    public int gpsLoggerOnDownSample(LoggerState s)
+    {
+        int i = (s.mIdx++) & (NUM - 1);
+        if (s.mTarget == GPSLogger.JOUR_IDLE) { s.mLogger.OnSignalLoss(s.mTime); }
+        s.mLogger.OnDownSample(s.mPts[0][i], s.mPts[1][i], s.mTime += WIN_DT);
+        return s.mLogger.getState();
+    }
+
+    @State(Scope.Thread)
+    public static class StopState implements GPSLogger.JourneyHandler
+    {
+        GPSLogger mLogger;
+
+        @Setup(Level.Trial)
+        public void setup()
+        {
+            mLogger = new GPSLogger(this);
+            mLogger.OnStart();
+            DriveTo(mLogger, BenchData.Circle(NUM, 500.0, 10.0, 1.0), GPSLogger.JOUR_LOGD);
+        }
+
+        @Override
+        public void OnWindow() { /*Nothing to do here*/ }
+
+        @Override
+        public void OnJourneyEnd(Journey journey, int reason) { /*Discarded*/ }
+    }
+
+    /**
+     * \brief The stop search over the termination window (as done on every LOGD window which did not move enough)
+     */
+    @Benchmark
+    public int gpsLoggerFindStop(StopState s)
+    {
+        return s.mLogger.findStop(LoggingParams.GPS_TERM_WIND - 1);
+    }
+
+    //====================== MarkovChain ======================//
+
+    @State(Scope.Thread)
+    public static class ChainState
+    {
+        SegmentBuffer mWindow;
+        MarkovChain   mMinChain;
+        MarkovChain   mMaxChain;
+        int           mIdx;
+
+        @Setup(Level.Trial)
+        public void setup()
+        {
+            DistanceKernel kernel = new DistanceKernel(LoggingParams.GPS_DIST_MODE);
+            double[][] pts = BenchData.Circle(LoggingParams.GPS_WINDOW_SIZE, 500.0, 3.0, 1.0);
+            mWindow = new SegmentBuffer(LoggingParams.GPS_WINDOW_SIZE, kernel);
+            for (int i = 0; i < LoggingParams.GPS_WINDOW_SIZE; i++) { mWindow.AddPoint(pts[0][i], pts[1][i], BenchData.START_TIME + i*WIN_DT); }
+
+            mMinChain = new MarkovChain(LoggingParams.GPS_VEL_ST_TRIG, LoggingParams.GPS_VEL_ST_TOTAL, LoggingParams.GPS_VEL_ST_NUM);
+            mMaxChain = new MarkovChain(LoggingParams.GPS_VEL_EN_TRIG, LoggingParams.GPS_VEL_EN_TOTAL, LoggingParams.GPS_VEL_EN_NUM);
+            mIdx      = 0;
+        }
+
+        //!< Successive windows (newer each time), leaving room for the chain's anchor (GPS_VEL_ST_NUM older) in the buffer
+        int next() { mIdx = (mIdx + 1) % (LoggingParams.GPS_WINDOW_SIZE - 1 - LoggingParams.GPS_VEL_ST_NUM); return LoggingParams.GPS_WINDOW_SIZE - 2 - LoggingParams.GPS_VEL_ST_NUM - mIdx; }
+    }
+
+    @Benchmark
+    public boolean markovCheckMinTrigger(ChainState s)
+    {
+        int i = s.next();
+        return s.mMinChain.CheckMinTrigger(s.mWindow.getSegDistance(i), s.mWindow.getSegTime(i), s.mWindow, i);
+    }
+
+    @Benchmark
+    public boolean markovCheckMaxTrigger(ChainState s)
+    {
+        int i = s.next();
+        return s.mMaxChain.CheckMaxTrigger(s.mWindow.getSegDistance(i), s.mWindow.getSegTime(i), s.mWindow, i);
+    }
+}
@@ -0,0 +1,85 @@
+/**
+ *   Copyright (C) 2019  Michael Camilleri
+ *
+ * 	This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ *	License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * 	version.
+ *	This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ *	warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 	You should have received a copy of the GNU General Public License along with this program. If not, see
+ *	http://www.gnu.org/licenses/.
+ *
+ *	Author: Michael Camilleri
+ *
+ */
+
+package mt.edu.um.vjagg;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * \brief Journey (de)serialisation: storeRoute (to a file, which is truncated on every operation so that it does not keep
+ *        growing) and loadRoute (from memory, so that only the parsing is measured)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class JourneyBench
+{
+    @Param({"100", "1000", "10000", "50000"})
+    public int length;
+
+    private Journey mJourney;   //!< The journey to store
+    private File    mFile;      //!< The file to store to
+    private byte[]  mBytes;     //!< The serialised journey (to load from)
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException
+    {
+        mJourney = BenchData.MakeJourney(length, BenchData.START_TIME, 10.0);
+        mFile    = File.createTempFile("vjagg-bench", ".dat");
+        mFile.delete();
+        mJourney.storeRoute(Journey.TC_RE_NM, mFile);
+        mBytes   = Files.readAllBytes(mFile.toPath());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() { mFile.delete(); }
+
+    @Benchmark
+    public Exception storeRoute()
+    {
+        mFile.delete();
+        return mJourney.storeRoute(Journey.TC_RE_NM, mFile);
+    }
+
+    @Benchmark
+    public Journey loadRoute()
+    {
+        Journey journey = new Journey();
+        journey.loadRoute(new BufferedInputStream(new ByteArrayInputStream(mBytes)));
+        return journey;
+    }
+}
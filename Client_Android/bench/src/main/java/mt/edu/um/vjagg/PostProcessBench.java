@@ -0,0 +1,128 @@
+/**
+ *   Copyright (C) 2019  Michael Camilleri
+ *
+ * 	This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ *	License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * 	version.
+ *	This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ *	warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 	You should have received a copy of the GNU General Public License along with this program. If not, see
+ *	http://www.gnu.org/licenses/.
+ *
+ *	Author: Michael Camilleri
+ *
+ */
+
+package mt.edu.um.vjagg;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * \brief The individual RoutePostProcessor passes (and the full sequence)
+ * \detail Each operation works on a fresh set of JOURNEYS successive journeys (of the parameterised length, separated by
+ *         short gaps so that they are all joined, and with a spurious fix at either end for trimming): since the passes
+ *         modify the set in place, it is rebuilt within every operation. The cost (time and allocation) of the rebuild
+ *         alone is measured by the baseline benchmark, and should be subtracted from the others. (Rebuilding in an
+ *         invocation-level setup instead would hide the time, but not the allocation, from the gc profiler.)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PostProcessBench
+{
+    private static final int JOURNEYS = 8;  //!< Number of journeys per set
+
+    @Param({"100", "1000", "10000", "50000"})
+    public int length;
+
+    private ArrayList<RoutePoint[]> mTemplate;  //!< Points of each journey
+
+    @Setup(Level.Trial)
+    public void setup()
+    {
+        mTemplate = new ArrayList<>();
+        long start = BenchData.START_TIME;
+        for (int j = 0; j < JOURNEYS; j++)
+        {
+            Journey journey = BenchData.MakeJourney(length, start, 10.0);
+            RoutePoint[] points = new RoutePoint[length];
+            for (int i = 0; i < length; i++) { points[i] = journey.getPt(i); }
+
+            //Spurious jumps (~50m in 2s) at either end
+            points[0]          = new RoutePoint(points[0].mLatitude + 100.0/BenchData.M_PER_DEG, points[0].mLongitude, points[0].mTimeSt);
+            points[length - 1] = new RoutePoint(points[length - 1].mLatitude + 100.0/BenchData.M_PER_DEG, points[length - 1].mLongitude, points[length - 1].mTimeSt);
+
+            mTemplate.add(points);
+            start = points[length - 1].mTimeSt + 60000;   //1 minute gap
+        }
+    }
+
+    private RoutePostProcessor rebuild()
+    {
+        ArrayList<Journey> journeys = new ArrayList<>(JOURNEYS);
+        for (RoutePoint[] points : mTemplate)
+        {
+            Journey journey = new Journey();
+            for (RoutePoint point : points) { journey.addPoint(point); }
+            journeys.add(journey);
+        }
+        RoutePostProcessor rpp = new RoutePostProcessor();
+        rpp.LoadLoggedJourneys(journeys);
+        return rpp;
+    }
+
+    @Benchmark
+    public int baseline()
+    {
+        return rebuild().getJourneys().size();
+    }
+
+    @Benchmark
+    public int thresholdDistance()
+    {
+        RoutePostProcessor rpp = rebuild();
+        rpp.ThresholdDistance(LoggingParams.PP_ABS_DIST_THRESH);
+        return rpp.getJourneys().size();
+    }
+
+    @Benchmark
+    public int joinJourneys()
+    {
+        RoutePostProcessor rpp = rebuild();
+        rpp.JoinJourneys(LoggingParams.PP_JOIN_TIME_THRESH, LoggingParams.PP_JOIN_VEL_FACTOR);
+        return rpp.getJourneys().size();
+    }
+
+    @Benchmark
+    public int trimEnds()
+    {
+        RoutePostProcessor rpp = rebuild();
+        rpp.TrimEnds(LoggingParams.PP_TRIM_MAX, LoggingParams.PP_TRIM_VEL_THRESH);
+        return rpp.getJourneys().size();
+    }
+
+    @Benchmark
+    public int postProcess()
+    {
+        RoutePostProcessor rpp = rebuild();
+        rpp.PostProcess();
+        return rpp.getJourneys().size();
+    }
+}
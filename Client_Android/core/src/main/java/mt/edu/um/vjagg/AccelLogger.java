@@ -0,0 +1,234 @@
+/**
+ *   Copyright (C) 2019  Michael Camilleri
+ *
+ * 	This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ *	License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * 	version.
+ *	This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ *	warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 	You should have received a copy of the GNU General Public License along with this program. If not, see
+ *	http://www.gnu.org/licenses/.
+ *
+ *	Author: Michael Camilleri
+ *
+ */
+
+package mt.edu.um.vjagg;
+
+/**
+ * The accelerometer gate: decides, from a handful of samples, whether the device is being moved (and hence whether the GPS
+ * should be turned on).
+ *
+ * The test statistic is the total squared deviation of the acceleration magnitude from gravity over all the samples of the
+ * check: it is tested against QUICK_SAMPLE_THRESH over the first QUICK_SAMPLE_SIZE samples, and (if that passes) against
+ * EXTRA_SAMPLE_THRESH once the check is extended by EXTRA_SAMPLE_SIZE more. Rather than storing the magnitudes, a Welford
+ * running mean/variance of the squared magnitude q = |a|^2 is kept: since |a| - g = (q - g^2)/(|a| + g), the deviation is
+ * (q - g^2)^2/(4g^2) to first order about g, and its total over the n samples so far is (M2 + n(mean - g^2)^2)/(4g^2).
+ * There is hence no sqrt/pow per sample, and nothing is allocated. Each sample is clipped to a deviation of MAX_DEV first,
+ * so that a single jolt (the phone knocked on a table) cannot carry the whole check on its own.
+ *
+ * The check is a single online test (the statistics carry on from the quick to the extended stage), and each stage exits
+ * as soon as its decision is settled:
+ *  > Since the total can only grow, the stage passes as soon as it reaches the threshold.
+ *  > Once at least MIN_SETTLE samples are in, the total is projected to the end of the stage (with the sample variance,
+ *    which overestimates that of a still device): if even this is below ACCEL_SETTLE times the threshold, it fails early.
+ * The first rule gives the same decisions as checking at the end of the stage; the second trades a small chance of a
+ * missed wake (it is re-checked ACCEL_CHECK_RATE later anyway) for less accelerometer time on a still device.
+ *
+ * A pass of the extended check then goes through an (optional) spectral stage over the last MotionSpectrum.WINDOW samples
+ * (waiting for more if need be): it is rejected if the energy is mostly below 1Hz, i.e. the phone was handled rather than
+ * carried or driven (see Classify). The stage is off by default: on the recorded traces, an ACCEL_SPEC_LOW of 0.5 loses about
+ * ten true passes (car, bus and walking) for every false one (meeting) it saves, so it awaits field data to be tuned.
+ */
+class AccelLogger
+{
+    //===================== STATE CONTROL =====================//
+    private static final int ALS_UNDEF = 0;  //!< Undefined State...
+    private static final int ALS_CHECK = 1;  //!< Quick Sample Size (3/4 accelerometer samples)
+    private static final int ALS_ENSUR = 2;  //!< Extra Sample Set (10-15 accelerometer samples)
+    private static final int ALS_SPECT = 3;  //!< Passed: filling the spectral window before classifying
+
+    public  static final int RET_SLEEP = 0;  //!< Go Back to sleep
+    public  static final int RET_WAIT  = 1;  //!< Wait for another sample
+    public  static final int RET_PASS  = 2;  //!< We passed the thresholds...
+
+    private static final double GRAVITY_SQ = 9.81*9.81;         //!< Squared magnitude at rest
+    private static final double DEV_SCALE  = 1.0/(4*GRAVITY_SQ);//!< From (q - g^2)^2 to (|a| - g)^2
+    private static final int    MIN_SETTLE = 3;                 //!< Samples before a stage may fail early
+    static final double         MAX_DEV    = 1.5;               //!< Deviation (m/s2) at which a sample is clipped...
+    private static final double MAX_DQ     = 2*9.81*MAX_DEV;    //!< ...as a deviation of the squared magnitude (to first order)
+
+    private static final String TAG = "AL";  //!< Debugging Tag
+
+    //======================= VARIABLES =======================//
+    private int         mState;     //!< State Control
+    private int         mCount;     //!< Samples in the current check
+    private double      mMean;      //!< Running mean of the squared magnitude (current check)
+    private double      mM2;        //!< Running sum of squared differences from the mean (current check)
+    private int         mSamples;   //!< Samples used over all checks (for diagnostics)
+    private long        mLast;      //!< Sensor time-stamp of the last sample used (ns), or -1 if none yet
+    private int         mRejected;  //!< Passes rejected by the spectral stage (for diagnostics)
+    private final MotionSpectrum mSpectrum; //!< The most recent samples (over both stages), for the spectral stage
+    private final LoggingParams mParams;    //!< The thresholds/sample sizes
+
+
+    public AccelLogger()
+    {
+        this(new LoggingParams());
+    }
+
+    public AccelLogger(LoggingParams params)
+    {
+        mParams  = params;
+        mState   = ALS_UNDEF;
+        mSamples = 0;
+        mLast    = -1;
+        mRejected = 0;
+        mSpectrum = new MotionSpectrum(1000000.0/LoggingParams.ACCEL_SAMPLE_RATE);
+        reset();
+    }
+
+    public boolean onStart()
+    {
+        DebugLog.Debug(TAG, "start");
+        if (mState > ALS_UNDEF) { DebugLog.Warn(TAG, "already-start"); return false; }
+
+        reset();
+        mSpectrum.Clear();
+        mState = ALS_CHECK;
+        mLast  = -1;
+
+        //If everything still here..
+        return true;
+    }
+
+    /**
+     * \brief Handle a (possibly batched) sensor sample
+     * \detail The sampling rate is requested from the sensor, which may however deliver faster than that: samples closer
+     *         than ACCEL_SAMPLE_RATE_T (in sensor time, so that this also holds within a batch which was buffered by the
+     *         sensor hub and delivered all at once) to the last one used are skipped. Samples which arrive when not
+     *         checking (the rest of a batch after the decision) are ignored.
+     * @param acceleration  The sample
+     * @param timestamp     The sensor time-stamp (ns)
+     */
+    public int onNewAcceleration(float[] acceleration, long timestamp)
+    {
+        if (mState == ALS_UNDEF) { return RET_WAIT; }
+        if (mLast >= 0 && timestamp - mLast < mParams.mAccelSampleRateT*1000000L) { return RET_WAIT; }
+        mLast = timestamp;
+
+        return onNewAcceleration(acceleration);
+    }
+
+    public int onNewAcceleration(float[] acceleration)
+    {
+        //Keep the squared magnitude for the spectral stage
+        double q     = acceleration[0]*acceleration[0] + acceleration[1]*acceleration[1] + acceleration[2]*acceleration[2];
+        mSamples++;
+        mSpectrum.Add(q);
+        if (mState == ALS_SPECT) { return Classify(); }
+
+        //Update the running statistics (with the sample clipped)
+        q = Math.max(GRAVITY_SQ - MAX_DQ, Math.min(GRAVITY_SQ + MAX_DQ, q));
+        double delta = q - mMean;
+        mCount++;
+        mMean += delta/mCount;
+        mM2   += delta*(q - mMean);
+
+        //Total (squared) deviation from gravity so far
+        double bias  = mMean - GRAVITY_SQ;
+        double total = (mM2 + mCount*bias*bias)*DEV_SCALE;
+
+        //Stage parameters (the extended stage follows on from the quick one)
+        boolean quick  = (mState == ALS_CHECK);
+        int     size   = quick ? mParams.mQuickSampleSize   : mParams.mQuickSampleSize + mParams.mExtraSampleSize;
+        double  thresh = quick ? mParams.mQuickSampleThresh : mParams.mExtraSampleThresh;
+
+        //Passed: on to the extended check, or wake up
+        if (total >= thresh)
+        {
+            if (quick) { DebugLog.Debug(TAG, "ensure"); mState = ALS_ENSUR; return RET_WAIT; }
+            else       { mState = ALS_SPECT; return Classify(); }
+        }
+
+        //Failed: at the end of the stage, or early if settled
+        if (mCount >= size || (mCount >= MIN_SETTLE && Project(size) < thresh*mParams.mAccelSettle))
+        {
+            reset();
+            mState = ALS_CHECK;
+            return RET_SLEEP;
+        }
+
+        return RET_WAIT;
+    }
+
+    public void onStop()
+    {
+        mState = ALS_UNDEF;
+        mLast  = -1;
+        reset();
+    }
+
+    /**
+     * \brief The spectral stage: once the window is full, reject the pass if most of the energy is in the low band
+     * \detail Handling the phone (picking it up, shifting in a chair) passes the deviation test as well as walking or a
+     *         vehicle does, but it is a one-off change rather than a sustained oscillation. A rejected pass is treated as a
+     *         failed check (it is simply tried again ACCEL_CHECK_RATE later), which is far cheaper than a needless GPS
+     *         session until GPS_STATE_TO. The stage is off (passes straight through) if ACCEL_SPEC_LOW is 1.
+     */
+    private int Classify()
+    {
+        if (mParams.mAccelSpecLow >= 1) { mState = ALS_UNDEF; return RET_PASS; }
+        if (!mSpectrum.IsFull())        { return RET_WAIT; }
+
+        mSpectrum.Analyse();
+        if (mSpectrum.getLowFraction() > mParams.mAccelSpecLow)
+        {
+            DebugLog.Debug(TAG, "spectral-reject");
+            mRejected++;
+            reset();
+            mState = ALS_CHECK;
+            return RET_SLEEP;
+        }
+
+        mState = ALS_UNDEF;
+        return RET_PASS;
+    }
+
+    /**
+     * \brief Passes rejected by the spectral stage so far
+     */
+    int getRejected()
+    {
+        return mRejected;
+    }
+
+    /**
+     * \brief Samples used over all checks so far
+     */
+    int getSamples()
+    {
+        return mSamples;
+    }
+
+    /**
+     * \brief The total deviation projected to the end of the stage
+     * \detail Each remaining sample is expected to contribute the variance (unbiased estimate) plus the squared bias
+     * @param size The stage size
+     */
+    private double Project(int size)
+    {
+        double bias = mMean - GRAVITY_SQ;
+        return (mM2 + mCount*bias*bias + (size - mCount)*(mM2/(mCount - 1) + bias*bias))*DEV_SCALE;
+    }
+
+    /**
+     * \brief Clear the running statistics (for a new check)
+     */
+    private void reset()
+    {
+        mCount = 0;
+        mMean  = 0.0;
+        mM2    = 0.0;
+    }
+}
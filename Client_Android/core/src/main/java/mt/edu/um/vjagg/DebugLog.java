@@ -0,0 +1,65 @@
+/**
+ *   Copyright (C) 2019  Michael Camilleri
+ *
+ * 	This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ *	License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * 	version.
+ *	This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ *	warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 	You should have received a copy of the GNU General Public License along with this program. If not, see
+ *	http://www.gnu.org/licenses/.
+ *
+ *	Author: Michael Camilleri
+ *
+ */
+
+package mt.edu.um.vjagg;
+
+/**
+ * Platform-independent debug logging for the detection core.
+ *
+ * The core does not depend on android.util.Log (or the LogView): instead, messages are forwarded to whichever Sink is
+ * registered. On Android, the LogView registers itself: on a plain JVM, nothing is registered and messages are dropped.
+ */
+public final class DebugLog
+{
+    //!< Log Levels (same as the LogView)
+    public static final int DEBUG   = 1;
+    public static final int INFO    = 2;
+    public static final int WARNING = 3;
+    public static final int ERROR   = 4;
+
+    /**
+     * \brief Interface for receiving the log messages
+     */
+    public interface Sink
+    {
+        /**
+         * \brief Must be implemented by the class wishing to receive the log messages
+         * @param level One of DEBUG, INFO, WARNING or ERROR
+         * @param tag   The Tag of the calling method
+         * @param str   The Message string to log
+         */
+        void Log(int level, String tag, String str);
+    }
+
+    private static volatile Sink mSink = null;  //!< The registered sink (null if none)
+
+    private DebugLog() {}
+
+    /**
+     * \brief Register the sink to receive messages (null to drop all messages)
+     */
+    public static void SetSink(Sink sink) { mSink = sink; }
+
+    public static void Debug(String tag, String str) { log(DEBUG, tag, str); }
+    public static void Info(String tag, String str)  { log(INFO, tag, str); }
+    public static void Warn(String tag, String str)  { log(WARNING, tag, str); }
+    public static void Error(String tag, String str) { log(ERROR, tag, str); }
+
+    private static void log(int level, String tag, String str)
+    {
+        Sink sink = mSink;
+        if (sink != null) { sink.Log(level, tag, str); }
+    }
+}
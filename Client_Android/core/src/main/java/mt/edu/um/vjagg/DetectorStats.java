@@ -0,0 +1,88 @@
+/**
+ *   Copyright (C) 2019  Michael Camilleri
+ *
+ * 	This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ *	License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * 	version.
+ *	This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ *	warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 	You should have received a copy of the GNU General Public License along with this program. If not, see
+ *	http://www.gnu.org/licenses/.
+ *
+ *	Author: Michael Camilleri
+ *
+ */
+
+package mt.edu.um.vjagg;
+
+/**
+ * A snapshot of the GPSLogger instrumentation counters (see GPSLogger.getStats): where the fixes, time and detection work
+ * go. All counts are cumulative over the lifetime of the logger. The per-state arrays are indexed by the state
+ * (JOUR_IDLE to JOUR_LOGD), and the transitions by [from][to].
+ */
+class DetectorStats
+{
+    static final int NUM_STATES = GPSLogger.JOUR_LOGD + 1;
+
+    final long[]   mFixes       = new long[NUM_STATES];  //!< Fixes received in each state
+    final long[]   mTime        = new long[NUM_STATES];  //!< Time spent (ms, from the fix time-stamps) in each state
+    final long[]   mWindows     = new long[NUM_STATES];  //!< Windows evaluated in each state
+    final long[][] mTransitions = new long[NUM_STATES][NUM_STATES]; //!< State transitions (including self-transitions)
+    long mStartChecks;  //!< Start-trigger (Markov chain) evaluations
+    long mStopChecks;   //!< Stop-trigger (Markov chain) evaluations
+    long mStopSearches; //!< Stop-point look-ups (findStop)
+    long mStartScans;   //!< Backward rescans for a new start (findStart)
+    long mSignalLosses; //!< Signal losses (back to JOUR_IDLE outside of the table, unless bridged)
+    long mBridges;      //!< Journeys kept open across a signal loss
+    long mBridgeJoins;  //!< ...which were joined up (interpolated) when the fixes returned
+    long mBridgeRejects;//!< ...which were ended when the fixes returned (too long/fast), expired, or the device was still
+
+    DetectorStats() {}
+
+    /**
+     * \brief Copy Constructor (the snapshot)
+     */
+    DetectorStats(DetectorStats other)
+    {
+        for (int state = 0; state < NUM_STATES; state++)
+        {
+            mFixes[state]   = other.mFixes[state];
+            mTime[state]    = other.mTime[state];
+            mWindows[state] = other.mWindows[state];
+            System.arraycopy(other.mTransitions[state], 0, mTransitions[state], 0, NUM_STATES);
+        }
+        mStartChecks  = other.mStartChecks;
+        mStopChecks   = other.mStopChecks;
+        mStopSearches = other.mStopSearches;
+        mStartScans   = other.mStartScans;
+        mSignalLosses = other.mSignalLosses;
+        mBridges       = other.mBridges;
+        mBridgeJoins   = other.mBridgeJoins;
+        mBridgeRejects = other.mBridgeRejects;
+    }
+
+    /**
+     * \brief Total fixes over all states
+     */
+    long getTotalFixes()
+    {
+        long total = 0;
+        for (long fixes : mFixes) { total += fixes; }
+        return total;
+    }
+
+    @Override
+    public String toString()
+    {
+        StringBuilder sb = new StringBuilder();
+        for (int state = 0; state < NUM_STATES; state++)
+        {
+            sb.append(state).append(": fixes=").append(mFixes[state]).append(" time=").append(mTime[state]/1000).append("s windows=").append(mWindows[state]).append(" ->");
+            for (int to = 0; to < NUM_STATES; to++) { if (to != state) { sb.append(" ").append(to).append(":").append(mTransitions[state][to]); } }
+            sb.append("\n");
+        }
+        return sb.append("checks start=").append(mStartChecks).append(" stop=").append(mStopChecks).append(", searches stop=").append(mStopSearches)
+                 .append(" start=").append(mStartScans).append(", losses=").append(mSignalLosses)
+                 .append(", bridges=").append(mBridges).append(" (joined ").append(mBridgeJoins).append(", rejected ").append(mBridgeRejects).append(")").toString();
+    }
+}
@@ -0,0 +1,221 @@
+/**
+ *   Copyright (C) 2019  Michael Camilleri
+ *
+ * 	This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ *	License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * 	version.
+ *	This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ *	warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 	You should have received a copy of the GNU General Public License along with this program. If not, see
+ *	http://www.gnu.org/licenses/.
+ *
+ *	Author: Michael Camilleri
+ *
+ */
+
+package mt.edu.um.vjagg;
+
+/**
+ * Computes geodesic distances between two points given in degrees, without allocating any output arrays.
+ *
+ * Four modes are supported (all errors are relative to the WGS84 ellipsoidal distance, which is what
+ * Location.distanceBetween() computes):
+ *  > DK_EQUIRECT  : Planar approximation scaled by the WGS84 meridional/prime-vertical radii at the reference latitude.
+ *                   The radii (and cos(lat)) are cached and only recomputed when the latitude moves by more than
+ *                   CACHE_TOL degrees (~110m). For separations up to 10km (and latitudes within +/-70 degrees) the
+ *                   error is below 0.003% (3cm per km); beyond that it grows with the square of the distance.
+ *  > DK_HAVERSINE : Great-circle distance on the mean-radius sphere. Valid for any separation, but the spherical
+ *                   earth model introduces up to 0.5% error (typically ~0.2% at mid-latitudes).
+ *  > DK_VINCENTY  : Iterative Vincenty inverse solution on the WGS84 ellipsoid (same algorithm as the Android
+ *                   implementation): accurate to well below a millimetre, but the most expensive.
+ *  > DK_PROJECTED : Planar distance in a LocalProjection held by the kernel (see getProjection): the buffers which use
+ *                   the kernel project their points once, on entry, and from then on work in planar metres. The error
+ *                   is that of the projection: about tan(lat)*REANCHOR_DIST/R within its re-anchoring distance (~0.16%
+ *                   at 45 degrees), so it is looser than DK_EQUIRECT's away from the anchor.
+ *
+ * The equirectangular and projected modes keep a small cache and hence an instance should not be shared between threads.
+ */
+public class DistanceKernel
+{
+    //!< Mode Selection
+    public static final int DK_EQUIRECT  = 0;   //!< Equirectangular approximation with cached local radii
+    public static final int DK_HAVERSINE = 1;   //!< Haversine (Spherical) distance
+    public static final int DK_VINCENTY  = 2;   //!< Vincenty (Ellipsoidal) distance
+    public static final int DK_PROJECTED = 3;   //!< Planar distance in a (shared) local tangent-plane projection
+
+    //!< WGS84 Constants
+    private static final double WGS84_A   = 6378137.0;          //!< Semi-major axis (m)
+    private static final double WGS84_B   = 6356752.3142;       //!< Semi-minor axis (m)
+    private static final double WGS84_F   = (WGS84_A - WGS84_B)/WGS84_A;
+    private static final double WGS84_E2  = WGS84_F*(2.0 - WGS84_F);  //!< First Eccentricity Squared
+    private static final double MEAN_RAD  = 6371008.8;          //!< Mean Earth Radius (m)
+    private static final double DEG2RAD   = Math.PI/180.0;
+    private static final double CACHE_TOL = 0.001;              //!< Latitude movement (degrees) before the radii are recomputed
+    private static final int    MAX_ITERS = 20;                 //!< Maximum number of Vincenty iterations
+
+    //!< Member Constants
+    public final int MODE;
+    private final LocalProjection mProjection;  //!< The projection (only in DK_PROJECTED mode)
+
+    //!< Equirectangular Cache
+    private double mCacheLat;   //!< Latitude at which the scale factors were computed
+    private double mScaleLat;   //!< Metres per degree of Latitude
+    private double mScaleLon;   //!< Metres per degree of Longitude
+
+    /**
+     * \brief Constructor
+     * @param mode One of DK_EQUIRECT, DK_HAVERSINE, DK_VINCENTY or DK_PROJECTED
+     */
+    public DistanceKernel(int mode)
+    {
+        if (mode < DK_EQUIRECT || mode > DK_PROJECTED) { throw new IllegalArgumentException("Invalid Distance Mode " + mode); }
+        MODE = mode;
+        mProjection = (mode == DK_PROJECTED) ? new LocalProjection() : null;
+        updateScale(0.0);
+    }
+
+    /**
+     * \brief The local projection shared by all users of this kernel
+     * @return The projection, or null if the kernel is not in DK_PROJECTED mode
+     */
+    public LocalProjection getProjection()
+    {
+        return mProjection;
+    }
+
+    /**
+     * \brief Computes the distance between two points using the selected mode
+     * @param lat1  Latitude of the first point (degrees)
+     * @param lon1  Longitude of the first point (degrees)
+     * @param lat2  Latitude of the second point (degrees)
+     * @param lon2  Longitude of the second point (degrees)
+     * @return      The distance in metres
+     */
+    public float Distance(double lat1, double lon1, double lat2, double lon2)
+    {
+        switch (MODE)
+        {
+            case DK_EQUIRECT:
+                double mid_lat = 0.5*(lat1 + lat2);
+                if (Math.abs(mid_lat - mCacheLat) > CACHE_TOL) { updateScale(mid_lat); }
+                return (float)Equirectangular(lat1, lon1, lat2, lon2, mScaleLat, mScaleLon);
+
+            case DK_HAVERSINE:
+                return (float)Haversine(lat1, lon1, lat2, lon2);
+
+            case DK_PROJECTED:
+                mProjection.Update(lat1, lon1);
+                return LocalProjection.Distance(mProjection.East(lon1), mProjection.North(lat1), mProjection.East(lon2), mProjection.North(lat2));
+
+            default:
+                return (float)Vincenty(lat1, lon1, lat2, lon2);
+        }
+    }
+
+    /**
+     * \brief Planar distance given the (precomputed) scale factors
+     * @param scale_lat Metres per degree of Latitude
+     * @param scale_lon Metres per degree of Longitude
+     */
+    public static double Equirectangular(double lat1, double lon1, double lat2, double lon2, double scale_lat, double scale_lon)
+    {
+        double d_y = (lat2 - lat1)*scale_lat;
+        double d_x = wrapLongitude(lon2 - lon1)*scale_lon;
+        return Math.sqrt(d_x*d_x + d_y*d_y);
+    }
+
+    /**
+     * \brief Great-Circle distance on the mean-radius sphere
+     */
+    public static double Haversine(double lat1, double lon1, double lat2, double lon2)
+    {
+        double sin_lat = Math.sin(0.5*(lat2 - lat1)*DEG2RAD);
+        double sin_lon = Math.sin(0.5*wrapLongitude(lon2 - lon1)*DEG2RAD);
+        double h = sin_lat*sin_lat + Math.cos(lat1*DEG2RAD)*Math.cos(lat2*DEG2RAD)*sin_lon*sin_lon;
+        return 2.0*MEAN_RAD*Math.asin(Math.min(1.0, Math.sqrt(h)));
+    }
+
+    /**
+     * \brief Vincenty Inverse Solution on the WGS84 ellipsoid
+     */
+    public static double Vincenty(double lat1, double lon1, double lat2, double lon2)
+    {
+        double L  = wrapLongitude(lon2 - lon1)*DEG2RAD;
+        double U1 = Math.atan((1.0 - WGS84_F)*Math.tan(lat1*DEG2RAD));
+        double U2 = Math.atan((1.0 - WGS84_F)*Math.tan(lat2*DEG2RAD));
+
+        double sinU1 = Math.sin(U1), cosU1 = Math.cos(U1);
+        double sinU2 = Math.sin(U2), cosU2 = Math.cos(U2);
+
+        double lambda = L;
+        double sin_sigma = 0.0, cos_sigma = 1.0, sigma = 0.0, cos_sq_alpha = 1.0, cos_2sm = 0.0;
+        for (int i = 0; i < MAX_ITERS; i++)
+        {
+            double lambda_prev = lambda;
+            double sin_lambda = Math.sin(lambda), cos_lambda = Math.cos(lambda);
+            double t1 = cosU2*sin_lambda;
+            double t2 = cosU1*sinU2 - sinU1*cosU2*cos_lambda;
+
+            sin_sigma = Math.sqrt(t1*t1 + t2*t2);
+            if (sin_sigma == 0.0) { return 0.0; }   //Co-incident points
+            cos_sigma = sinU1*sinU2 + cosU1*cosU2*cos_lambda;
+            sigma     = Math.atan2(sin_sigma, cos_sigma);
+
+            double sin_alpha = cosU1*cosU2*sin_lambda/sin_sigma;
+            cos_sq_alpha = 1.0 - sin_alpha*sin_alpha;
+            cos_2sm      = (cos_sq_alpha == 0.0) ? 0.0 : cos_sigma - 2.0*sinU1*sinU2/cos_sq_alpha;
+
+            double C = WGS84_F/16.0*cos_sq_alpha*(4.0 + WGS84_F*(4.0 - 3.0*cos_sq_alpha));
+            lambda = L + (1.0 - C)*WGS84_F*sin_alpha*(sigma + C*sin_sigma*(cos_2sm + C*cos_sigma*(-1.0 + 2.0*cos_2sm*cos_2sm)));
+
+            if (Math.abs(lambda - lambda_prev) < 1e-12) { break; }
+        }
+
+        double u_sq = cos_sq_alpha*(WGS84_A*WGS84_A - WGS84_B*WGS84_B)/(WGS84_B*WGS84_B);
+        double A = 1.0 + u_sq/16384.0*(4096.0 + u_sq*(-768.0 + u_sq*(320.0 - 175.0*u_sq)));
+        double B = u_sq/1024.0*(256.0 + u_sq*(-128.0 + u_sq*(74.0 - 47.0*u_sq)));
+        double cos_2sm_sq = cos_2sm*cos_2sm;
+        double delta_sigma = B*sin_sigma*(cos_2sm + B/4.0*(cos_sigma*(-1.0 + 2.0*cos_2sm_sq) - B/6.0*cos_2sm*(-3.0 + 4.0*sin_sigma*sin_sigma)*(-3.0 + 4.0*cos_2sm_sq)));
+
+        return WGS84_B*A*(sigma - delta_sigma);
+    }
+
+    /**
+     * \brief Metres per degree of Latitude at the specified latitude (from the Meridional radius of curvature)
+     */
+    public static double MeridionalScale(double lat)
+    {
+        double sin_lat = Math.sin(lat*DEG2RAD);
+        double w_sq    = 1.0 - WGS84_E2*sin_lat*sin_lat;
+        return WGS84_A*(1.0 - WGS84_E2)/(w_sq*Math.sqrt(w_sq))*DEG2RAD;
+    }
+
+    /**
+     * \brief Metres per degree of Longitude at the specified latitude (Prime-Vertical radius of curvature, scaled by cos(lat))
+     */
+    public static double ParallelScale(double lat)
+    {
+        double sin_lat = Math.sin(lat*DEG2RAD);
+        return WGS84_A/Math.sqrt(1.0 - WGS84_E2*sin_lat*sin_lat)*Math.cos(lat*DEG2RAD)*DEG2RAD;
+    }
+
+    /**
+     * \brief Recomputes the (cached) local scale factors at the specified latitude
+     */
+    private void updateScale(double lat)
+    {
+        mCacheLat = lat;
+        mScaleLat = MeridionalScale(lat);
+        mScaleLon = ParallelScale(lat);
+    }
+
+    /**
+     * \brief Wraps a longitude difference into the range [-180, 180]
+     */
+    private static double wrapLongitude(double d_lon)
+    {
+        if (d_lon > 180.0)       { return d_lon - 360.0; }
+        else if (d_lon < -180.0) { return d_lon + 360.0; }
+        else                     { return d_lon; }
+    }
+}
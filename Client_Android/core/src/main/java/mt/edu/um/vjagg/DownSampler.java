@@ -20,6 +20,9 @@ package mt.edu.um.vjagg;
  * Performs a Downsampling operation.
  *
  * [Converted to using primitives]
+ *
+ * Only running sums of the latitude, longitude and time-stamp are kept, so adding points (and emitting the average)
+ * does not allocate or copy anything.
  */
 public class DownSampler
 {
@@ -30,18 +33,22 @@ public class DownSampler
     {
         /**
          * \brief Must be implemented by a class wishing to use the DownSample Functionality
-         * @param rp The Routepoint which is the averaged value passed to the downsampler
+         * @param lat   The averaged Latitude
+         * @param lon   The averaged Longitude
+         * @param time  The averaged Time-Stamp
          */
-        void OnDownSample(RoutePoint rp);
+        void OnDownSample(double lat, double lon, long time);
     }
 
     //!< Member Constants
     public final int DOWNSAMPLING_RATE; //!< The rate of downsampling: a 1 indicates no downsampling, 2 implies taking average over two samples etc...
 
     //!< Member Variables
-    private RoutePoint[]        mWindow;    //!< The actual circular buffer
+    private double              mSumLat;    //!< Running sum of the Latitudes in this window
+    private double              mSumLon;    //!< Running sum of the Longitudes in this window
+    private long                mSumTime;   //!< Running sum of the Time-Stamps in this window
     private int                 mFilled;    //!< How many are actually filled
-    private DownSampleHandler   mHandler;   //!< Reference to the downsampler
+    protected final DownSampleHandler mHandler; //!< Reference to the handler (also used by the KalmanSmoother)
 
     /**
      * \brief Constructor
@@ -56,28 +63,33 @@ public class DownSampler
     }
 
     /**
-     * \brief Add a Route Point
-     * \detail The function adds a new route-point to the downsampler: once specified amount reached, then call downsampler handler
-     * @param rp The RoutePoint to add
+     * \brief Add a Point
+     * \detail The function adds a new point to the downsampler: once specified amount reached, then call downsampler handler
+     * @param lat   The Latitude Value
+     * @param lon   The Longitude Value
+     * @param time  The Time-Stamp
      */
-    public void AddPoint(RoutePoint rp)
+    public void AddPoint(double lat, double lon, long time)
     {
         //Add the point
-        mWindow[mFilled++] = rp;
+        mSumLat  += lat;
+        mSumLon  += lon;
+        mSumTime += time;
 
         //If specified amount filled
-        if (mFilled == DOWNSAMPLING_RATE)
+        if (++mFilled == DOWNSAMPLING_RATE)
         {
             //Calculate Average
-            RoutePoint average = new RoutePoint();
-            for (RoutePoint pt : mWindow) { average.Add(pt); }
-            average.MultEq(1.0/mFilled);
+            double scale = 1.0/mFilled;
+            double lat_avg  = mSumLat*scale;
+            double lon_avg  = mSumLon*scale;
+            long   time_avg = Math.round(mSumTime*scale);
 
-            //Reset Filled Flag
-            mFilled = 0;
+            //Reset Sums
+            reset();
 
             //Call Handler
-            mHandler.OnDownSample(average);
+            mHandler.OnDownSample(lat_avg, lon_avg, time_avg);
         }
     }
 
@@ -95,11 +107,18 @@ public class DownSampler
      */
     public void flush()
     {
-        LogView.Debug("DS", "Flush");
-        //Deal with Window first
-        mWindow = new RoutePoint[DOWNSAMPLING_RATE];  //Recreate Window
-        for (int i=0; i<DOWNSAMPLING_RATE; i++) { mWindow[i] = new RoutePoint(); }
-        mFilled = 0;
+        DebugLog.Debug("DS", "Flush");
+        reset();
     }
 
+    /**
+     * \brief Resets the running sums
+     */
+    private void reset()
+    {
+        mSumLat  = 0.0;
+        mSumLon  = 0.0;
+        mSumTime = 0L;
+        mFilled  = 0;
+    }
 }
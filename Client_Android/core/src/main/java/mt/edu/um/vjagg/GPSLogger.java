@@ -0,0 +1,813 @@
+/**
+ *   Copyright (C) 2019  Michael Camilleri
+ *
+ * 	This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ *	License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * 	version.
+ *	This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ *	warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 	You should have received a copy of the GNU General Public License along with this program. If not, see
+ *	http://www.gnu.org/licenses/.
+ *
+ *	Author: Michael Camilleri
+ *
+ */
+
+package mt.edu.um.vjagg;
+
+/**
+ * \brief the GPS Logger class (Journey Detection)
+ * \detail This is independent of the Android framework: the inputs are the timestamped fixes (onNewLocation), the
+ *         satellite counts (OnSatellites) and the signal-loss timeout (OnSignalLoss), while detected journey segments are
+ *         passed on to the JourneyHandler.
+ */
+class GPSLogger implements DownSampler.DownSampleHandler, TimeGridResampler.GridHandler
+{
+    /**
+     * \brief Interface for Handling the output of the GPS Logger
+     */
+    interface JourneyHandler
+    {
+        /**
+         * \brief Called once for every downsampled window, before it is processed
+         */
+        void OnWindow();
+
+        /**
+         * \brief Called whenever a journey segment ends: the handler is responsible for storing it
+         * @param journey   The journey segment (ownership is passed to the handler)
+         * @param reason    The termination reason (one of the Journey.TC_ codes)
+         */
+        void OnJourneyEnd(Journey journey, int reason);
+    }
+
+    //===================== STATE CONTROL =====================//
+    static final int JOUR_INV   = -1; //!< Invalid State - Starts off here...
+    static final int JOUR_IDLE  =  0; //!< Idle and not logging to persistent storage
+    static final int JOUR_SRCH  =  1; //!< Searching for potential start point (as soon as two windows have been filled)
+    static final int JOUR_FIND  =  2; //!< Found Journey start... waiting for buffer to fill up to TERM_NUM_SUC_WIN
+    static final int JOUR_LOGD  =  3; //!< Fully Logging
+
+    //================= TERMINATION MEASURES ==================//
+    static final int TERM_DISPLACEMENT = 0; //!< Moved = straight-line displacement over the termination window
+    static final int TERM_EXTENT       = 1; //!< Moved = extent (bounding-box diagonal) of the termination window
+
+    //=================== SMOOTHING STAGES ====================//
+    static final int SMOOTH_BOXCAR = 0;     //!< Average every GPS_DOWNSAMPLE fixes into a window (DownSampler)
+    static final int SMOOTH_KALMAN = 1;     //!< Constant-velocity Kalman filter, emitting a window on every fix (KalmanSmoother)
+
+    //=================== TRANSITION TABLE ====================//
+    /**
+     * \brief Condition of a transition, evaluated on the newest window: it may advance the trigger chains
+     */
+    interface Guard
+    {
+        boolean Test();
+    }
+
+    /**
+     * \brief Side-effects of a transition (storage of the journey, moving the start/store pointers etc...)
+     */
+    interface Action
+    {
+        void Run();
+    }
+
+    /**
+     * \brief A row of the transition table
+     */
+    static final class Transition
+    {
+        final int    mFrom;     //!< The state this applies to
+        final Guard  mGuard;    //!< The condition for firing
+        final Action mAction;   //!< What to do when fired (may be null)
+        final int    mTo;       //!< The next state
+
+        Transition(int from, Guard guard, Action action, int to)
+        {
+            mFrom   = from;
+            mGuard  = guard;
+            mAction = action;
+            mTo     = to;
+        }
+    }
+
+    private static final int    STOP_UNKNOWN = Integer.MIN_VALUE;   //!< The stop point has not been looked up for this window
+    private static final String TAG         = "GL";
+
+    //======================= VARIABLES =======================//
+    private int             mState;         //!< The Journey State Controller
+    private DownSampler     mDownSampler;   //!< DownSampling framework
+    private KalmanSmoother  mSmoother;      //!< The same stage, if it is the Kalman filter (null otherwise)
+    private OutlierFilter   mOutliers;      //!< Ingestion filter for impossible fixes (null if disabled): kept for the lifetime of the logger, for its counters
+    private TimeGridResampler mGrid;        //!< Time-grid resampling of the fixes (null if disabled): likewise kept for its counters
+    private WindowBuffer    mPointBuffer;   //!< Individual Point Buffer
+    private SegmentBuffer   mWindBuffer;    //!< Average Point Buffer (with cached successive segments)
+    private MarkovChain     mStartSearch;   //!< Idle to Log state change markov buffer
+    private MarkovChain     mStopSearch;    //!< Streaming stop-trigger markov buffer (fed every window)
+    private int             mStopAge;       //!< Windows since the most recent stop trigger (mWindowSize if none in the buffer)
+    private SlidingExtent   mExtent;        //!< Extent of the termination window (only if TERM_EXTENT)
+    private int             mStartPtr;      //!< Start Pointer for Journey (actual data point): Note that this is the normalised index into the mRawBuffer... not cyclic...
+    private int             mStorePtr;      //!< The next item to store... on a call to store pointer...
+    private Journey         mJourney;       //!< The journey object
+    private DistanceKernel  mDistance;      //!< The distance kernel used for all window distances (and which holds the shared projection in DK_PROJECTED mode)
+    private final Transition[][] mTable;    //!< The transition table: rows for each state, tried in order
+    private final DetectorStats  mStats;    //!< Instrumentation counters (for the lifetime of the logger)
+    private long            mLastFix;       //!< Time-stamp of the last fix (0 if none since the start): for the time spent in each state
+    private float           mMoved;         //!< Per-window memo of getMoved (NaN until evaluated)
+    private int             mStopPoint;     //!< Per-window memo of the stop point (STOP_UNKNOWN until evaluated)
+    private int             mStartPoint;    //!< The restart point found by the last restart guard
+    private boolean         mBridging;      //!< A logged journey is being kept open across a signal loss (see OnSignalLoss)
+    private int             mBridgeStill;   //!< Consecutive accelerometer checks without motion while bridging
+    private double          mPrevLat;       //!< The last fix passed on after the outlier filter (where any bridge starts from)
+    private double          mPrevLon;
+    private long            mPrevTime;      //!< (0 if none since the start)
+    private long            mPrevStep;      //!< The spacing of the last two fixes passed on (the interval they were requested at)
+
+    private JourneyHandler  mHandler;       //!< The output handler
+    private final LoggingParams mParams;    //!< The detection parameters
+    private final int       mPntBufferSize; //!< Size of the individual point buffer (GPS_WINDOW_SIZE * GPS_DOWNSAMPLE)
+
+    //!< Public Constructor (with the default parameters)...
+    GPSLogger(JourneyHandler handler)
+    {
+        this(new LoggingParams(), handler);
+    }
+
+    /**
+     * \brief Constructor with a specific parameter set
+     * @param params    The detection parameters: these are not copied (unless the Kalman stage is selected, in which case
+     *                  the per-fix equivalent is used), and must not change while logging
+     * @param handler   The output handler
+     */
+    GPSLogger(LoggingParams params, JourneyHandler handler)
+    {
+        mState = JOUR_INV;  //Start off Invalid
+        mParams        = (params.mSmoothMode == SMOOTH_KALMAN) ? params.PerFix() : params;
+        mPntBufferSize = params.mWindowSize * params.mDownSample;
+
+        //Initialise Variables
+        mDownSampler = null;
+        mSmoother    = null;
+        mPointBuffer = null;
+        mWindBuffer  = null;
+        mStartSearch = null;
+        mStopSearch  = null;
+        mExtent      = null;
+        mJourney     = null;
+        mDistance    = new DistanceKernel(mParams.mDistMode);
+        mOutliers    = (mParams.mOutWindow > 0) ? new OutlierFilter(mParams.mOutWindow, mParams.mOutFactor, mParams.mOutMinVel, mParams.mOutMaxVel, mDistance) : null;
+        mGrid        = (mParams.mGridStep > 0) ? new TimeGridResampler(mParams.mGridStep, mParams.mGridMaxGap, this) : null;
+        mTable       = BuildTable();
+        mStats       = new DetectorStats();
+        mLastFix     = 0;
+        mPrevTime    = 0;
+        mPrevStep    = LoggingParams.GPS_SAMPLE_RATE;
+        mBridging    = false;
+        FlushStart(-1);
+
+        //Keep Track of the Handler
+        mHandler = handler;
+    }
+
+    //========================= State Control =========================//
+
+    /**
+     * \brief Should be called before the first location is given.. used to initialise everything...
+     */
+    boolean OnStart()
+    {
+        DebugLog.Debug(TAG, "start");
+        //Ensure we have indeed not started yet!
+        if (mState > JOUR_INV) { DebugLog.Warn(TAG, "already-active"); return false; }
+
+        //Invalidate Pointers
+        FlushStart(-1);
+        if (mOutliers != null) { mOutliers.flush(); }
+        if (mGrid != null) { mGrid.flush(); }
+        mLastFix  = 0;
+        mPrevTime = 0;
+        mPrevStep = LoggingParams.GPS_SAMPLE_RATE;
+        mBridging = false;
+
+        //Initialise buffers and down-sampler
+        mSmoother    = (mParams.mSmoothMode == SMOOTH_KALMAN) ? new KalmanSmoother(mParams.mKfAccel, mParams.mKfNoise, mDistance, this) : null;
+        mDownSampler = (mSmoother != null) ? mSmoother : new DownSampler(mParams.mDownSample, this);
+        mWindBuffer  = new SegmentBuffer(mParams.mWindowSize, mDistance);
+        mPointBuffer = new WindowBuffer(mPntBufferSize);
+        mStartSearch = new MarkovChain(mParams.mVelStTrig, mParams.mVelStTotal, mParams.mVelStNum);
+        mStopSearch  = new MarkovChain(mParams.mVelEnTrig, mParams.mVelEnTotal, mParams.mVelEnNum);
+        mStopAge     = mParams.mWindowSize;
+        mExtent      = (mParams.mTermMode == TERM_EXTENT) ? new SlidingExtent(mParams.mTermWind, mDistance) : null;
+
+        //Note that I do not initialise the journey here: this is done within the respective state changes, while the markov chains are only refreshed....
+
+        //Set State
+        mState = JOUR_IDLE;
+
+        //If OK so far, return true...
+        return true;
+    }
+
+    /**
+     * \brief Called when the GPS signal is lost for an extended amount of time...
+     * \detail If bridging is enabled (GPS_BRIDGE_MAX), a fully logged journey is instead kept open (with all the buffers) until
+     *         the fixes return, when the gap is reconciled (see Reconcile). The signal-loss watchdog keeps firing while the
+     *         fixes are away: a repeated loss ends the bridge (as a rejected one) once the gap exceeds GPS_BRIDGE_MAX, so
+     *         that the limit holds (to within GPS_NOSAT_TO) even if the fixes never return.
+     * @param time The time of the loss (on the same clock as the fix time-stamps)
+     */
+    void OnSignalLoss(long time)
+    {
+        DebugLog.Debug(TAG, "loss");
+        if (mBridging)
+        {
+            if (time - mPrevTime <= mParams.mBridgeMax) { return; }
+            DebugLog.Info(TAG, "bridge-expire " + (time - mPrevTime));
+            mStats.mBridgeRejects++;
+            mBridging = false;
+            EndOnLoss();
+            return;
+        }
+        if (mState >= JOUR_FIND && mParams.mBridgeMax > 0 && mPrevTime > 0)
+        {
+            DebugLog.Info(TAG, "bridge");
+            mStats.mBridges++;
+            mBridging    = true;
+            mBridgeStill = 0;
+            return;
+        }
+        EndOnLoss();
+    }
+
+    /**
+     * \brief Motion evidence (from an accelerometer check) while bridging: ignored otherwise
+     * \detail GPS_BRIDGE_STILL checks in a row without motion mean that the journey most likely ended during the gap, and
+     *         it is then ended as on a signal loss, without waiting for the fixes.
+     * @param moving Whether the check passed
+     */
+    void OnMotion(boolean moving)
+    {
+        if (!mBridging) { return; }
+        if (moving) { mBridgeStill = 0; return; }
+        if (++mBridgeStill >= mParams.mBridgeStill)
+        {
+            DebugLog.Info(TAG, "bridge-still");
+            mStats.mBridgeRejects++;
+            mBridging = false;
+            EndOnLoss();
+        }
+    }
+
+    /**
+     * \brief Whether a journey is being kept open across a signal loss
+     */
+    boolean IsBridging()
+    {
+        return mBridging;
+    }
+
+    /**
+     * \brief End any active journey on a loss of signal (at the last stop point found if any), and go back to idle
+     */
+    private void EndOnLoss()
+    {
+        mStats.mSignalLosses++;
+        //First Clean Up Journey if need be
+        if (mState >= JOUR_FIND)
+        {
+            DebugLog.Info(TAG, "Jour active");
+
+            //Find the Stop Point
+            int stop_point = findStop(GetStartWindow()-mParams.mVelEnNum);
+            DebugLog.Debug(TAG, "stop @ " + Integer.toString(stop_point));
+
+            //Copy Journey up to stop point or 0
+            StoreEntire(Math.max(stop_point, 0));
+            mHandler.OnJourneyEnd(mJourney, (stop_point >= 0) ? Journey.TC_RE_SF : Journey.TC_RE_SL);
+        }
+
+        //Change State
+        mState = JOUR_IDLE;  //Start from the idle invalid state...
+
+        //Prepare for it
+        mWindBuffer.flush();
+        mPointBuffer.flush();
+        mDownSampler.flush();
+        if (mExtent != null) { mExtent.flush(); }
+        if (mOutliers != null) { mOutliers.flush(); }
+        if (mGrid != null) { mGrid.flush(); }
+        FlushStart(-1);
+    }
+
+    /**
+     * \brief Called when stopping GPS logging (due to some reason or another)
+     */
+    void onStop(boolean user)
+    {
+        DebugLog.Debug(TAG, "stop");
+        if (mState >= JOUR_FIND)
+        {
+            DebugLog.Info(TAG, "Jour active");
+
+            //Find the Stop Point
+            int stop_point = findStop(GetStartWindow()-mParams.mVelEnNum);
+            DebugLog.Debug(TAG, "stop @ " + Integer.toString(stop_point));
+
+            //Copy Journey up to stop point or 0 (a bridge which never closed is a loss of signal after all)
+            StoreEntire(Math.max(stop_point, 0));
+            if (mBridging && !user) { mHandler.OnJourneyEnd(mJourney, (stop_point >= 0) ? Journey.TC_RE_SF : Journey.TC_RE_SL); }
+            else                    { mHandler.OnJourneyEnd(mJourney, user ? Journey.TC_RE_US : Journey.TC_RE_OS); }
+        }
+        mBridging = false;
+
+        mDownSampler = null;
+        mSmoother    = null;
+        mPointBuffer = null;
+        mWindBuffer  = null;
+        mStartSearch = null;
+        mStopSearch  = null;
+        mExtent      = null;
+        mJourney     = null;
+
+        mState = JOUR_INV;
+    }
+
+    /**
+     * \brief Called on every satellite status update
+     * @param used_in_fix The number of satellites used in the fix
+     * @return            True if the signal is good enough: the caller should then reset its signal-loss (GPS_NOSAT_TO) timeout
+     */
+    boolean OnSatellites(int used_in_fix)
+    {
+        return used_in_fix >= mParams.mMinSats;
+    }
+
+    /**
+     * \brief Indicates if a journey is active...
+     * @return
+     */
+    public boolean IsActive()
+    {
+        return mState > JOUR_SRCH;
+    }
+
+    /**
+     * \brief Returns the current detection state (JOUR_ constants): for diagnostics and benchmarks only
+     */
+    int getState()
+    {
+        return mState;
+    }
+
+    /**
+     * \brief Current speed estimate (e.g. for adaptive sampling)
+     * \detail The Kalman filter velocity if that stage is used, otherwise the average over the last (up to GPS_VEL_ST_NUM)
+     *         window segments
+     * @return The speed in m/ms, or -1 if not yet known
+     */
+    float getSpeed()
+    {
+        if (mSmoother != null) { return (float)(mSmoother.getSpeed()/1000.0); }
+        if (mWindBuffer == null || !mWindBuffer.getFilledFirst(2)) { return -1.0f; }
+
+        int num = mWindBuffer.getFilledFirst(mParams.mVelStNum + 1) ? mParams.mVelStNum : 1;
+        return mWindBuffer.getDisplacement(num, 0)/mWindBuffer.getElapsed(num, 0);
+    }
+
+    /**
+     * \brief Returns the outlier filter (for its rejection counters), or null if it is disabled
+     */
+    OutlierFilter getOutliers()
+    {
+        return mOutliers;
+    }
+
+    /**
+     * \brief Snapshot of the instrumentation counters (cumulative over the lifetime of the logger)
+     */
+    DetectorStats getStats()
+    {
+        return new DetectorStats(mStats);
+    }
+
+    /**
+     * \brief Returns the time-grid resampler (for its counters), or null if it is disabled
+     */
+    TimeGridResampler getResampler()
+    {
+        return mGrid;
+    }
+
+    //======================= Tracking Implementation =======================//
+
+    /**
+     * \brief Envisioned to be called each time there is a new GPS point: nothing is allocated per fix
+     * \detail Physically impossible fixes (see OutlierFilter) are dropped before anything else. If time-grid resampling
+     *         is enabled, the rest of the pipeline (including the stored journey) sees the grid points instead of the fixes.
+     * @param lat   The Latitude of the fix
+     * @param lon   The Longitude of the fix
+     * @param time  The Time-Stamp of the fix
+     */
+    public void onNewLocation(double lat, double lon, long time)
+    {
+        //Account for the fix (and the time since the last) in the current state
+        if (mState > JOUR_INV)
+        {
+            mStats.mFixes[mState]++;
+            if (mLastFix > 0 && time > mLastFix) { mStats.mTime[mState] += time - mLastFix; }
+            mLastFix = time;
+        }
+
+        if (mOutliers != null && !mOutliers.Accept(lat, lon, time)) { DebugLog.Debug(TAG, "outlier"); return; }
+
+        if (mBridging) { Reconcile(lat, lon, time); }
+        Ingest(lat, lon, time);
+    }
+
+    /**
+     * \brief Pass an (accepted) fix on to the resampling or buffering stage
+     */
+    private void Ingest(double lat, double lon, long time)
+    {
+        if (mPrevTime > 0 && time > mPrevTime) { mPrevStep = time - mPrevTime; }
+        mPrevLat  = lat;
+        mPrevLon  = lon;
+        mPrevTime = time;
+
+        if (mGrid != null) { mGrid.AddPoint(lat, lon, time); }
+        else               { OnGridPoint(lat, lon, time); }
+    }
+
+    /**
+     * \brief Close a bridge on the first fix after it: the gap is either filled in, or the journey is ended as on the loss
+     * \detail The gap is rejected if it is longer than GPS_BRIDGE_MAX, or if covering it would take more than the maximum
+     *         plausible speed (GPS_OUT_MAX_VEL). Otherwise, it is filled in with points along the straight line (at constant
+     *         speed) to the new fix, spaced at GPS_GRID_STEP if the grid is on, or else at the interval the fixes were
+     *         coming in at before the loss (which follows the adaptive sampling rate): these go through the rest of the pipeline as fixes would, so that
+     *         the journey (and the detection state) simply carries on.
+     * @param lat   The Latitude of the new fix
+     * @param lon   The Longitude of the new fix
+     * @param time  The Time-Stamp of the new fix
+     */
+    private void Reconcile(double lat, double lon, long time)
+    {
+        mBridging = false;
+        long gap = time - mPrevTime;
+        if (gap <= 0 || gap > mParams.mBridgeMax || mDistance.Distance(mPrevLat, mPrevLon, lat, lon) > mParams.mOutMaxVel*gap)
+        {
+            DebugLog.Info(TAG, "bridge-reject " + gap);
+            mStats.mBridgeRejects++;
+            EndOnLoss();
+            return;
+        }
+
+        DebugLog.Info(TAG, "bridge-join " + gap);
+        mStats.mBridgeJoins++;
+        double from_lat = mPrevLat, from_lon = mPrevLon;
+        long   from     = mPrevTime;
+        long   step     = (mParams.mGridStep > 0) ? mParams.mGridStep : mPrevStep;
+        for (long t = from + step; t < time; t += step)
+        {
+            double f = (t - from)/(double)gap;
+            Ingest(from_lat + f*(lat - from_lat), from_lon + f*(lon - from_lon), t);
+        }
+    }
+
+    /**
+     * \brief Batched version of onNewLocation: the fixes (oldest first) are processed in one pass
+     * \detail This is for batched location delivery, where the provider holds back fixes and hands them over together: the
+     *         caller can then do its per-fix book-keeping (journey timeout, logging) once per batch.
+     * @param lats  The Latitudes of the fixes
+     * @param lons  The Longitudes of the fixes
+     * @param times The Time-Stamps of the fixes
+     * @param num   The number of fixes in the batch (the arrays may be longer)
+     * @return      True if a journey was active (IsActive) after any of the fixes
+     */
+    public boolean onNewLocations(double[] lats, double[] lons, long[] times, int num)
+    {
+        boolean active = false;
+        for (int i = 0; i < num; i++)
+        {
+            onNewLocation(lats[i], lons[i], times[i]);
+            active |= (mState > JOUR_SRCH);
+        }
+        return active;
+    }
+
+    /**
+     * \brief Internal: a (resampled) point for the point buffer and the smoothing stage
+     * @param lat   The Latitude
+     * @param lon   The Longitude
+     * @param time  The Time-Stamp
+     */
+    public void OnGridPoint(double lat, double lon, long time)
+    {
+        //First Store any pending data which would be lost with this iteration. This will be ignored if stateless...
+        StorePending(lat, lon, time);
+
+        //Add to Downsampler
+        mDownSampler.AddPoint(lat, lon, time);
+    }
+
+    /**
+     * \brief Internal: the gap is not filled in, so the next window segment simply spans it (with its true duration)
+     */
+    public void OnGap(long from, long to)
+    {
+        DebugLog.Debug(TAG, "gap " + (to - from));
+    }
+
+    /**
+     * \brief Internal: advance the detection state machine with the new window
+     * \detail The rows of the transition table for the current state are tried in order, and the first one whose guard holds
+     *         fires (its action is run, and the state changes): if none does, the state is retained.
+     * @param lat   The averaged Latitude passed by the downsampler
+     * @param lon   The averaged Longitude passed by the downsampler
+     * @param time  The averaged Time-Stamp passed by the downsampler
+     */
+    public void OnDownSample(double lat, double lon, long time)
+    {
+        //Inform Handler (e.g. for Battery Logging)
+        mHandler.OnWindow();
+
+        //Initialise prerequisites...
+        mWindBuffer.AddPoint(lat, lon, time);
+        if (mSmoother != null && mWindBuffer.getFilledFirst(2)) { mWindBuffer.SetSegSpeed((float)(mSmoother.getSpeed()/1000.0)); } //Trigger on the filtered speed
+        UpdateStop();
+        if (mExtent != null) { mExtent.AddPoint(mWindBuffer); }
+        mMoved     = Float.NaN;     //Per-window memos: evaluated by the guards on demand
+        mStopPoint = STOP_UNKNOWN;
+        mStats.mWindows[mState]++;
+
+        //State Change Logic
+        int next_state = mState;    //State initialised to current state
+        Transition[] rows = mTable[mState];
+        for (int i = 0; i < rows.length; i++)
+        {
+            if (rows[i].mGuard.Test())
+            {
+                if (rows[i].mAction != null) { rows[i].mAction.Run(); }
+                next_state = rows[i].mTo;
+                break;
+            }
+        }
+
+        //Update State
+        mStats.mTransitions[mState][next_state]++;
+        mState = next_state;
+    }
+
+    //======================= Transition Table =======================//
+
+    /**
+     * \brief Builds the transition table: the guards and actions are bound to this logger
+     * @return The rows, indexed by the (from) state
+     */
+    private Transition[][] BuildTable()
+    {
+        //===== Guards =====//
+        final Guard filled = new Guard()        //Two windows, i.e. one segment
+        {
+            @Override
+            public boolean Test() { return mWindBuffer.getFilledFirst(2); }
+        };
+        final Guard start_trigger = new Guard() //The start chain triggers on the newest segment
+        {
+            @Override
+            public boolean Test() { mStats.mStartChecks++; return mStartSearch.CheckMinTrigger(mWindBuffer.getSegDistance(0), mWindBuffer.getSegTime(0), mWindBuffer, 0); }
+        };
+        final Guard accumulated = new Guard()   //The journey spans the termination window
+        {
+            @Override
+            public boolean Test() { return GetStartWindow() >= mParams.mTermWind - 1; }
+        };
+        final Guard not_moved = new Guard()     //Did not move enough over the termination window
+        {
+            @Override
+            public boolean Test() { return getMovedOnce() < mParams.mTermDistTot; }
+        };
+        final Guard stopped = new Guard()       //...and a stop point was found
+        {
+            @Override
+            public boolean Test() { return not_moved.Test() && getStopOnce() > mParams.mVelEnNum; }
+        };
+        final Guard restart = new Guard()       //...and a new start after it
+        {
+            @Override
+            public boolean Test() { return stopped.Test() && (mStartPoint = findStart(getStopOnce() - 1)) > 0; }
+        };
+
+        //===== Actions =====//
+        final Action begin_search = new Action()
+        {
+            @Override
+            public void Run()
+            {
+                DebugLog.Debug(TAG, "Fill 2");
+                mStartSearch.Refresh();
+                start_trigger.Test();   //Seed the chain with the first segment
+                FlushStart(-1);
+            }
+        };
+        final Action begin_journey = new Action()
+        {
+            @Override
+            public void Run()
+            {
+                DebugLog.Debug(TAG, "Found");
+                FlushStart(mParams.mVelStNum); //These points are already part of the journey: since the velocities are one less than windows this coincides with 0-based indexing
+                mJourney = new Journey(); //Prepare the Journey
+            }
+        };
+        final Action begin_logging = new Action()
+        {
+            @Override
+            public void Run() { DebugLog.Debug(TAG, "Accumulated"); }
+        };
+        final Action end_restart = new Action()
+        {
+            @Override
+            public void Run()
+            {
+                DebugLog.Info(TAG, "Stop @ " + mStopPoint);
+                StoreEntire(mStopPoint);
+                DebugLog.Debug(TAG, "End @ ".concat(Integer.toString(mStopPoint)).concat(" & start @ win").concat(Integer.toString(mStartPoint)));
+                FlushStart(mStartPoint);
+                mHandler.OnJourneyEnd(mJourney, Journey.TC_RE_NM);
+                mJourney = new Journey(); //Prepare the Journey
+            }
+        };
+        final Action end_search = new Action()
+        {
+            @Override
+            public void Run()
+            {
+                DebugLog.Info(TAG, "Stop @ " + mStopPoint);
+                StoreEntire(mStopPoint);
+                DebugLog.Debug(TAG, "End @ ".concat(Integer.toString(mStopPoint)));
+                FlushStart(-1); //Go to search but retain Markov Chain State which may have a partial trigger
+                mHandler.OnJourneyEnd(mJourney, Journey.TC_RE_NM);
+            }
+        };
+        final Action end_no_stop = new Action() //TODO Consider just remaining in this state if this is the case...
+        {
+            @Override
+            public void Run()
+            {
+                DebugLog.Info(TAG, "No Stop");
+                StoreEntire(0);
+                FlushStart(-1);
+                mStartSearch.Refresh();
+                mHandler.OnJourneyEnd(mJourney, Journey.TC_RE_NM);
+            }
+        };
+
+        //===== Table =====//
+        Transition[][] table = new Transition[JOUR_LOGD + 1][];
+        table[JOUR_IDLE] = new Transition[] { new Transition(JOUR_IDLE, filled, begin_search, JOUR_SRCH) };
+        table[JOUR_SRCH] = new Transition[] { new Transition(JOUR_SRCH, start_trigger, begin_journey, JOUR_FIND) };
+        table[JOUR_FIND] = new Transition[] { new Transition(JOUR_FIND, accumulated, begin_logging, JOUR_LOGD) };
+        table[JOUR_LOGD] = new Transition[] { new Transition(JOUR_LOGD, restart, end_restart, JOUR_FIND),
+                                              new Transition(JOUR_LOGD, stopped, end_search,  JOUR_SRCH),
+                                              new Transition(JOUR_LOGD, not_moved, end_no_stop, JOUR_SRCH) };
+        return table;
+    }
+
+    /**
+     * \brief getMoved, evaluated at most once per window
+     */
+    private float getMovedOnce()
+    {
+        if (Float.isNaN(mMoved)) { mMoved = getMoved(); }
+        return mMoved;
+    }
+
+    /**
+     * \brief The stop point over the termination window (findStop), evaluated at most once per window
+     */
+    private int getStopOnce()
+    {
+        if (mStopPoint == STOP_UNKNOWN) { mStopPoint = findStop(mParams.mTermWind - 1); }
+        return mStopPoint;
+    }
+
+    //======================== Storage Control ========================//
+    private void FlushStart(int window)
+    {
+        DebugLog.Debug(TAG, "flush");
+        if (window > -1) { mStorePtr = mStartPtr = (window+1)*mParams.mDownSample - 1;  } //Since for the zeroth window, the first (oldest) point is point DOWNSAMPLE_RATE-1
+        else             { mStorePtr = 0; mStartPtr = -1; }
+    }
+
+    private void StorePending(double lat, double lon, long time)
+    {
+        DebugLog.Debug(TAG, "store-pend");
+        //First Store any point which may be lost...
+        if ((mStartPtr == mPntBufferSize-1) && (mStorePtr == mStartPtr))
+        {
+            mJourney.addPoint(mPointBuffer.getPoint(mStartPtr));
+            mStorePtr--;
+        }
+
+        //Now Add point to buffer
+        mPointBuffer.AddPoint(lat, lon, time);
+
+        //Now update the start/store pointers
+        if (mStartPtr > -1)
+        {
+            mStorePtr = Math.min(mStorePtr + 1, mPntBufferSize - 1); //Update the Storage pointer (which is the next point to be stored if needed...
+            mStartPtr = Math.min(mStartPtr + 1, mPntBufferSize - 1);
+        }
+    }
+
+    private void StoreEntire(int end_window)
+    {
+        DebugLog.Debug(TAG, "store-all");
+        //Modify end_window to point to correct raw point
+        int end_point = end_window*mParams.mDownSample + mDownSampler.GetProcessed(); //Calculation involves the fact that if we are at window 1, then the last point is point 3, first point is point 5 (or 6-1)
+
+        if ((mStorePtr <= mStartPtr) && (mStorePtr >= end_point)) //Copy only if store pointer is between start pointer and end pointer
+        {
+            //Copy all from store pointer up to end pointer. Now the End pointer is a window... but since the call to StoreEntire can happen
+            //  from the GPS Timeout Handler, which is asynchronous, other samples may have gotten in since the last window update.
+            //  Hence, the window boundary will have moved as well... to this end, we need to move the lower limit by the number of samples
+            //  processed so far, which can be anywhere from 0 up to the DOWNSAMPLE_RATE-2.
+            for (int i=mStorePtr; i >= end_point; i--)
+            {
+                mJourney.addPoint(mPointBuffer.getPoint(i));
+            }
+
+            //Clean up
+            mStorePtr = end_window*mParams.mDownSample - 1;
+        }
+    }
+
+    //=========================== Stop Tracking ===========================//
+
+    /**
+     * \brief Feed the newest window to the streaming stop chain
+     * \detail A stop trigger only depends on the last mVelEnNum+1 windows (the chain needs that many successive slow
+     *         segments), and hence the trigger for each window can be decided once, as it arrives, rather than by
+     *         rescanning the buffer: only the age of the most recent one need be kept.
+     */
+    private void UpdateStop()
+    {
+        if (mWindBuffer.getFilledFirst(2))
+        {
+            mStats.mStopChecks++;
+            if (mStopSearch.CheckMaxTrigger(mWindBuffer.getSegDistance(0), mWindBuffer.getSegTime(0), mWindBuffer, 0)) { mStopAge = 0; }
+            else { mStopAge = Math.min(mStopAge + 1, mParams.mWindowSize); }
+        }
+        else
+        {
+            mStopSearch.Refresh();   //First window since a flush: nothing before it is valid
+            mStopAge = mParams.mWindowSize;
+        }
+    }
+
+    /**
+     * \brief How much the subject moved over the termination window (according to the selected measure)
+     */
+    private float getMoved()
+    {
+        return (mExtent != null) ? mExtent.getExtent() : mWindBuffer.getDisplacement(mParams.mTermWind - 1, 0);
+    }
+
+    //============================= Utilities =============================//
+    /**
+     * \brief  Retrieve the window containing valid points
+     * @return Start Window
+     */
+    private int GetStartWindow()
+    {
+        return (int)(Math.floor((mStartPtr + 1.0d)/mParams.mDownSample) - 1); //TODO this can be causing problems! need to verify that working ok...
+    }
+
+    /**
+     * \brief  Attempts to identify the stopping point of the journey...
+     * \detail This is O(1): the most recent stop trigger is tracked as the windows arrive (see UpdateStop). It is only
+     *         valid if all the windows it depends on (up to mVelEnNum older than it) lie within the search range.
+     * @param start The index from where to start searching
+     * @return      The index of the last journey point which is valid...This points to the window before the end-trigger... -1 if none could be identified
+     */
+    int findStop(int start)
+    {
+        mStats.mStopSearches++;
+        return (mStopAge <= start - mParams.mVelEnNum) ? mStopAge + mParams.mVelEnNum : -1; //We need to point to the window just before the stop trigger...
+    }
+
+    /**
+     * \brief  Attempts to identify a potential Journey-Start trigger
+     * \detail Note that this uses the actual member Markov Chain buffer, hence if at return time no full trigger was found, its state reflects the current MC state
+     * @param start The start position from which to search (will search until the most recent)
+     * @return      The index of the tentative start point or -1 if fails to find a valid one
+     */
+    private int findStart(int start)
+    {
+        mStats.mStartScans++;
+        int fndIdx = mStartSearch.ScanBackward(MarkovChain.MC_MIN, mWindBuffer, start, true); //Refreshes, since we do not know the last time we used it...
+
+        return (fndIdx < 0) ? -1 : fndIdx+3;
+    }
+}
@@ -15,10 +15,6 @@
 
 package mt.edu.um.vjagg;
 
-import com.google.android.gms.maps.model.LatLng;
-import com.google.android.gms.maps.model.LatLngBounds;
-import com.google.android.gms.maps.model.PolylineOptions;
-
 import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.DataInputStream;
@@ -63,8 +59,11 @@ public class Journey
     private int  mMode;                     //!< Mode of transport
     private int  mPurpose;                  //!< Purpose of Journey
 
-    //!< Visualisation Variables
-    private LatLngBounds mBounds;    //!< Journey Bounds
+    //!< Visualisation Variables (Journey Bounds)
+    private double mNorth;   //!< Maximum Latitude
+    private double mSouth;   //!< Minimum Latitude
+    private double mEast;    //!< Maximum Longitude
+    private double mWest;    //!< Minimum Longitude
 
     //!< Debugging
     public static final String TAG = "J";
@@ -86,6 +85,7 @@ public class Journey
      */
     public boolean addPoint(RoutePoint point) {
         if (point.mTimeSt > 0) {
+            includeBounds(point);   //Keep the bounds valid for journeys built in memory (e.g. when replaying)
             return mBuffer.add(point);
         }     //Just in case to avoid storing 0 values...
         else {
@@ -100,7 +100,7 @@ public class Journey
      * @return
      */
     public boolean appendJourney(Journey journey) {
-        LogView.Debug(TAG, "append");
+        DebugLog.Debug(TAG, "append");
         //Deal with the Termination Condition first
         int otr_reason = journey.mTermRsn;
         while (otr_reason > 0)          //Shift to the left to accomodate new journey
@@ -118,11 +118,10 @@ public class Journey
         }
 
         //Finally recalculate Bounds
-        LatLngBounds.Builder bounds = new LatLngBounds.Builder();
+        resetBounds();
         for (RoutePoint rp : this.mBuffer) {
-            bounds.include(new LatLng(rp.mLatitude, rp.mLongitude));
+            includeBounds(rp);
         }
-        mBounds = bounds.build();
 
         return true;
     }
@@ -155,13 +154,14 @@ public class Journey
      */
     public void flush()
     {
-        LogView.Debug(TAG, "flush");
+        DebugLog.Debug(TAG, "flush");
         mBuffer = new ArrayList<>(BUFFER_CAPACITY);
         mTermRsn = TC_UNSPEC;
         mIdent = System.currentTimeMillis();
 
         mMode    = MD_UNSPEC;
         mPurpose = TP_UNSPEC;
+        resetBounds();
     }
 
     ////============================ Buffer Serialization Functions ===========================////
@@ -174,14 +174,14 @@ public class Journey
      */
     public Exception storeRoute(int reason, File file)
     {
-        LogView.Debug(TAG, "store");
+        DebugLog.Debug(TAG, "store");
         try
         {
             DataOutputStream strm = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, true)));
 
             if (mBuffer.size() < 1)
             {
-                LogView.Error(TAG, "Size=0");
+                DebugLog.Error(TAG, "Size=0");
                 return null;    //Do not store
             }
 
@@ -221,7 +221,7 @@ public class Journey
      */
     public Exception loadRoute(BufferedInputStream reader)
     {
-        LogView.Debug(TAG, "load");
+        DebugLog.Debug(TAG, "load");
         try
         {
             DataInputStream strm = new DataInputStream(reader);
@@ -236,14 +236,12 @@ public class Journey
 
             //Read in the data (and also build bounds for later use)
             mBuffer = new ArrayList<>(len);
-            LatLngBounds.Builder bounds = new LatLngBounds.Builder();
+            resetBounds();
             for (int i = 0; i < len; ++i)
             {
                 mBuffer.add(new RoutePoint(strm)); //Add point
-                bounds.include(new LatLng(mBuffer.get(i).mLatitude, mBuffer.get(i).mLongitude));
+                includeBounds(mBuffer.get(i));
             }
-
-            mBounds = bounds.build();
         }
         catch (Exception e)
         {
@@ -257,44 +255,25 @@ public class Journey
     ////============================ Buffer Display Functions ===========================////
 
     /**
-     * \brief   Return the Bounds of the journey
-     *
-     * @return A LatLngBounds object
+     * \brief   Return the Bounds of the journey (valid after a load or append)
+     * @return  The Maximum Latitude
      */
-    LatLngBounds getBounds()
-    {
-        return mBounds;
-    }
-
-    PolylineOptions getPolyLine(int width, int clr)
-    {
-        PolylineOptions options = new PolylineOptions();
-        for (RoutePoint rp : mBuffer)
-        {
-            options.add(new LatLng(rp.mLatitude, rp.mLongitude));
-        }
-        options.width(width).color(clr);
+    public double getNorth() { return mNorth; }
 
-        return options;
-    }
+    /**
+     * @return  The Minimum Latitude
+     */
+    public double getSouth() { return mSouth; }
 
-    public String getTitle() {
-        if (mBuffer.size() < 1) {
-            return "Invalid Journey";
-        } else {
-            return Utilities.ConvertDate(mBuffer.get(0).mTimeSt);
-        }
-    }
+    /**
+     * @return  The Maximum Longitude
+     */
+    public double getEast() { return mEast; }
 
-    public String getTimes() {
-        if (mBuffer.size() < 1) {
-            return "Invalid Journey";
-        } else {
-            return "[" + Utilities.ConvertTime(mBuffer.get(0).mTimeSt) + "] - ["
-                    + Utilities.ConvertTime(mBuffer.get(mBuffer.size() - 1).mTimeSt)
-                    + "]";
-        }
-    }
+    /**
+     * @return  The Minimum Longitude
+     */
+    public double getWest() { return mWest; }
 
     public String getStrMode()
     {
@@ -354,6 +333,26 @@ public class Journey
         }
     }
 
+    /**
+     * \brief Invalidate the Bounds so that they can be rebuilt
+     */
+    private void resetBounds()
+    {
+        mNorth = mEast = Double.NEGATIVE_INFINITY;
+        mSouth = mWest = Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * \brief Extend the Bounds to include the point
+     */
+    private void includeBounds(RoutePoint rp)
+    {
+        mNorth = Math.max(mNorth, rp.mLatitude);
+        mSouth = Math.min(mSouth, rp.mLatitude);
+        mEast  = Math.max(mEast,  rp.mLongitude);
+        mWest  = Math.min(mWest,  rp.mLongitude);
+    }
+
     //// ========================== Accessor Functions =======================////
 
     /**
@@ -392,6 +391,12 @@ public class Journey
 
     public long getLngIdent() { return mIdent; }
 
+    /**
+     * \brief Override the unique identifier (e.g. when replaying logs, where the creation time is meaningless)
+     * @param ident The new identifier
+     */
+    void setIdent(long ident) { mIdent = ident; }
+
     /**
      * \brief   Returns the Header Information associated with the journey
      * @return  String representation of the [Length] [Termination Code] [Transport Mode] [Trip Purpose]
@@ -0,0 +1,164 @@
+/**
+ *   Copyright (C) 2019  Michael Camilleri
+ *
+ * 	This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ *	License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * 	version.
+ *	This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ *	warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 	You should have received a copy of the GNU General Public License along with this program. If not, see
+ *	http://www.gnu.org/licenses/.
+ *
+ *	Author: Michael Camilleri
+ *
+ */
+
+package mt.edu.um.vjagg;
+
+/**
+ * A constant-velocity Kalman filter smoothing stage: an alternative to the (boxcar) DownSampler.
+ *
+ * Each fix is projected into a local East-North plane (that of the DistanceKernel, shared with the detector buffers, if
+ * it has one), and filtered with a 2D constant-velocity model (white-noise acceleration of standard deviation ACCEL,
+ * position measurements with standard deviation NOISE). Unlike the boxcar, which only emits (the average of) every
+ * DOWNSAMPLING_RATE fixes, a smoothed position is emitted on every fix, along with a velocity estimate which the handler
+ * can read (getSpeed etc.) from within its OnDownSample callback.
+ *
+ * It is a DownSampler with a rate of 1, and hence plugs into the same DownSampleHandler contract (GetProcessed is always
+ * 0). Since the model is isotropic and both axes are measured together, the two axes share the same covariance: the
+ * whole state is a handful of primitive fields, and nothing is allocated per fix.
+ */
+public class KalmanSmoother extends DownSampler
+{
+    private static final double V0_SD  = 10.0;      //!< Standard deviation of the initial velocity (m/s)
+    private static final long   GAP_TO = 60000;     //!< Restart the filter after a gap longer than this (ms)
+
+    //!< Member Constants
+    public final double ACCEL;  //!< Process noise: standard deviation of the acceleration (m/s^2)
+    public final double NOISE;  //!< Measurement noise: standard deviation of the fix position (m)
+
+    //!< Member Variables
+    private final LocalProjection   mProjection;    //!< The projection (shared with the kernel's users if it has one)
+    private int     mEpoch;     //!< The projection epoch in which the state is expressed
+    private double  mLat;       //!< The (smoothed) position in degrees: for re-projecting the state on re-anchoring
+    private double  mLon;
+    private double  mEast;      //!< Position (m)
+    private double  mNorth;
+    private double  mVelEast;   //!< Velocity (m/s)
+    private double  mVelNorth;
+    private double  mP00;       //!< Shared Covariance: position variance
+    private double  mP01;       //!< Shared Covariance: position-velocity covariance
+    private double  mP11;       //!< Shared Covariance: velocity variance
+    private long    mTime;      //!< Time of the last fix (ms)
+    private boolean mValid;     //!< Whether the filter has been initialised
+
+    /**
+     * \brief Constructor
+     * @param accel     The process noise (standard deviation of the acceleration, m/s^2)
+     * @param noise     The measurement noise (standard deviation of the fix position, m)
+     * @param kernel    The distance kernel: its projection is used if it has one (DK_PROJECTED), else a private one
+     * @param handler   Reference to the handler implementing DownSampleHandler
+     */
+    public KalmanSmoother(double accel, double noise, DistanceKernel kernel, DownSampleHandler handler)
+    {
+        super(1, handler);
+        ACCEL       = accel;
+        NOISE       = noise;
+        mProjection = (kernel.getProjection() != null) ? kernel.getProjection() : new LocalProjection();
+        mEpoch      = 0;
+        mValid      = false;
+    }
+
+    /**
+     * \brief Filter a fix, and emit the smoothed position
+     * @param lat   The Latitude Value
+     * @param lon   The Longitude Value
+     * @param time  The Time-Stamp
+     */
+    @Override
+    public void AddPoint(double lat, double lon, long time)
+    {
+        //Ensure the projection is valid at this point: if re-anchored (here or by another user of the shared projection),
+        //  carry the position over to the new anchor
+        if ((mProjection.Update(lat, lon) || mEpoch != mProjection.getEpoch()) && mValid)
+        {
+            mEast  = mProjection.East(mLon);
+            mNorth = mProjection.North(mLat);
+        }
+        mEpoch = mProjection.getEpoch();
+        double z_east  = mProjection.East(lon);
+        double z_north = mProjection.North(lat);
+
+        double dt = (time - mTime)/1000.0;
+        if (!mValid || dt <= 0.0 || time - mTime > GAP_TO)
+        {
+            //(Re-)Initialise at the measurement, at rest
+            mEast = z_east; mNorth = z_north; mVelEast = 0.0; mVelNorth = 0.0;
+            mP00  = NOISE*NOISE; mP01 = 0.0; mP11 = V0_SD*V0_SD;
+            mValid = true;
+        }
+        else
+        {
+            //Predict
+            double q = ACCEL*ACCEL;
+            mEast  += mVelEast*dt;
+            mNorth += mVelNorth*dt;
+            mP00   += dt*(2.0*mP01 + dt*mP11) + q*dt*dt*dt/3.0;
+            mP01   += dt*mP11 + q*dt*dt/2.0;
+            mP11   += q*dt;
+
+            //Update
+            double s  = mP00 + NOISE*NOISE;
+            double k0 = mP00/s;
+            double k1 = mP01/s;
+            double y_east  = z_east - mEast;
+            double y_north = z_north - mNorth;
+            mEast     += k0*y_east;
+            mNorth    += k0*y_north;
+            mVelEast  += k1*y_east;
+            mVelNorth += k1*y_north;
+            mP11 -= k1*mP01;
+            mP01 *= (1.0 - k0);
+            mP00 *= (1.0 - k0);
+        }
+        mTime = time;
+        mLat  = mProjection.Latitude(mNorth);
+        mLon  = mProjection.Longitude(mEast);
+
+        mHandler.OnDownSample(mLat, mLon, time);
+    }
+
+    /**
+     * \brief The estimated Easting velocity (m/s)
+     */
+    public double getVelocityEast()
+    {
+        return mVelEast;
+    }
+
+    /**
+     * \brief The estimated Northing velocity (m/s)
+     */
+    public double getVelocityNorth()
+    {
+        return mVelNorth;
+    }
+
+    /**
+     * \brief The estimated speed (m/s)
+     */
+    public double getSpeed()
+    {
+        return Math.sqrt(mVelEast*mVelEast + mVelNorth*mVelNorth);
+    }
+
+    /**
+     * \brief Clear (flush) the filter: the next fix starts it anew
+     */
+    @Override
+    public void flush()
+    {
+        super.flush();
+        mValid = false;
+    }
+}
@@ -0,0 +1,129 @@
+/**
+ *   Copyright (C) 2019  Michael Camilleri
+ *
+ * 	This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ *	License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * 	version.
+ *	This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ *	warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 	You should have received a copy of the GNU General Public License along with this program. If not, see
+ *	http://www.gnu.org/licenses/.
+ *
+ *	Author: Michael Camilleri
+ *
+ */
+
+package mt.edu.um.vjagg;
+
+/**
+ * Local tangent-plane (East-North) projection, anchored at a reference fix.
+ *
+ * Points are mapped to planar metres east and north of the anchor, using the WGS84 meridional and prime-vertical radii
+ * of curvature at the anchor latitude. Since the mapping is affine, distances, velocities, averages and bounds can then
+ * be computed with plain planar arithmetic. The error with respect to the ellipsoidal distance grows with the distance
+ * from the anchor (mostly through the east scale, by about tan(lat)*d/R): the projection is therefore re-anchored (see
+ * Update) whenever a point is more than REANCHOR_DIST from the anchor, which keeps the error below about
+ * tan(lat)*REANCHOR_DIST/R, i.e. ~0.11% at 36 degrees, ~0.16% at 45 degrees and ~0.27% at 60 degrees. Coordinates projected before a re-anchoring are not comparable with those after it: owners which hold
+ * projected coordinates should compare getEpoch() against the one they projected with, and re-project if it changed.
+ *
+ * An instance should not be shared between threads.
+ */
+public class LocalProjection
+{
+    public static final double REANCHOR_DIST = 10000.0;  //!< Re-anchor when a point is this far (m, in either axis) from the anchor
+
+    //!< Anchor
+    private double mAnchorLat;  //!< Latitude of the anchor (degrees)
+    private double mAnchorLon;  //!< Longitude of the anchor (degrees)
+    private double mScaleLat;   //!< Metres per degree of Latitude at the anchor
+    private double mScaleLon;   //!< Metres per degree of Longitude at the anchor
+    private int    mEpoch;      //!< Incremented on every (re-)anchoring: 0 means not anchored yet
+
+    /**
+     * \brief Constructor: the projection is anchored at the first point passed to Update
+     */
+    public LocalProjection()
+    {
+        mEpoch = 0;
+    }
+
+    /**
+     * \brief Ensure the point can be projected accurately: anchors (or re-anchors) the projection at it if need be
+     * @param lat   Latitude of the point (degrees)
+     * @param lon   Longitude of the point (degrees)
+     * @return      True if the projection was (re-)anchored, and hence any previously projected coordinates are stale
+     */
+    public boolean Update(double lat, double lon)
+    {
+        if (mEpoch > 0 && Math.abs(North(lat)) <= REANCHOR_DIST && Math.abs(East(lon)) <= REANCHOR_DIST) { return false; }
+        Anchor(lat, lon);
+        return true;
+    }
+
+    /**
+     * \brief Anchor the projection at the specified point
+     */
+    public void Anchor(double lat, double lon)
+    {
+        mAnchorLat = lat;
+        mAnchorLon = lon;
+        mScaleLat  = DistanceKernel.MeridionalScale(lat);
+        mScaleLon  = DistanceKernel.ParallelScale(lat);
+        mEpoch++;
+    }
+
+    /**
+     * \brief The current anchoring (incremented on every re-anchoring)
+     */
+    public int getEpoch()
+    {
+        return mEpoch;
+    }
+
+    /**
+     * \brief Projected Easting (m) of the longitude
+     */
+    public double East(double lon)
+    {
+        double d_lon = lon - mAnchorLon;
+        if (d_lon > 180.0) { d_lon -= 360.0; } else if (d_lon < -180.0) { d_lon += 360.0; }
+        return d_lon*mScaleLon;
+    }
+
+    /**
+     * \brief Projected Northing (m) of the latitude
+     */
+    public double North(double lat)
+    {
+        return (lat - mAnchorLat)*mScaleLat;
+    }
+
+    /**
+     * \brief Latitude (degrees) of the projected northing
+     */
+    public double Latitude(double north)
+    {
+        return mAnchorLat + north/mScaleLat;
+    }
+
+    /**
+     * \brief Longitude (degrees) of the projected easting
+     */
+    public double Longitude(double east)
+    {
+        double lon = mAnchorLon + east/mScaleLon;
+        if (lon > 180.0) { lon -= 360.0; } else if (lon < -180.0) { lon += 360.0; }
+        return lon;
+    }
+
+    /**
+     * \brief Planar distance between two projected points
+     * @return The distance in metres
+     */
+    public static float Distance(double east1, double north1, double east2, double north2)
+    {
+        double d_x = east2 - east1;
+        double d_y = north2 - north1;
+        return (float)Math.sqrt(d_x*d_x + d_y*d_y);
+    }
+}
@@ -0,0 +1,361 @@
+/**
+ *   Copyright (C) 2019  Michael Camilleri
+ *
+ * 	This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ *	License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * 	version.
+ *	This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ *	warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 	You should have received a copy of the GNU General Public License along with this program. If not, see
+ *	http://www.gnu.org/licenses/.
+ *
+ *	Author: Michael Camilleri
+ *
+ */
+
+package mt.edu.um.vjagg;
+
+/**
+ * Created by Michael Camilleri on 05/10/2016.
+ *
+ * This class encapsulates all of the logging parameters of vjagg
+ *
+ * The static constants are the compiled-in defaults (used directly by the Android service). The detection core is however
+ * configured through an instance of this class, which starts off with the defaults but can be modified (by name) for
+ * tuning without rebuilding: see ParamTuner.
+ */
+
+final class LoggingParams
+{
+    //!< Accelerometer-Specific Parameters:
+    static final long   ACCEL_CHECK_RATE  =  500;      //!< Currently check every 20 or so seconds
+    static final int    ACCEL_SAMPLE_RATE = 200000;    //!< Sample every 200ms (this is usually ignored however...)
+    static final int    ACCEL_SAMPLE_RATE_T = (ACCEL_SAMPLE_RATE - 10000)/1000;
+    static final int    QUICK_SAMPLE_SIZE = 7;          //!< 4 Samples for averaging
+    static final int    EXTRA_SAMPLE_SIZE = 8;          //!< 12 Samples for extra identification...
+    static final int    ACCEL_BATCH_LATENCY = QUICK_SAMPLE_SIZE*ACCEL_SAMPLE_RATE; //!< Max report latency (us) when batched in the sensor FIFO: a quick check per wake-up
+    static final double QUICK_SAMPLE_THRESH = 0.185;    //!< Threshold for Quick Sampling (0.5m/s2)
+    static final double EXTRA_SAMPLE_THRESH = 7.9;      //!< Threshold for Extra Sampling, over the whole check (quick samples included): ~0.73m/s2 rms over 15 samples
+    static final double ACCEL_SETTLE = 0.25;            //!< Go back to sleep early once the projected deviation falls below this fraction of the threshold (0 never does)
+    static final double ACCEL_SPEC_LOW = 1.0;           //!< Reject a pass if more than this fraction of the spectral energy is below 1Hz (1, the default, turns the spectral stage off)
+
+    //GPS Specific Parameters
+    static final int   GPS_WINDOW_SIZE = 30;        //!< The buffer size...
+    static final long  GPS_SAMPLE_RATE = 2000;      //!< Sample every 2000ms...
+    static final int   GPS_DOWNSAMPLE  = 3;         //!< Downsampling rate (divide by 3)
+    static final float GPS_VEL_ST_TRIG = 0.001f;    //!< Velocity Treshold between successive points: m/ms (amounts to 1m/s)
+    static final float GPS_VEL_ST_TOTAL= 0.001f;    //!< Total Velocity in any one direction...(1m/s)
+    static final int   GPS_VEL_ST_NUM  = 3;         //!< Number of successive differences passing the Velocity Treshold (i.e. if 3, then between 4 points)
+    static final int   GPS_TERM_WIND   = 25;        //!< Number of windows to consider for hysterisis of stopping
+    static final int   GPS_TERM_DIST_TOT = 30;      //!< If in GPS_TERM_WIND time points, the subject did not move more than this amount of meteres, then stop journey
+    static final int   GPS_TERM_MODE   = GPSLogger.TERM_DISPLACEMENT; //!< How 'moved' is measured over GPS_TERM_WIND: end-to-end displacement or sliding extent
+    static final float GPS_VEL_EN_TRIG = 0.001f;    //!< Velocity Treshold between successive points: m/ms (amounts to 1m/s) (for terminating)
+    static final float GPS_VEL_EN_TOTAL= 0.001f;    //!< Total Velocity in any one direction...(1m/s) (for terminating)
+    static final int   GPS_VEL_EN_NUM  = 3;         //!< Number of successive differences passing the Velocity Treshold (i.e. if 3, then between 4 points) (for terminating)
+    static final int   GPS_SMOOTH_MODE = GPSLogger.SMOOTH_BOXCAR; //!< Smoothing stage: boxcar DownSampler, or per-fix Kalman filter (see PerFix)
+    static final float GPS_KF_ACCEL    = 1.0f;      //!< Kalman process noise: standard deviation of the acceleration (m/s2)
+    static final float GPS_KF_NOISE    = 10.0f;     //!< Kalman measurement noise: standard deviation of the fix position (m)
+    static final int   GPS_OUT_WINDOW  = 9;         //!< Outlier Filter: number of accepted speeds over which the median is taken (0 disables the filter)
+    static final float GPS_OUT_FACTOR  = 5.0f;      //!< Outlier Filter: reject speeds more than this factor times the median...
+    static final float GPS_OUT_MIN_VEL = 0.015f;    //!< Outlier Filter: ...unless they are below this (m/ms: 15m/s)
+    static final float GPS_OUT_MAX_VEL = 0.07f;     //!< Outlier Filter: always reject speeds above this (m/ms: 70m/s or 252km/hr)
+    static final long  GPS_ADAPT_SLOW_RATE = 2000;  //!< Adaptive Sampling: interval (ms) while stationary or walking (GPS_SAMPLE_RATE disables the adaptation)
+    static final float GPS_ADAPT_WALK_VEL  = 0.0025f; //!< Adaptive Sampling: speed (m/ms: 2.5m/s) below which the slow rate is used
+    static final int   GPS_ADAPT_BALANCED  = 0;     //!< Adaptive Sampling: if 1, use the balanced-power priority when searching at the slow rate
+    static final long  GPS_GRID_STEP   = 0;         //!< Time-Grid Resampling: grid interval in ms (0 disables it, and fixes are taken as they come)
+    static final long  GPS_GRID_MAX_GAP = 12000;    //!< Time-Grid Resampling: fixes further apart than this (ms) are not interpolated between
+    static final long  GPS_BATCH_WAIT  = 0;         //!< Batched Delivery: maximum time (ms) fixes may be held back and delivered together while logging (0 delivers each fix)
+    static final long  GPS_BRIDGE_MAX  = 0;         //!< Signal-Loss Bridging: longest gap (ms) a logged journey is kept open across (0, the default, ends it on the loss)
+    static final int   GPS_BRIDGE_STILL = 10;       //!< Signal-Loss Bridging: consecutive accelerometer checks without motion after which the bridge is given up
+    static final int   GPS_DIST_MODE   = DistanceKernel.DK_EQUIRECT;  //!< Distance computation used by the detector and post-processor (see DistanceKernel for error bounds)
+
+    //GPS/ACC Transitioning Parameters
+    static final int   GPS_MIN_SATS = 5;        //!< Changed to 5 to countdown false positives further
+    static final long  GPS_NOSAT_TO =  40000;   //!< GPS Timeout in milliseconds: if lost for more than this, then kill and start new journey
+    static final long  GPS_STATE_TO = 300000;   //!< If no valid journey in 5 minutes...
+
+    //PostProcessor Parameters
+    static final float PP_CONS_DIST_THRESH = 50.0f; //!< Conservative Distance Threshold
+    static final int   PP_JOIN_TIME_THRESH = 120000;
+    static final float PP_JOIN_VEL_FACTOR  = 1.2f;
+    static final float PP_ABS_DIST_THRESH  = 500.0f;
+    static final int   PP_TRIM_MAX         = 3;     //!< Trim at maximum 3 points
+    static final float PP_TRIM_VEL_THRESH  = 0.02f;  //!< 0.02 metres per ms - 20 m/s or 72km/hr
+
+    //!< Names of the tunable parameters (see Set/Get)
+    static final String[] NAMES = {"ACCEL_CHECK_RATE", "ACCEL_SAMPLE_RATE_T", "QUICK_SAMPLE_SIZE", "EXTRA_SAMPLE_SIZE",
+            "QUICK_SAMPLE_THRESH", "EXTRA_SAMPLE_THRESH", "ACCEL_SETTLE", "ACCEL_SPEC_LOW", "GPS_WINDOW_SIZE", "GPS_DOWNSAMPLE",
+            "GPS_VEL_ST_TRIG", "GPS_VEL_ST_TOTAL", "GPS_VEL_ST_NUM", "GPS_TERM_WIND", "GPS_TERM_DIST_TOT", "GPS_TERM_MODE",
+            "GPS_VEL_EN_TRIG", "GPS_VEL_EN_TOTAL", "GPS_VEL_EN_NUM", "GPS_SMOOTH_MODE", "GPS_KF_ACCEL", "GPS_KF_NOISE", "GPS_OUT_WINDOW",
+            "GPS_OUT_FACTOR", "GPS_OUT_MIN_VEL", "GPS_OUT_MAX_VEL", "GPS_ADAPT_SLOW_RATE", "GPS_ADAPT_WALK_VEL", "GPS_ADAPT_BALANCED",
+            "GPS_GRID_STEP", "GPS_GRID_MAX_GAP", "GPS_BATCH_WAIT", "GPS_BRIDGE_MAX", "GPS_BRIDGE_STILL", "GPS_DIST_MODE", "GPS_MIN_SATS",
+            "GPS_NOSAT_TO", "GPS_STATE_TO", "PP_CONS_DIST_THRESH", "PP_JOIN_TIME_THRESH", "PP_JOIN_VEL_FACTOR", "PP_ABS_DIST_THRESH",
+            "PP_TRIM_MAX", "PP_TRIM_VEL_THRESH"};
+
+    //========================== Parameter Set ==========================//
+    //!< Accelerometer
+    long   mAccelCheckRate;
+    int    mAccelSampleRateT;
+    int    mQuickSampleSize;
+    int    mExtraSampleSize;
+    double mQuickSampleThresh;
+    double mExtraSampleThresh;
+    double mAccelSettle;
+    double mAccelSpecLow;
+
+    //!< GPS
+    int    mWindowSize;
+    int    mDownSample;
+    float  mVelStTrig;
+    float  mVelStTotal;
+    int    mVelStNum;
+    int    mTermWind;
+    int    mTermDistTot;
+    int    mTermMode;
+    float  mVelEnTrig;
+    float  mVelEnTotal;
+    int    mVelEnNum;
+    int    mSmoothMode;
+    float  mKfAccel;
+    float  mKfNoise;
+    int    mOutWindow;
+    float  mOutFactor;
+    float  mOutMinVel;
+    float  mOutMaxVel;
+    long   mAdaptSlowRate;
+    float  mAdaptWalkVel;
+    int    mAdaptBalanced;
+    long   mGridStep;
+    long   mGridMaxGap;
+    long   mBatchWait;
+    long   mBridgeMax;
+    int    mBridgeStill;
+    int    mDistMode;
+
+    //!< GPS/ACC Transitioning
+    int    mMinSats;
+    long   mNoSatTimeOut;
+    long   mStateTimeOut;
+
+    //!< PostProcessor
+    float  mConsDistThresh;
+    int    mJoinTimeThresh;
+    float  mJoinVelFactor;
+    float  mAbsDistThresh;
+    int    mTrimMax;
+    float  mTrimVelThresh;
+
+    /**
+     * \brief Creates a parameter set with the default values
+     */
+    LoggingParams()
+    {
+        mAccelCheckRate    = ACCEL_CHECK_RATE;
+        mAccelSampleRateT  = ACCEL_SAMPLE_RATE_T;
+        mQuickSampleSize   = QUICK_SAMPLE_SIZE;
+        mExtraSampleSize   = EXTRA_SAMPLE_SIZE;
+        mQuickSampleThresh = QUICK_SAMPLE_THRESH;
+        mExtraSampleThresh = EXTRA_SAMPLE_THRESH;
+        mAccelSettle       = ACCEL_SETTLE;
+        mAccelSpecLow      = ACCEL_SPEC_LOW;
+
+        mWindowSize  = GPS_WINDOW_SIZE;
+        mDownSample  = GPS_DOWNSAMPLE;
+        mVelStTrig   = GPS_VEL_ST_TRIG;
+        mVelStTotal  = GPS_VEL_ST_TOTAL;
+        mVelStNum    = GPS_VEL_ST_NUM;
+        mTermWind    = GPS_TERM_WIND;
+        mTermDistTot = GPS_TERM_DIST_TOT;
+        mTermMode    = GPS_TERM_MODE;
+        mVelEnTrig   = GPS_VEL_EN_TRIG;
+        mVelEnTotal  = GPS_VEL_EN_TOTAL;
+        mVelEnNum    = GPS_VEL_EN_NUM;
+        mSmoothMode  = GPS_SMOOTH_MODE;
+        mKfAccel     = GPS_KF_ACCEL;
+        mKfNoise     = GPS_KF_NOISE;
+        mOutWindow   = GPS_OUT_WINDOW;
+        mOutFactor   = GPS_OUT_FACTOR;
+        mOutMinVel   = GPS_OUT_MIN_VEL;
+        mOutMaxVel   = GPS_OUT_MAX_VEL;
+        mAdaptSlowRate = GPS_ADAPT_SLOW_RATE;
+        mAdaptWalkVel  = GPS_ADAPT_WALK_VEL;
+        mAdaptBalanced = GPS_ADAPT_BALANCED;
+        mGridStep      = GPS_GRID_STEP;
+        mGridMaxGap    = GPS_GRID_MAX_GAP;
+        mBatchWait     = GPS_BATCH_WAIT;
+        mBridgeMax     = GPS_BRIDGE_MAX;
+        mBridgeStill   = GPS_BRIDGE_STILL;
+        mDistMode    = GPS_DIST_MODE;
+
+        mMinSats      = GPS_MIN_SATS;
+        mNoSatTimeOut = GPS_NOSAT_TO;
+        mStateTimeOut = GPS_STATE_TO;
+
+        mConsDistThresh = PP_CONS_DIST_THRESH;
+        mJoinTimeThresh = PP_JOIN_TIME_THRESH;
+        mJoinVelFactor  = PP_JOIN_VEL_FACTOR;
+        mAbsDistThresh  = PP_ABS_DIST_THRESH;
+        mTrimMax        = PP_TRIM_MAX;
+        mTrimVelThresh  = PP_TRIM_VEL_THRESH;
+    }
+
+    /**
+     * \brief Copy Constructor
+     */
+    LoggingParams(LoggingParams other)
+    {
+        this();
+        for (String name : NAMES) { Set(name, other.Get(name)); }
+    }
+
+    /**
+     * \brief Set a parameter by name (integral parameters are rounded)
+     * @param name  The name of the parameter (as the constant, e.g. GPS_TERM_WIND)
+     * @param value The new value
+     * @return      False if there is no such parameter
+     */
+    boolean Set(String name, double value)
+    {
+        switch (name)
+        {
+            case "ACCEL_CHECK_RATE":    mAccelCheckRate    = Math.round(value); break;
+            case "ACCEL_SAMPLE_RATE_T": mAccelSampleRateT  = (int)Math.round(value); break;
+            case "QUICK_SAMPLE_SIZE":   mQuickSampleSize   = (int)Math.round(value); break;
+            case "EXTRA_SAMPLE_SIZE":   mExtraSampleSize   = (int)Math.round(value); break;
+            case "QUICK_SAMPLE_THRESH": mQuickSampleThresh = value; break;
+            case "EXTRA_SAMPLE_THRESH": mExtraSampleThresh = value; break;
+            case "ACCEL_SETTLE":        mAccelSettle       = value; break;
+            case "ACCEL_SPEC_LOW":      mAccelSpecLow      = value; break;
+            case "GPS_WINDOW_SIZE":     mWindowSize        = (int)Math.round(value); break;
+            case "GPS_DOWNSAMPLE":      mDownSample        = (int)Math.round(value); break;
+            case "GPS_VEL_ST_TRIG":     mVelStTrig         = (float)value; break;
+            case "GPS_VEL_ST_TOTAL":    mVelStTotal        = (float)value; break;
+            case "GPS_VEL_ST_NUM":      mVelStNum          = (int)Math.round(value); break;
+            case "GPS_TERM_WIND":       mTermWind          = (int)Math.round(value); break;
+            case "GPS_TERM_DIST_TOT":   mTermDistTot       = (int)Math.round(value); break;
+            case "GPS_TERM_MODE":       mTermMode          = (int)Math.round(value); break;
+            case "GPS_VEL_EN_TRIG":     mVelEnTrig         = (float)value; break;
+            case "GPS_VEL_EN_TOTAL":    mVelEnTotal        = (float)value; break;
+            case "GPS_VEL_EN_NUM":      mVelEnNum          = (int)Math.round(value); break;
+            case "GPS_SMOOTH_MODE":     mSmoothMode        = (int)Math.round(value); break;
+            case "GPS_KF_ACCEL":        mKfAccel           = (float)value; break;
+            case "GPS_KF_NOISE":        mKfNoise           = (float)value; break;
+            case "GPS_OUT_WINDOW":      mOutWindow         = (int)Math.round(value); break;
+            case "GPS_OUT_FACTOR":      mOutFactor         = (float)value; break;
+            case "GPS_OUT_MIN_VEL":     mOutMinVel         = (float)value; break;
+            case "GPS_OUT_MAX_VEL":     mOutMaxVel         = (float)value; break;
+            case "GPS_ADAPT_SLOW_RATE": mAdaptSlowRate     = Math.round(value); break;
+            case "GPS_ADAPT_WALK_VEL":  mAdaptWalkVel      = (float)value; break;
+            case "GPS_ADAPT_BALANCED":  mAdaptBalanced     = (int)Math.round(value); break;
+            case "GPS_GRID_STEP":       mGridStep          = Math.round(value); break;
+            case "GPS_GRID_MAX_GAP":    mGridMaxGap        = Math.round(value); break;
+            case "GPS_BATCH_WAIT":      mBatchWait         = Math.round(value); break;
+            case "GPS_BRIDGE_MAX":      mBridgeMax         = Math.round(value); break;
+            case "GPS_BRIDGE_STILL":    mBridgeStill       = (int)Math.round(value); break;
+            case "GPS_DIST_MODE":       mDistMode          = (int)Math.round(value); break;
+            case "GPS_MIN_SATS":        mMinSats           = (int)Math.round(value); break;
+            case "GPS_NOSAT_TO":        mNoSatTimeOut      = Math.round(value); break;
+            case "GPS_STATE_TO":        mStateTimeOut      = Math.round(value); break;
+            case "PP_CONS_DIST_THRESH": mConsDistThresh    = (float)value; break;
+            case "PP_JOIN_TIME_THRESH": mJoinTimeThresh    = (int)Math.round(value); break;
+            case "PP_JOIN_VEL_FACTOR":  mJoinVelFactor     = (float)value; break;
+            case "PP_ABS_DIST_THRESH":  mAbsDistThresh     = (float)value; break;
+            case "PP_TRIM_MAX":         mTrimMax           = (int)Math.round(value); break;
+            case "PP_TRIM_VEL_THRESH":  mTrimVelThresh     = (float)value; break;
+            default: return false;
+        }
+        return true;
+    }
+
+    /**
+     * \brief Retrieve a parameter by name
+     * @param name  The name of the parameter (as the constant)
+     * @return      The value (NaN if there is no such parameter)
+     */
+    double Get(String name)
+    {
+        switch (name)
+        {
+            case "ACCEL_CHECK_RATE":    return mAccelCheckRate;
+            case "ACCEL_SAMPLE_RATE_T": return mAccelSampleRateT;
+            case "QUICK_SAMPLE_SIZE":   return mQuickSampleSize;
+            case "EXTRA_SAMPLE_SIZE":   return mExtraSampleSize;
+            case "QUICK_SAMPLE_THRESH": return mQuickSampleThresh;
+            case "EXTRA_SAMPLE_THRESH": return mExtraSampleThresh;
+            case "ACCEL_SETTLE":        return mAccelSettle;
+            case "ACCEL_SPEC_LOW":      return mAccelSpecLow;
+            case "GPS_WINDOW_SIZE":     return mWindowSize;
+            case "GPS_DOWNSAMPLE":      return mDownSample;
+            case "GPS_VEL_ST_TRIG":     return mVelStTrig;
+            case "GPS_VEL_ST_TOTAL":    return mVelStTotal;
+            case "GPS_VEL_ST_NUM":      return mVelStNum;
+            case "GPS_TERM_WIND":       return mTermWind;
+            case "GPS_TERM_DIST_TOT":   return mTermDistTot;
+            case "GPS_TERM_MODE":       return mTermMode;
+            case "GPS_VEL_EN_TRIG":     return mVelEnTrig;
+            case "GPS_VEL_EN_TOTAL":    return mVelEnTotal;
+            case "GPS_VEL_EN_NUM":      return mVelEnNum;
+            case "GPS_SMOOTH_MODE":     return mSmoothMode;
+            case "GPS_KF_ACCEL":        return mKfAccel;
+            case "GPS_KF_NOISE":        return mKfNoise;
+            case "GPS_OUT_WINDOW":      return mOutWindow;
+            case "GPS_OUT_FACTOR":      return mOutFactor;
+            case "GPS_OUT_MIN_VEL":     return mOutMinVel;
+            case "GPS_OUT_MAX_VEL":     return mOutMaxVel;
+            case "GPS_ADAPT_SLOW_RATE": return mAdaptSlowRate;
+            case "GPS_ADAPT_WALK_VEL":  return mAdaptWalkVel;
+            case "GPS_ADAPT_BALANCED":  return mAdaptBalanced;
+            case "GPS_GRID_STEP":       return mGridStep;
+            case "GPS_GRID_MAX_GAP":    return mGridMaxGap;
+            case "GPS_BATCH_WAIT":      return mBatchWait;
+            case "GPS_BRIDGE_MAX":      return mBridgeMax;
+            case "GPS_BRIDGE_STILL":    return mBridgeStill;
+            case "GPS_DIST_MODE":       return mDistMode;
+            case "GPS_MIN_SATS":        return mMinSats;
+            case "GPS_NOSAT_TO":        return mNoSatTimeOut;
+            case "GPS_STATE_TO":        return mStateTimeOut;
+            case "PP_CONS_DIST_THRESH": return mConsDistThresh;
+            case "PP_JOIN_TIME_THRESH": return mJoinTimeThresh;
+            case "PP_JOIN_VEL_FACTOR":  return mJoinVelFactor;
+            case "PP_ABS_DIST_THRESH":  return mAbsDistThresh;
+            case "PP_TRIM_MAX":         return mTrimMax;
+            case "PP_TRIM_VEL_THRESH":  return mTrimVelThresh;
+            default:                    return Double.NaN;
+        }
+    }
+
+    /**
+     * \brief Check that the parameters are consistent (i.e. the detector can run with them)
+     * @return True if valid
+     */
+    boolean IsValid()
+    {
+        return (mDownSample >= 1) && (mVelStNum >= 1) && (mVelEnNum >= 1) && (mTermWind > mVelEnNum + 1) &&
+               (mWindowSize > mTermWind) && (mWindowSize > mVelStNum + 2) && (mQuickSampleSize >= 1) && (mExtraSampleSize >= 1) &&
+               (mAccelSettle >= 0) && (mAccelSettle < 1) && (mAccelSpecLow > 0) && (mAccelSpecLow <= 1) &&
+               (mDistMode >= DistanceKernel.DK_EQUIRECT) && (mDistMode <= DistanceKernel.DK_PROJECTED) &&
+               (mTermMode >= GPSLogger.TERM_DISPLACEMENT) && (mTermMode <= GPSLogger.TERM_EXTENT) &&
+               (mSmoothMode >= GPSLogger.SMOOTH_BOXCAR) && (mSmoothMode <= GPSLogger.SMOOTH_KALMAN) && (mKfAccel > 0) && (mKfNoise > 0) &&
+               (mOutWindow >= 0) && (mOutFactor > 0) && (mOutMaxVel >= mOutMinVel) &&
+               (mAdaptSlowRate >= GPS_SAMPLE_RATE) && (mAdaptWalkVel >= 0) && (mGridStep >= 0) && (mGridMaxGap >= mGridStep) &&
+               (mBatchWait >= 0) && (mBridgeMax >= 0) && (mBridgeStill >= 1) &&
+               (mNoSatTimeOut > 0) && (mStateTimeOut > 0) && (mAccelCheckRate > 0) && (mTrimMax >= 0);
+    }
+
+    /**
+     * \brief The equivalent parameters for a per-fix smoothing stage (i.e. with no downsampling)
+     * \detail The window counts (buffer size, termination window and the successive-velocity numbers) are scaled by the
+     *         downsampling rate, so that they still span the same amount of time
+     * @return A (modified) copy
+     */
+    LoggingParams PerFix()
+    {
+        LoggingParams per_fix = new LoggingParams(this);
+        per_fix.mWindowSize = mWindowSize*mDownSample;
+        per_fix.mTermWind   = mTermWind*mDownSample;
+        per_fix.mVelStNum   = mVelStNum*mDownSample;
+        per_fix.mVelEnNum   = mVelEnNum*mDownSample;
+        per_fix.mDownSample = 1;
+        return per_fix;
+    }
+}
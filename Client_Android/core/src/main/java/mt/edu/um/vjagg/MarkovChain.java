@@ -0,0 +1,148 @@
+/**
+ *   Copyright (C) 2019  Michael Camilleri
+ *
+ * 	This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ *	License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * 	version.
+ *	This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ *	warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 	You should have received a copy of the GNU General Public License along with this program. If not, see
+ *	http://www.gnu.org/licenses/.
+ *
+ *	Author: Michael Camilleri
+ *
+ */
+
+package mt.edu.um.vjagg;
+
+/**
+ * Created by michael on 22/02/2016.
+ * A Markov Chain Type
+ *
+ * [Converted to primitive types]
+ * [Rewritten as a trigger engine: only the successive-velocity count is kept, so that a reset is O(1) and nothing is
+ *  allocated. The same object can be checked in either direction (MC_MIN / MC_MAX), and ScanBackward() runs a whole
+ *  search over an indexed window buffer]
+ *
+ * The windows must be checked in succession (each one the next newer window, whether scanning backwards over the buffer
+ * or streaming as the windows arrive): the anchor of the cumulative velocity (mWindSize windows before the newest) is
+ * then always at new_window + mWindSize in the window buffer, and is read from there (in whatever coordinates the
+ * buffer keeps, i.e. planar if it is projected).
+ */
+class MarkovChain
+{
+    //!< Trigger Directions
+    static final int MC_MIN = 0;    //!< Velocities must be above the thresholds (journey start)
+    static final int MC_MAX = 1;    //!< Velocities must be below the thresholds (journey stop)
+
+    //!< Member Variables
+    private final float  mVeloTresh;  //!<Velocity Treshold
+    private final float  mCumuTresh;  //!<Cumulative Velocity Treshold
+    private final int    mWindSize;  //!< The window size (i.e. the number of successive velocities which must pass threshold)
+
+    ////Statistics
+    private int          mNumSucVel;    //!< The number of successive velocities which match
+
+    /**
+     * \brief Constructor: the chain starts off empty
+     * @param vel       The per-segment velocity threshold
+     * @param cumu      The cumulative velocity threshold (over the whole chain)
+     * @param size      The number of successive segments which must pass the threshold
+     */
+    MarkovChain(float vel, float cumu, int size)
+    {
+        mVeloTresh = vel;
+        mCumuTresh = cumu;
+        mWindSize  = size;
+        mNumSucVel = 0;
+    }
+
+    /**
+     * \brief Restart the chain (in O(1)): the next window checked is the first (segment) of a new chain
+     */
+    void Refresh()
+    {
+        mNumSucVel = 0;
+    }
+
+    /**
+     * \brief Add a new segment and check it against the thresholds in the specified direction
+     * @param direction  MC_MIN or MC_MAX
+     * @param dist       The Distance value to check
+     * @param diff       The Time difference, used to calculate velocity
+     * @param window     The buffer holding the window which is being checked for the trigger...
+     * @param new_window The index of the window (within window) which is being checked for the trigger...
+     * @return           True if the Markov Chain indicates that we passed all tresholds, false otherwise
+     */
+    boolean Check(int direction, float dist, long diff, SegmentBuffer window, int new_window)
+    {
+        //Branch on whether we satisfy value: if not, restart anew (since even if we flush, this may be the first of a set
+        //  of valid windows)
+        float vel = dist/diff;
+        if ((direction == MC_MIN) ? (vel > mVeloTresh) : (vel < mVeloTresh))
+        {
+            mNumSucVel = Math.min(mNumSucVel + 1, mWindSize);   //Update the number of successive velocities passing the treshold
+        }
+        else
+        {
+            mNumSucVel = 0;
+        }
+
+        //Return indication of whether we succeed
+        if (mNumSucVel < mWindSize) { return false; }
+        float cumu = getCumulativeVelocity(window, new_window);
+        return (direction == MC_MIN) ? (cumu > mCumuTresh) : (cumu < mCumuTresh);
+    }
+
+    /**
+     * \brief Add a new distance and check against the minimum treshold(s)
+     */
+    boolean CheckMinTrigger(float dist, long diff, SegmentBuffer window, int new_window)
+    {
+        return Check(MC_MIN, dist, diff, window, new_window);
+    }
+
+    /**
+     * \brief Add a new distance and check against the maximum treshold(s)
+     */
+    boolean CheckMaxTrigger(float dist, long diff, SegmentBuffer window, int new_window)
+    {
+        return Check(MC_MAX, dist, diff, window, new_window);
+    }
+
+    /**
+     * \brief Run the chain backwards (from older to newer windows) over a segment buffer
+     * \detail The chain is restarted at window start, and then fed the segments ending at windows start-1 down to 0.
+     * @param direction MC_MIN or MC_MAX
+     * @param window    The (cached) segment buffer
+     * @param start     The (oldest) window from which to start
+     * @param first     If true, stop at the first trigger (the chain is then left at that point), otherwise scan to the end
+     * @return          The index of the window at which the (first or last) trigger happened, or -1 if none
+     */
+    int ScanBackward(int direction, SegmentBuffer window, int start, boolean first)
+    {
+        Refresh();
+        int fndIdx = -1;
+
+        for (int i = start - 1; i >= 0; i--)
+        {
+            if (Check(direction, window.getSegDistance(i), window.getSegTime(i), window, i))
+            {
+                fndIdx = i;
+                if (first) { break; }
+            }
+        }
+
+        return fndIdx;
+    }
+
+    /**
+     * \brief Helper function to compute the velocity between the two extreme windows of the chain
+     * @param window     The window buffer
+     * @param new_window The index of the newest window in the chain (the oldest is mWindSize before it)
+     */
+    private float getCumulativeVelocity(SegmentBuffer window, int new_window) //TODO consider using bounds instead of just velocity!
+    {
+        return window.getDisplacement(new_window + mWindSize, new_window)/window.getElapsed(new_window + mWindSize, new_window);
+    }
+}
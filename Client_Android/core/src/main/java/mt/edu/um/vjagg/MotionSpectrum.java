@@ -0,0 +1,133 @@
+/**
+ *   Copyright (C) 2019  Michael Camilleri
+ *
+ * 	This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ *	License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * 	version.
+ *	This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ *	warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 	You should have received a copy of the GNU General Public License along with this program. If not, see
+ *	http://www.gnu.org/licenses/.
+ *
+ *	Author: Michael Camilleri
+ *
+ */
+
+package mt.edu.um.vjagg;
+
+/**
+ * \brief Band energies of the acceleration (squared) magnitude over a short, fixed window of samples
+ * \detail The samples go into a ring buffer of WINDOW entries: the power in each DFT bin (other than DC) is then computed
+ *         with the Goertzel recurrence, using coefficients which are precomputed at construction. Since the magnitude of a
+ *         DFT bin does not change under a circular shift of the input, the ring is processed in storage order (whatever
+ *         the position of its head). Nothing is allocated after construction.
+ *
+ *         At the (5Hz) accelerometer sampling rate, the bins are at multiples of 0.625Hz, up to the 2.5Hz Nyquist limit:
+ *          > Low Band (below LOW_BAND): posture changes and fidgeting (handling the phone), which are one-off steps
+ *          > Gait Band (the rest): walking (1.5-2.5Hz) and, aliased across all of it, vehicle vibration
+ *         The energies are single-sided (the Nyquist bin is counted once), so that their total is the sum of the squared
+ *         deviations from the mean.
+ */
+final class MotionSpectrum
+{
+    static final int    WINDOW   = 8;       //!< Samples in the window (1.6s at ACCEL_SAMPLE_RATE)
+    static final double LOW_BAND = 1.0;     //!< Upper edge of the low band (Hz)
+
+    //======================= VARIABLES =======================//
+    private final double[] mWindow;     //!< Ring buffer of samples
+    private final double[] mCoeff;      //!< Goertzel coefficient, 2cos(2 pi k/N), for bin k = 1..N/2 (index k-1)
+    private final int      mLowBins;    //!< Bins 1..mLowBins are in the low band
+    private int            mCount;      //!< Samples in the window (up to WINDOW)
+    private int            mHead;       //!< Next slot to write to
+    private double         mLow;        //!< Low band energy (as of the last Analyse)
+    private double         mTotal;      //!< Total energy (as of the last Analyse)
+
+    /**
+     * \brief Constructor
+     * @param rate The sampling rate (Hz)
+     */
+    MotionSpectrum(double rate)
+    {
+        mWindow = new double[WINDOW];
+        mCoeff  = new double[WINDOW/2];
+        for (int k = 1; k <= WINDOW/2; k++) { mCoeff[k-1] = 2*Math.cos(2*Math.PI*k/WINDOW); }
+
+        int low = 0;
+        while (low < WINDOW/2 && (low + 1)*rate/WINDOW < LOW_BAND) { low++; }
+        mLowBins = low;
+
+        Clear();
+    }
+
+    /**
+     * \brief Empty the window
+     */
+    void Clear()
+    {
+        mCount = 0;
+        mHead  = 0;
+        mLow   = 0.0;
+        mTotal = 0.0;
+    }
+
+    /**
+     * \brief Add a sample (overwriting the oldest once full)
+     */
+    void Add(double sample)
+    {
+        mWindow[mHead] = sample;
+        mHead = (mHead + 1) % WINDOW;
+        if (mCount < WINDOW) { mCount++; }
+    }
+
+    boolean IsFull()
+    {
+        return mCount == WINDOW;
+    }
+
+    /**
+     * \brief Compute the band energies over the (full) window
+     * \detail The mean is removed first: this does not change the non-DC bins, but keeps the recurrence well-conditioned
+     *         (the squared magnitude is around 96)
+     */
+    void Analyse()
+    {
+        double mean = 0.0;
+        for (int i = 0; i < WINDOW; i++) { mean += mWindow[i]; }
+        mean /= WINDOW;
+
+        mLow = mTotal = 0.0;
+        for (int k = 1; k <= WINDOW/2; k++)
+        {
+            double coeff = mCoeff[k-1];
+            double s1 = 0.0, s2 = 0.0;
+            for (int i = 0; i < WINDOW; i++)
+            {
+                double s = (mWindow[i] - mean) + coeff*s1 - s2;
+                s2 = s1;
+                s1 = s;
+            }
+            double power = (s1*s1 + s2*s2 - coeff*s1*s2)*((2*k == WINDOW) ? 1.0 : 2.0)/WINDOW;
+            if (k <= mLowBins) { mLow += power; }
+            mTotal += power;
+        }
+    }
+
+    /**
+     * \brief Fraction of the energy in the low band (0 if there is no energy at all)
+     */
+    double getLowFraction()
+    {
+        return (mTotal > 0) ? mLow/mTotal : 0.0;
+    }
+
+    double getLowEnergy()
+    {
+        return mLow;
+    }
+
+    double getTotalEnergy()
+    {
+        return mTotal;
+    }
+}
@@ -0,0 +1,256 @@
+/**
+ *   Copyright (C) 2019  Michael Camilleri
+ *
+ * 	This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ *	License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * 	version.
+ *	This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ *	warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 	You should have received a copy of the GNU General Public License along with this program. If not, see
+ *	http://www.gnu.org/licenses/.
+ *
+ *	Author: Michael Camilleri
+ *
+ */
+
+package mt.edu.um.vjagg;
+
+/**
+ * Ingestion filter rejecting physically impossible fixes.
+ *
+ * The speed from the last accepted fix to each new one is compared against the median of the last WINDOW accepted
+ * speeds: the fix is rejected if it is faster than MAX_VEL (whatever the history), or faster than both MIN_VEL and
+ * FACTOR times the median. A rejected fix does not enter the window (nor move the reference point), so that a single jump
+ * is rejected on its way out as well as on its way back. After MAX_CONSEC successive rejections, the next fix is accepted
+ * anyway and the window restarted from it, so that the filter cannot lock onto a (bad) position.
+ *
+ * The sliding median is kept with an indexable two-heap structure: a max-heap of the lower half and a min-heap of the
+ * upper half of the window, with each speed's heap position tracked, so that the expiring speed can be removed from the
+ * middle of its heap. Insertion, removal and rebalancing are O(log WINDOW), and nothing is allocated after construction.
+ */
+class OutlierFilter
+{
+    static final int MAX_CONSEC = 3;    //!< Successive rejections after which a fix is accepted anyway
+
+    //!< Member Constants
+    public final int    WINDOW;     //!< The number of (accepted) speeds over which the median is computed
+    public final float  FACTOR;     //!< Rejection factor (relative to the median)
+    public final float  MIN_VEL;    //!< Speeds (m/ms) below this are never rejected
+    public final float  MAX_VEL;    //!< Speeds (m/ms) above this are always rejected
+
+    //!< Sliding Window (by slot, in insertion order)
+    private final double[] mSpeed;  //!< The speed in each slot
+    private final int[]    mPos;    //!< The position of each slot within its heap
+    private final boolean[] mLow;   //!< Whether each slot is in the lower (max) heap
+    private int            mNext;   //!< The next slot to fill (i.e. the oldest once filled)
+    private int            mFilled; //!< Number of slots filled
+
+    //!< Two Heaps (of slots)
+    private final int[]    mLowHeap;   //!< Max-Heap of the lower half (holds the extra element if odd)
+    private final int[]    mHighHeap;  //!< Min-Heap of the upper half
+    private int            mLowSize;
+    private int            mHighSize;
+
+    //!< Reference (last accepted) fix
+    private final DistanceKernel mDistance;
+    private double  mLat;
+    private double  mLon;
+    private long    mTime;
+    private boolean mValid;
+    private int     mConsec;    //!< Successive rejections
+
+    //!< Counters
+    private long    mAccepted;
+    private long    mRejected;  //!< Total rejections (including the absolute ones)
+    private long    mRejectedMax;   //!< Rejections above MAX_VEL
+    private long    mForced;    //!< Fixes accepted after MAX_CONSEC rejections
+
+    /**
+     * \brief Constructor
+     * @param window    The size of the median window (>= 1)
+     * @param factor    The rejection factor relative to the median
+     * @param min_vel   The speed (m/ms) below which fixes are never rejected
+     * @param max_vel   The speed (m/ms) above which fixes are always rejected
+     * @param kernel    The distance kernel (shared with the owner)
+     */
+    OutlierFilter(int window, float factor, float min_vel, float max_vel, DistanceKernel kernel)
+    {
+        WINDOW    = window;
+        FACTOR    = factor;
+        MIN_VEL   = min_vel;
+        MAX_VEL   = max_vel;
+        mDistance = kernel;
+        mSpeed    = new double[window];
+        mPos      = new int[window];
+        mLow      = new boolean[window];
+        mLowHeap  = new int[window];
+        mHighHeap = new int[window];
+        flush();
+    }
+
+    /**
+     * \brief Check a new fix
+     * @return True if the fix should be used, false if it should be dropped
+     */
+    boolean Accept(double lat, double lon, long time)
+    {
+        if (!mValid) { Restart(lat, lon, time); mAccepted++; return true; }
+
+        long  diff  = time - mTime;
+        float speed = (diff > 0) ? mDistance.Distance(mLat, mLon, lat, lon)/diff : Float.POSITIVE_INFINITY;
+
+        boolean absolute = speed > MAX_VEL;
+        boolean reject   = absolute || ((speed > MIN_VEL) && (mFilled > 0) && (speed > FACTOR*getMedian()));
+
+        if (reject && mConsec < MAX_CONSEC)
+        {
+            mConsec++;
+            mRejected++;
+            if (absolute) { mRejectedMax++; }
+            return false;
+        }
+
+        if (reject)
+        {
+            //Too many successive rejections: the reference itself is probably the outlier
+            mForced++;
+            Restart(lat, lon, time);
+        }
+        else
+        {
+            Insert(speed);
+            mLat = lat; mLon = lon; mTime = time;
+            mConsec = 0;
+        }
+        mAccepted++;
+        return true;
+    }
+
+    /**
+     * \brief The median of the accepted speeds in the window (m/ms): 0 if empty
+     */
+    double getMedian()
+    {
+        if (mLowSize == 0) { return 0.0; }
+        return (mLowSize > mHighSize) ? mSpeed[mLowHeap[0]] : 0.5*(mSpeed[mLowHeap[0]] + mSpeed[mHighHeap[0]]);
+    }
+
+    long getAccepted()    { return mAccepted; }
+    long getRejected()    { return mRejected; }
+    long getRejectedMax() { return mRejectedMax; }
+    long getForced()      { return mForced; }
+
+    /**
+     * \brief Forget the reference fix and the window (e.g. on signal loss): the counters are retained
+     */
+    void flush()
+    {
+        mValid    = false;
+        mConsec   = 0;
+        mNext     = 0;
+        mFilled   = 0;
+        mLowSize  = 0;
+        mHighSize = 0;
+    }
+
+    //========================= Window =========================//
+
+    private void Restart(double lat, double lon, long time)
+    {
+        flush();
+        mLat = lat; mLon = lon; mTime = time;
+        mValid = true;
+    }
+
+    /**
+     * \brief Add a speed to the window, removing the oldest if full
+     */
+    private void Insert(double speed)
+    {
+        int slot = mNext;
+        if (mFilled == WINDOW) { Remove(slot); } else { mFilled++; }
+        mNext = (mNext + 1 == WINDOW) ? 0 : mNext + 1;
+
+        mSpeed[slot] = speed;
+        if (mLowSize == 0 || speed <= mSpeed[mLowHeap[0]]) { mLow[slot] = true;  mLowHeap[mLowSize] = slot;   mPos[slot] = mLowSize++;  SiftUp(mLowHeap, mPos[slot], true); }
+        else                                               { mLow[slot] = false; mHighHeap[mHighSize] = slot; mPos[slot] = mHighSize++; SiftUp(mHighHeap, mPos[slot], false); }
+        Rebalance();
+    }
+
+    /**
+     * \brief Remove the slot from its heap (wherever it is)
+     */
+    private void Remove(int slot)
+    {
+        boolean low  = mLow[slot];
+        int[]   heap = low ? mLowHeap : mHighHeap;
+        int     last = low ? --mLowSize : --mHighSize;
+        int     pos  = mPos[slot];
+        if (pos != last)
+        {
+            heap[pos] = heap[last];
+            mPos[heap[pos]] = pos;
+            SiftDown(heap, SiftUp(heap, pos, low), low ? mLowSize : mHighSize, low);
+        }
+        Rebalance();
+    }
+
+    /**
+     * \brief Keep the lower half the same size as the upper half, or one larger
+     */
+    private void Rebalance()
+    {
+        if (mLowSize > mHighSize + 1)
+        {
+            int slot = mLowHeap[0];
+            mLowHeap[0] = mLowHeap[--mLowSize]; mPos[mLowHeap[0]] = 0; SiftDown(mLowHeap, 0, mLowSize, true);
+            mLow[slot] = false; mHighHeap[mHighSize] = slot; mPos[slot] = mHighSize++; SiftUp(mHighHeap, mPos[slot], false);
+        }
+        else if (mHighSize > mLowSize)
+        {
+            int slot = mHighHeap[0];
+            mHighHeap[0] = mHighHeap[--mHighSize]; mPos[mHighHeap[0]] = 0; SiftDown(mHighHeap, 0, mHighSize, false);
+            mLow[slot] = true; mLowHeap[mLowSize] = slot; mPos[slot] = mLowSize++; SiftUp(mLowHeap, mPos[slot], true);
+        }
+    }
+
+    /**
+     * \brief Whether a should be above b in the heap
+     */
+    private boolean Before(int a, int b, boolean max)
+    {
+        return max ? mSpeed[a] > mSpeed[b] : mSpeed[a] < mSpeed[b];
+    }
+
+    private int SiftUp(int[] heap, int pos, boolean max)
+    {
+        while (pos > 0)
+        {
+            int parent = (pos - 1)/2;
+            if (!Before(heap[pos], heap[parent], max)) { break; }
+            Swap(heap, pos, parent);
+            pos = parent;
+        }
+        return pos;
+    }
+
+    private void SiftDown(int[] heap, int pos, int size, boolean max)
+    {
+        while (true)
+        {
+            int child = 2*pos + 1;
+            if (child >= size) { break; }
+            if (child + 1 < size && Before(heap[child + 1], heap[child], max)) { child++; }
+            if (!Before(heap[child], heap[pos], max)) { break; }
+            Swap(heap, pos, child);
+            pos = child;
+        }
+    }
+
+    private void Swap(int[] heap, int a, int b)
+    {
+        int tmp = heap[a]; heap[a] = heap[b]; heap[b] = tmp;
+        mPos[heap[a]] = a;
+        mPos[heap[b]] = b;
+    }
+}
@@ -0,0 +1,518 @@
+/**
+ *   Copyright (C) 2019  Michael Camilleri
+ *
+ * 	This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ *	License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * 	version.
+ *	This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ *	warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 	You should have received a copy of the GNU General Public License along with this program. If not, see
+ *	http://www.gnu.org/licenses/.
+ *
+ *	Author: Michael Camilleri
+ *
+ */
+
+package mt.edu.um.vjagg;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * \brief Parameter-Sweep tuner for the LoggingParams
+ * \detail Evaluates a grid (or random sample) of parameter configurations over a corpus of recorded (store-everything)
+ *         traces, and ranks them by their error against the labelled journeys. The labels are the P (user button) entries
+ *         in the traces themselves: successive pairs mark the true start and end of a journey, while traces without any
+ *         pairs (e.g. stationary noise) should have no journeys at all.
+ *
+ *         Every (configuration x trace) evaluation is independent (its own TraceReplay, detector and post-processor over
+ *         the shared, read-only, pre-parsed trace), and the evaluations are spread over all cores with fork-join: each
+ *         writes only to its own result slot, so there is no contention and throughput scales with the cores.
+ *
+ *         Usage: ParamTuner [options] [NAME=spec]... [trace file or directory]...
+ *              NAME is one of LoggingParams.NAMES, and spec is either a list (v1,v2,...) or a range (lo:hi:step)
+ *              -random N   : Evaluate N random configurations (ranges are sampled uniformly, step ignored) instead of the grid
+ *              -seed S     : Seed for the random search
+ *              -threads T  : Number of worker threads (default: all cores)
+ *              -top K      : Number of best configurations to report
+ *              -store-all  : Replay with GPS always on (as recorded) instead of the full accelerometer-gated service
+ *              -raw        : Score the detected journeys directly (without post-processing)
+ */
+class ParamTuner
+{
+    //================== Scoring Weights ==================//
+    static final double W_TIME  = 1.0;      //!< Cost per second of start/stop error
+    static final double W_SPLIT = 60.0;     //!< Cost per extra detected journey within a true journey
+    static final double W_MERGE = 60.0;     //!< Cost per extra true journey within a detected journey
+    static final double W_MISS  = 300.0;    //!< Cost per true journey not detected at all
+    static final double W_FALSE = 120.0;    //!< Cost per detected journey with no true journey
+    static final double W_GPS   = 0.01;     //!< Cost per second of GPS-on time
+    static final double W_FIX   = 0.02;     //!< Cost per fix requested (i.e. the same again as W_GPS at the base rate)
+
+    //================== Event Types ==================//
+    private static final byte EV_LOC = 0;
+    private static final byte EV_SAT = 1;
+    private static final byte EV_ACC = 2;
+
+    /**
+     * \brief A pre-parsed trace (structure of arrays, shared read-only between evaluations)
+     */
+    static final class Trace
+    {
+        final String mName;     //!< File name
+        int      mSize;         //!< Number of events
+        byte[]   mType;         //!< Event Type (EV_)
+        long[]   mTime;         //!< Event Time-Stamp
+        double[] mValA;         //!< Latitude / Satellites / Acceleration-X
+        double[] mValB;         //!< Longitude / Acceleration-Y
+        float[]  mValC;         //!< Acceleration-Z
+        long[]   mLabels;       //!< True journeys: start/end pairs
+
+        Trace(String name)
+        {
+            mName = name;
+            mSize = 0;
+            mType = new byte[1024]; mTime = new long[1024];
+            mValA = new double[1024]; mValB = new double[1024]; mValC = new float[1024];
+            mLabels = new long[0];
+        }
+
+        void Add(byte type, long time, double a, double b, float c)
+        {
+            if (mSize == mType.length)
+            {
+                int size = mSize*2;
+                mType = Arrays.copyOf(mType, size); mTime = Arrays.copyOf(mTime, size);
+                mValA = Arrays.copyOf(mValA, size); mValB = Arrays.copyOf(mValB, size); mValC = Arrays.copyOf(mValC, size);
+            }
+            mType[mSize] = type; mTime[mSize] = time; mValA[mSize] = a; mValB[mSize] = b; mValC[mSize] = c;
+            mSize++;
+        }
+
+        int getNumLabels() { return mLabels.length/2; }
+    }
+
+    /**
+     * \brief The score of a configuration on one (or, accumulated, all) trace(s)
+     */
+    static final class Score
+    {
+        long mStartErr;     //!< Sum of absolute start errors of matched journeys (ms)
+        long mStopErr;      //!< Sum of absolute stop errors of matched journeys (ms)
+        int  mTruth;        //!< Number of true journeys
+        int  mDetected;     //!< Number of detected journeys
+        int  mMatched;      //!< True journeys overlapped by at least one detection
+        int  mSplits;       //!< Extra detections within true journeys
+        int  mMerges;       //!< Extra true journeys within detections
+        int  mMissed;       //!< True journeys with no detection
+        int  mFalse;        //!< Detections with no true journey
+        long mGPSTime;      //!< Total GPS-on time (ms)
+        long mFixes;        //!< Total fixes requested
+
+        void Add(Score other)
+        {
+            mStartErr += other.mStartErr; mStopErr += other.mStopErr;
+            mTruth    += other.mTruth;    mDetected += other.mDetected; mMatched += other.mMatched;
+            mSplits   += other.mSplits;   mMerges   += other.mMerges;
+            mMissed   += other.mMissed;   mFalse    += other.mFalse;
+            mGPSTime  += other.mGPSTime;  mFixes    += other.mFixes;
+        }
+
+        double Cost()
+        {
+            return W_TIME*(mStartErr + mStopErr)/1000.0 + W_SPLIT*mSplits + W_MERGE*mMerges + W_MISS*mMissed +
+                   W_FALSE*mFalse + W_GPS*mGPSTime/1000.0 + W_FIX*mFixes;
+        }
+
+        @Override
+        public String toString()
+        {
+            return String.format("cost=%.1f start=%.1fs stop=%.1fs matched=%d/%d detected=%d split=%d merge=%d miss=%d false=%d gps=%ds fixes=%d",
+                    Cost(), mMatched > 0 ? mStartErr/(1000.0*mMatched) : 0.0, mMatched > 0 ? mStopErr/(1000.0*mMatched) : 0.0,
+                    mMatched, mTruth, mDetected, mSplits, mMerges, mMissed, mFalse, mGPSTime/1000, mFixes);
+        }
+    }
+
+    /**
+     * \brief Collects the journeys of a single evaluation
+     */
+    private static final class Collector implements GPSLogger.JourneyHandler
+    {
+        final ArrayList<Journey> mJourneys = new ArrayList<>();
+
+        @Override
+        public void OnWindow() { /*Nothing to do here*/ }
+
+        @Override
+        public void OnJourneyEnd(Journey journey, int reason) { mJourneys.add(journey); }
+    }
+
+    /**
+     * \brief Fork-Join task over a range of (configuration x trace) evaluations
+     */
+    private final class Sweep extends RecursiveAction
+    {
+        private static final long serialVersionUID = 1L;
+
+        private final int mFrom;    //!< First evaluation (inclusive)
+        private final int mTo;      //!< Last evaluation (exclusive)
+
+        Sweep(int from, int to) { mFrom = from; mTo = to; }
+
+        @Override
+        protected void compute()
+        {
+            if (mTo - mFrom <= 1)
+            {
+                for (int i = mFrom; i < mTo; i++)
+                {
+                    int config = i / mTraces.size();
+                    int trace  = i % mTraces.size();
+                    mResults[config][trace] = Evaluate(mConfigs.get(config), mTraces.get(trace), mMode, mPostProcess);
+                }
+            }
+            else
+            {
+                int mid = (mFrom + mTo) >>> 1;
+                invokeAll(new Sweep(mFrom, mid), new Sweep(mid, mTo));
+            }
+        }
+    }
+
+    //======================= VARIABLES =======================//
+    private final ArrayList<Trace>         mTraces;         //!< The corpus
+    private final ArrayList<LoggingParams> mConfigs;        //!< The configurations to evaluate
+    private final int                      mMode;           //!< The replay mode
+    private final boolean                  mPostProcess;    //!< Whether to post-process before scoring
+    private Score[][]                      mResults;        //!< Per configuration, per trace results
+
+    ParamTuner(ArrayList<Trace> traces, ArrayList<LoggingParams> configs, int mode, boolean post_process)
+    {
+        mTraces      = traces;
+        mConfigs     = configs;
+        mMode        = mode;
+        mPostProcess = post_process;
+    }
+
+    /**
+     * \brief Run all the evaluations on the specified pool
+     * @return The accumulated score per configuration
+     */
+    Score[] Run(ForkJoinPool pool)
+    {
+        mResults = new Score[mConfigs.size()][mTraces.size()];
+        pool.invoke(new Sweep(0, mConfigs.size()*mTraces.size()));
+
+        Score[] totals = new Score[mConfigs.size()];
+        for (int c = 0; c < totals.length; c++)
+        {
+            totals[c] = new Score();
+            for (Score score : mResults[c]) { totals[c].Add(score); }
+        }
+        return totals;
+    }
+
+    //========================= Evaluation =========================//
+
+    /**
+     * \brief Evaluate a single configuration on a single trace
+     * @param params        The configuration
+     * @param trace         The (pre-parsed) trace
+     * @param mode          The replay mode (TraceReplay.RM_)
+     * @param post_process  If true, the journeys are post-processed before scoring
+     * @return              The score
+     */
+    static Score Evaluate(LoggingParams params, Trace trace, int mode, boolean post_process)
+    {
+        //Replay
+        Collector   collector = new Collector();
+        TraceReplay replay    = new TraceReplay(params, mode, collector);
+        for (int i = 0; i < trace.mSize; i++)
+        {
+            switch (trace.mType[i])
+            {
+                case EV_LOC: replay.OnLocation(trace.mTime[i], trace.mValA[i], trace.mValB[i]); break;
+                case EV_SAT: replay.OnSatellites(trace.mTime[i], (int)trace.mValA[i]); break;
+                case EV_ACC: replay.OnAcceleration(trace.mTime[i], (float)trace.mValA[i], (float)trace.mValB[i], trace.mValC[i]); break;
+            }
+        }
+        replay.OnSessionEnd();
+
+        //Post-Process
+        ArrayList<Journey> journeys = collector.mJourneys;
+        if (post_process)
+        {
+            RoutePostProcessor rpp = new RoutePostProcessor(params);
+            rpp.LoadLoggedJourneys(journeys);
+            rpp.PostProcess();
+            journeys = rpp.getJourneys();
+        }
+
+        //Score against the labels
+        Score score    = new Score();
+        score.mTruth    = trace.getNumLabels();
+        score.mDetected = journeys.size();
+        score.mGPSTime  = replay.getGPSTime();
+        score.mFixes    = replay.getFixes();
+
+        for (int t = 0; t < score.mTruth; t++)
+        {
+            long start = trace.mLabels[2*t], stop = trace.mLabels[2*t + 1];
+            long first = Long.MAX_VALUE, last = Long.MIN_VALUE;
+            int  found = 0;
+            for (Journey journey : journeys)
+            {
+                long j_start = journey.getPt(0).mTimeSt, j_stop = journey.getEnd().mTimeSt;
+                if (j_start <= stop && j_stop >= start) { found++; first = Math.min(first, j_start); last = Math.max(last, j_stop); }
+            }
+
+            if (found == 0) { score.mMissed++; continue; }
+            score.mMatched++;
+            score.mSplits   += found - 1;
+            score.mStartErr += Math.abs(first - start);
+            score.mStopErr  += Math.abs(last - stop);
+        }
+
+        for (Journey journey : journeys)
+        {
+            long j_start = journey.getPt(0).mTimeSt, j_stop = journey.getEnd().mTimeSt;
+            int  found   = 0;
+            for (int t = 0; t < score.mTruth; t++)
+            {
+                if (j_start <= trace.mLabels[2*t + 1] && j_stop >= trace.mLabels[2*t]) { found++; }
+            }
+
+            if (found == 0) { score.mFalse++; }
+            else            { score.mMerges += found - 1; }
+        }
+
+        return score;
+    }
+
+    //========================= Corpus Loading =========================//
+
+    /**
+     * \brief Parse a trace file (see TraceReplay for the format): P entries are taken as the labels
+     */
+    static Trace LoadTrace(File file) throws IOException
+    {
+        Trace trace = new Trace(file.getPath());
+        ArrayList<Long> labels = new ArrayList<>();
+
+        BufferedReader reader = new BufferedReader(new FileReader(file), 1 << 16);
+        try
+        {
+            String line;
+            while ((line = reader.readLine()) != null)
+            {
+                if (line.length() < 3 || line.charAt(1) != ' ') { continue; }
+                try
+                {
+                    String[] tok = line.trim().split(" ");
+                    long time = Long.parseLong(tok[1]);
+                    switch (line.charAt(0))
+                    {
+                        case 'L': trace.Add(EV_LOC, time, Double.parseDouble(tok[2]), Double.parseDouble(tok[3]), 0); break;
+                        case 'S': trace.Add(EV_SAT, time, Integer.parseInt(tok[2]), 0, 0); break;
+                        case 'A': trace.Add(EV_ACC, time, Float.parseFloat(tok[2]), Float.parseFloat(tok[3]), Float.parseFloat(tok[4])); break;
+                        case 'P': labels.add(time); break;
+                    }
+                }
+                catch (NumberFormatException | ArrayIndexOutOfBoundsException e)
+                {
+                    DebugLog.Warn("PT", "malformed " + line);
+                }
+            }
+        }
+        finally { reader.close(); }
+
+        trace.mLabels = new long[labels.size() & ~1];   //An unpaired (last) label is ignored
+        for (int i = 0; i < trace.mLabels.length; i++) { trace.mLabels[i] = labels.get(i); }
+        return trace;
+    }
+
+    private static void CollectTraces(File file, ArrayList<File> traces)
+    {
+        if (file.isDirectory())
+        {
+            File[] children = file.listFiles();
+            if (children == null) { return; }
+            Arrays.sort(children);
+            for (File child : children) { CollectTraces(child, traces); }
+        }
+        else if (file.getName().endsWith(".txt"))
+        {
+            traces.add(file);
+        }
+    }
+
+    //========================= Search Space =========================//
+
+    /**
+     * \brief Parse a value spec: either a list (v1,v2,...) or a range (lo:hi[:step])
+     * @return For lists, the values: for ranges, {lo, hi, step} (step is NaN if not given)
+     */
+    private static double[] ParseSpec(String spec)
+    {
+        String[] tok = spec.split(spec.contains(":") ? ":" : ",");
+        double[] values = new double[spec.contains(":") ? 3 : tok.length];
+        Arrays.fill(values, Double.NaN);
+        for (int i = 0; i < tok.length; i++) { values[i] = Double.parseDouble(tok[i]); }
+        return values;
+    }
+
+    /**
+     * \brief Expand the full grid (the default configuration is always first)
+     */
+    static ArrayList<LoggingParams> GridSearch(String[] names, String[] specs)
+    {
+        ArrayList<LoggingParams> configs = new ArrayList<>();
+        configs.add(new LoggingParams());
+        if (names.length == 0) { return configs; }
+
+        //Build the value lists
+        double[][] values = new double[names.length][];
+        for (int p = 0; p < names.length; p++)
+        {
+            double[] spec = ParseSpec(specs[p]);
+            if (!specs[p].contains(":")) { values[p] = spec; continue; }
+            if (Double.isNaN(spec[2]) || spec[2] <= 0) { throw new IllegalArgumentException("grid range needs a step: " + names[p]); }
+            int num = (int)Math.floor((spec[1] - spec[0])/spec[2] + 1e-9) + 1;
+            values[p] = new double[num];
+            for (int i = 0; i < num; i++) { values[p][i] = spec[0] + i*spec[2]; }
+        }
+
+        //Cartesian Product (odometer-style)
+        int[] index = new int[names.length];
+        while (true)
+        {
+            LoggingParams params = new LoggingParams();
+            for (int p = 0; p < names.length; p++) { params.Set(names[p], values[p][index[p]]); }
+            if (params.IsValid()) { configs.add(params); }
+
+            int p = 0;
+            while (p < names.length && ++index[p] == values[p].length) { index[p++] = 0; }
+            if (p == names.length) { break; }
+        }
+        return configs;
+    }
+
+    /**
+     * \brief Sample random configurations (the default configuration is always first)
+     */
+    static ArrayList<LoggingParams> RandomSearch(String[] names, String[] specs, int num, long seed)
+    {
+        ArrayList<LoggingParams> configs = new ArrayList<>();
+        configs.add(new LoggingParams());
+
+        Random random = new Random(seed);
+        double[][] values = new double[names.length][];
+        for (int p = 0; p < names.length; p++) { values[p] = ParseSpec(specs[p]); }
+
+        for (int attempts = 0; configs.size() <= num && attempts < num*100; attempts++)
+        {
+            LoggingParams params = new LoggingParams();
+            for (int p = 0; p < names.length; p++)
+            {
+                double value = specs[p].contains(":") ? values[p][0] + random.nextDouble()*(values[p][1] - values[p][0])
+                                                      : values[p][random.nextInt(values[p].length)];
+                params.Set(names[p], value);
+            }
+            if (params.IsValid()) { configs.add(params); }
+        }
+        return configs;
+    }
+
+    //========================= Command Line =========================//
+
+    public static void main(String[] args) throws IOException
+    {
+        int     random   = 0;
+        long    seed     = 0;
+        int     threads  = Runtime.getRuntime().availableProcessors();
+        int     top      = 10;
+        int     mode     = TraceReplay.RM_GATED;
+        boolean post     = true;
+
+        ArrayList<String> names = new ArrayList<>(), specs = new ArrayList<>();
+        ArrayList<File>   files = new ArrayList<>();
+        for (int i = 0; i < args.length; i++)
+        {
+            switch (args[i])
+            {
+                case "-random":    random  = Integer.parseInt(args[++i]); break;
+                case "-seed":      seed    = Long.parseLong(args[++i]); break;
+                case "-threads":   threads = Integer.parseInt(args[++i]); break;
+                case "-top":       top     = Integer.parseInt(args[++i]); break;
+                case "-store-all": mode    = TraceReplay.RM_STORE_ALL; break;
+                case "-raw":       post    = false; break;
+                default:
+                    int eq = args[i].indexOf('=');
+                    if (eq > 0)
+                    {
+                        String name = args[i].substring(0, eq);
+                        if (Double.isNaN(new LoggingParams().Get(name))) { System.err.println("Unknown parameter " + name); System.exit(1); }
+                        names.add(name);
+                        specs.add(args[i].substring(eq + 1));
+                    }
+                    else
+                    {
+                        CollectTraces(new File(args[i]), files);
+                    }
+            }
+        }
+        if (files.isEmpty())
+        {
+            System.err.println("Usage: ParamTuner [-random N] [-seed S] [-threads T] [-top K] [-store-all] [-raw] [NAME=v1,v2,...|NAME=lo:hi:step]... <trace file/directory>...");
+            System.exit(1);
+        }
+
+        //Load the Corpus (once)
+        ArrayList<Trace> traces = new ArrayList<>();
+        int labelled = 0;
+        for (File file : files) { Trace trace = LoadTrace(file); traces.add(trace); labelled += trace.getNumLabels(); }
+
+        //Build the search space
+        String[] p_names = names.toArray(new String[names.size()]);
+        String[] p_specs = specs.toArray(new String[specs.size()]);
+        ArrayList<LoggingParams> configs = (random > 0) ? RandomSearch(p_names, p_specs, random, seed) : GridSearch(p_names, p_specs);
+
+        System.out.println(traces.size() + " traces (" + labelled + " labelled journeys), " + configs.size() + " configurations, "
+                + threads + " threads");
+
+        //Run
+        ForkJoinPool pool  = new ForkJoinPool(threads);
+        long         start = System.nanoTime();
+        final Score[] scores = new ParamTuner(traces, configs, mode, post).Run(pool);
+        long elapsed = (System.nanoTime() - start)/1000000;
+        pool.shutdown();
+
+        System.out.println(String.format("%d evaluations in %dms (%.1f/s)", configs.size()*traces.size(), elapsed,
+                configs.size()*traces.size()*1000.0/Math.max(elapsed, 1)));
+
+        //Rank
+        Integer[] order = new Integer[configs.size()];
+        for (int c = 0; c < order.length; c++) { order[c] = c; }
+        Arrays.sort(order, new Comparator<Integer>()
+        {
+            @Override
+            public int compare(Integer a, Integer b) { return Double.compare(scores[a].Cost(), scores[b].Cost()); }
+        });
+
+        System.out.println("default: " + scores[0]);
+        for (int r = 0; r < Math.min(top, order.length); r++)
+        {
+            StringBuilder line = new StringBuilder("#").append(r + 1).append(":");
+            for (String name : p_names) { line.append(" ").append(name).append("=").append(configs.get(order[r]).Get(name)); }
+            System.out.println(line.append(order[r] == 0 ? " (default)" : "").append("\n    ").append(scores[order[r]]));
+        }
+    }
+}
@@ -0,0 +1,173 @@
+/**
+ *   Copyright (C) 2019  Michael Camilleri
+ *
+ * 	This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ *	License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * 	version.
+ *	This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ *	warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 	You should have received a copy of the GNU General Public License along with this program. If not, see
+ *	http://www.gnu.org/licenses/.
+ *
+ *	Author: Michael Camilleri
+ *
+ */
+
+package mt.edu.um.vjagg;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A worker thread fed through an SpscQueue: the producer (a single thread, e.g. the main looper) posts events, which the
+ * worker hands to its EventHandler in order.
+ *
+ * The worker drains the queue in passes of up to BATCH events, and parks when it is empty: the producer only unparks it
+ * if it has actually parked (the flag and the tail are both volatile, so one of the two sides always sees the other).
+ * Posting is hence a handful of array writes. Events which may be lost (e.g. raw log lines, which the caller can write
+ * directly instead) are posted with Post, which never blocks: if the queue is full (the worker has stalled) the event is
+ * dropped and counted. Events which must not be lost (e.g. fixes, journeys, control events) are posted with Put, which
+ * instead waits (yielding) for the worker to make space, and only fails if the worker is no longer running.
+ *
+ * The queueing delay (from Post to the handler) is measured for every event: the statistics (and the drop/wait counts)
+ * should only be read once the thread is stopped.
+ */
+class PipelineThread implements Runnable, SpscQueue.Consumer
+{
+    /**
+     * \brief Handles the events on the worker thread
+     */
+    interface EventHandler
+    {
+        /**
+         * \brief Called for every event (see SpscQueue.Consumer)
+         */
+        void OnEvent(int type, long time, double a, double b, double c, Object obj);
+    }
+
+    private static final int BATCH = 64;    //!< Maximum events handled per pass
+
+    //!< Member Variables
+    private final SpscQueue    mQueue;
+    private final EventHandler mHandler;
+    private final Thread       mThread;
+    private volatile boolean   mRunning;    //!< Cleared by Stop: the queue is drained before the thread exits
+    private volatile boolean   mParked;     //!< Set while the worker is (about to be) parked
+
+    //!< Statistics
+    private long mHandled;      //!< Events handled
+    private long mDelaySum;     //!< Total queueing delay (ns)
+    private long mDelayMax;     //!< Longest queueing delay (ns)
+    private long mDropped;      //!< Events dropped since the queue was full, or the worker had exited (producer side)
+    private long mWaited;       //!< Events which had to wait for space (producer side)
+
+    /**
+     * \brief Constructor: the thread is not started
+     * @param name      Name of the thread
+     * @param capacity  Capacity of the queue
+     * @param handler   The event handler (called on the worker thread)
+     */
+    PipelineThread(String name, int capacity, EventHandler handler)
+    {
+        mQueue   = new SpscQueue(capacity);
+        mHandler = handler;
+        mThread  = new Thread(this, name);
+        mThread.setDaemon(true);
+        mRunning = false;
+        mParked  = false;
+    }
+
+    /**
+     * \brief Start the worker
+     */
+    void Start()
+    {
+        mRunning = true;
+        mThread.start();
+    }
+
+    /**
+     * \brief Stop the worker (after all events posted so far are handled), and wait for it to exit
+     */
+    void Stop()
+    {
+        mRunning = false;
+        LockSupport.unpark(mThread);
+
+        boolean interrupted = false;
+        while (mThread.isAlive())
+        {
+            try { mThread.join(); } catch (InterruptedException e) { interrupted = true; }
+        }
+        if (interrupted) { Thread.currentThread().interrupt(); }
+    }
+
+    /**
+     * \brief Post an event (from the producer thread only)
+     * @return False if the queue was full, and the event was dropped
+     */
+    boolean Post(int type, long time, double a, double b, double c, Object obj)
+    {
+        if (!Offer(type, time, a, b, c, obj)) { mDropped++; return false; }
+        return true;
+    }
+
+    /**
+     * \brief Post an event which must not be lost (from the producer thread only): if the queue is full, wait for space
+     * \detail The worker never parks while there are events, so the wait is bounded by how long it takes to handle a BATCH.
+     * @return False only if the worker has exited (the event is dropped): the caller should then handle it itself
+     */
+    boolean Put(int type, long time, double a, double b, double c, Object obj)
+    {
+        if (Offer(type, time, a, b, c, obj)) { return true; }
+
+        mWaited++;
+        while (!Offer(type, time, a, b, c, obj))
+        {
+            if (!mThread.isAlive()) { mDropped++; return false; }
+            Thread.yield();
+        }
+        return true;
+    }
+
+    /**
+     * \brief Add the event to the queue, waking up the worker if it is parked
+     */
+    private boolean Offer(int type, long time, double a, double b, double c, Object obj)
+    {
+        if (!mQueue.Offer(type, time, a, b, c, obj)) { return false; }
+        if (mParked) { LockSupport.unpark(mThread); }
+        return true;
+    }
+
+    @Override
+    public void run()
+    {
+        while (true)
+        {
+            boolean running = mRunning; //Read before draining, so that everything posted before Stop is handled
+            if (mQueue.Drain(this, BATCH) > 0) { continue; }
+            if (!running) { break; }
+
+            mParked = true;
+            if (mQueue.IsEmpty() && mRunning) { LockSupport.park(this); }
+            mParked = false;
+        }
+    }
+
+    @Override
+    public void OnItem(int type, long time, double a, double b, double c, Object obj, long posted)
+    {
+        long delay = System.nanoTime() - posted;
+        mHandled++;
+        mDelaySum += delay;
+        mDelayMax  = Math.max(mDelayMax, delay);
+        mHandler.OnEvent(type, time, a, b, c, obj);
+    }
+
+    //!< Statistics (only consistent once stopped)
+    long   getHandled()   { return mHandled; }
+    long   getDropped()   { return mDropped; }
+    long   getWaited()    { return mWaited; }
+    double getMeanDelay() { return (mHandled > 0) ? mDelaySum/(double)mHandled : 0.0; } //!< ns
+    long   getMaxDelay()  { return mDelayMax; } //!< ns
+}
@@ -23,10 +23,6 @@ package mt.edu.um.vjagg;
  * [Converted to Primitive Types]
  */
 
-import android.location.Location;
-
-import com.google.android.gms.maps.model.LatLng;
-
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
@@ -66,26 +62,6 @@ public class RoutePoint
         mTimeSt = time;
     }
 
-    /**
-     * \brief Public Constructor for initialisation from a Location Object
-     * @param location  The location object: the latitude, longitude and time stamp are stored
-     */
-    public RoutePoint(Location location)
-    {
-        mLatitude   = location.getLatitude();
-        mLongitude  = location.getLongitude();
-        mTimeSt     = location.getTime();
-    }
-
-    /**
-     * Constructs and returns a LatLng point
-     * @return
-     */
-    public LatLng Point()
-    {
-        return new LatLng(mLatitude, mLongitude);
-    }
-
     public RoutePoint(DataInputStream stream) throws IOException
     {
         serialize(stream);
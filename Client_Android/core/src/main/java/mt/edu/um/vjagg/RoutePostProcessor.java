@@ -15,11 +15,6 @@
 
 package mt.edu.um.vjagg;
 
-import android.content.Context;
-import android.location.Location;
-
-import com.google.android.gms.maps.model.LatLngBounds;
-
 import java.io.BufferedInputStream;
 import java.io.EOFException;
 import java.io.File;
@@ -38,20 +33,34 @@ public class RoutePostProcessor
     public static final int      AVERAGE_SIZE = 6;                   //!< Averaging size for velocity calculations
 
     private ArrayList<Journey> mJourneys;   //!< List of Journeys
+    private final LoggingParams  mParams;   //!< The Post-Processing parameters
+    private final DistanceKernel mDistance; //!< Distance Kernel
 
     public static final String TAG = "RPP";
 
+    public RoutePostProcessor()
+    {
+        this(new LoggingParams());
+    }
+
+    RoutePostProcessor(LoggingParams params)
+    {
+        mParams   = params;
+        mDistance = new DistanceKernel(params.mDistMode);
+    }
+
     /**
      * \brief Loads the Journeys logged by the route-logger
      * TODO Revise Return Type!
+     * @param log_file The file to which the journeys were logged
      * @return
      */
-    public Exception LoadLoggedJourneys(Context c)
+    public Exception LoadLoggedJourneys(File log_file)
     {
-        LogView.Debug(TAG, "LoadLog");
+        DebugLog.Debug(TAG, "LoadLog");
         try
         {
-            BufferedInputStream gps_reader  = new BufferedInputStream(new FileInputStream(new File(c.getFilesDir(), TrackingService.GPS_LOG_FILE))); //TODO change
+            BufferedInputStream gps_reader  = new BufferedInputStream(new FileInputStream(log_file));
             mJourneys                       = new ArrayList<>();  //create a list
 
             while (true)    //Will only exit once an exception is thrown or we break out
@@ -61,15 +70,15 @@ public class RoutePostProcessor
                 Exception result = tmp_journey.loadRoute(gps_reader);
 
                 //Handle Result
-                if (result == null)                                   { LogView.Debug(TAG, "Found"); mJourneys.add(tmp_journey); }
-                else if (result instanceof EOFException)              { LogView.Debug(TAG, "EOF"); break; }
+                if (result == null)                                   { DebugLog.Debug(TAG, "Found"); mJourneys.add(tmp_journey); }
+                else if (result instanceof EOFException)              { DebugLog.Debug(TAG, "EOF"); break; }
                 else if (result instanceof InvalidParameterException) { continue; }
                 else                                                  { throw result; }
             }
         }
         catch (FileNotFoundException f)
         {
-            LogView.Warn(TAG, "No Jour"); //TODO revise return types...
+            DebugLog.Warn(TAG, "No Jour"); //TODO revise return types...
             return f;
         }
         catch (Exception e)
@@ -80,33 +89,64 @@ public class RoutePostProcessor
         return null;
     }
 
-//    public void LoadLoggedJourneys(ArrayList<Journey> journeys)
-//    {
-//        mJourneys = journeys;
-//    }
+    /**
+     * \brief Use the journeys already in memory (e.g. from a replay) instead of loading them
+     * @param journeys The list of journeys (this is modified in place)
+     */
+    public void LoadLoggedJourneys(ArrayList<Journey> journeys)
+    {
+        mJourneys = journeys;
+    }
 
 
     /**
      * \brief Save the Journeys to the Post-Processed file (in append mode)
-     * @param c Context (for retrieving files directory)
+     * @param log_file The file from which the journeys were loaded (this is deleted on success)
+     * @param pp_file  The Post-Processed file to append to
      * @return
      */
-    public Exception SaveJourneys(Context c)
+    public Exception SaveJourneys(File log_file, File pp_file)
     {
-        LogView.Debug(TAG, "Save");
+        DebugLog.Debug(TAG, "Save");
 
         //NowStore all journeys still active...
         for(Journey journey : mJourneys)
         {
-            Exception result = journey.storeRoute(Journey.TC_UNSPEC, (new File(c.getFilesDir(), TrackingService.GPS_RPP_FILE)));
+            Exception result = journey.storeRoute(Journey.TC_UNSPEC, pp_file);
             if (result != null) { return result; }
         }
 
         //If successful, clean up the other file and return
-        (new File(c.getFilesDir(), TrackingService.GPS_LOG_FILE)).delete(); //TODO change
+        log_file.delete();
         return null;
     }
 
+    /**
+     * \brief Runs the standard Post-Processing passes (with the configured thresholds) on the loaded journeys
+     */
+    public void PostProcess()
+    {
+        //First eliminate all journeys whose bounds are less than 50 metres
+        ThresholdDistance(mParams.mConsDistThresh);
+
+        //Now Join Journeys
+        JoinJourneys(mParams.mJoinTimeThresh, mParams.mJoinVelFactor);
+
+        //Then truncate journeys less than 500m
+        ThresholdDistance(mParams.mAbsDistThresh);
+
+        //Finally Trim ends of journeys to prevent spurious bursts (faster than 5m/s)
+        TrimEnds(mParams.mTrimMax, mParams.mTrimVelThresh);
+    }
+
+    /**
+     * \brief Returns the (loaded/processed) journeys
+     */
+    public ArrayList<Journey> getJourneys()
+    {
+        return mJourneys;
+    }
+
     /**
      * \brief Trims the journey start/end points for velocities exceeding a certain speed...
      * @param num   : Maximum number of points to trim (to avoid trimming the entire journey)
@@ -114,16 +154,16 @@ public class RoutePostProcessor
      */
     void TrimEnds(int num, float vel_threshold)
     {
-        LogView.Debug(TAG, "TrimEnds");
+        DebugLog.Debug(TAG, "TrimEnds");
         for (int i=0; i<mJourneys.size(); ++i)
         {
-            LogView.Debug(TAG, "Jour "+Integer.toString(i));
+            DebugLog.Debug(TAG, "Jour "+Integer.toString(i));
             int k=0; //Need to keep track of two indices: one is the actual index into the array (k): the other is for the maximum number of counts to remove (j)...
 
             //Start by Trimming the Start-Point(s)
             for (int j=0; j<num; j++, k++)
             {
-                if (EstimateVelocity(mJourneys.get(i).getPt(k), mJourneys.get(i).getPt(k+1)) > vel_threshold) { LogView.Debug(TAG, "Trim " + Integer.toString(k)); mJourneys.get(i).RemovePt(k); k--; } //Need to decrement k since indices will be invalidated
+                if (EstimateVelocity(mJourneys.get(i).getPt(k), mJourneys.get(i).getPt(k+1)) > vel_threshold) { DebugLog.Debug(TAG, "Trim " + Integer.toString(k)); mJourneys.get(i).RemovePt(k); k--; } //Need to decrement k since indices will be invalidated
             }
 
             //Now Trim end-points
@@ -131,7 +171,7 @@ public class RoutePostProcessor
             k = jour_length - 1;
             for (int j=0; j < num; j++, k--)
             {
-                if (EstimateVelocity(mJourneys.get(i).getPt(k-1), mJourneys.get(i).getPt(k)) > vel_threshold) { LogView.Debug(TAG, "Trim " + Integer.toString(k)); mJourneys.get(i).RemovePt(k); }
+                if (EstimateVelocity(mJourneys.get(i).getPt(k-1), mJourneys.get(i).getPt(k)) > vel_threshold) { DebugLog.Debug(TAG, "Trim " + Integer.toString(k)); mJourneys.get(i).RemovePt(k); }
             }
         }
     }
@@ -142,16 +182,15 @@ public class RoutePostProcessor
      */
     void ThresholdDistance(float dist_threshold)
     {
-        LogView.Debug(TAG, "ThresDist");
+        DebugLog.Debug(TAG, "ThresDist");
         for (int i = mJourneys.size()-1; i >= 0; i--)  //Start from the last element to avoid invalidating indices
         {
             //Calculate Distance between bounds
-            float[]      dist = new float[1];
-            LatLngBounds bounds = mJourneys.get(i).getBounds();
-            Location.distanceBetween(bounds.northeast.latitude, bounds.northeast.longitude, bounds.southwest.latitude, bounds.southwest.longitude, dist);
+            Journey journey = mJourneys.get(i);
+            float   dist    = mDistance.Distance(journey.getNorth(), journey.getEast(), journey.getSouth(), journey.getWest());
 
             //If it does not pass threshold, then remove
-            if (dist[0] < dist_threshold) { LogView.Debug(TAG, "Rem " + Integer.toString(i)); mJourneys.remove(i); }
+            if (dist < dist_threshold) { DebugLog.Debug(TAG, "Rem " + Integer.toString(i)); mJourneys.remove(i); }
         }
     }
 
@@ -179,21 +218,21 @@ public class RoutePostProcessor
      */
     void JoinJourneys(long time_threshold, float vel_factor)
     {
-        LogView.Debug(TAG, "Join");
+        DebugLog.Debug(TAG, "Join");
         if (mJourneys.size() > 1)   //IF 2 or more
         {
             for (int i = mJourneys.size() - 2; i >= 0; i--)  //Start from the next to last element
             {
-                LogView.Debug(TAG, "Jour " + Integer.toString(i) + " - " + Integer.toString(i+1));
+                DebugLog.Debug(TAG, "Jour " + Integer.toString(i) + " - " + Integer.toString(i+1));
                 //Common Vars
-                float  dist[] = new float[1];
+                float  dist = 0.0f;
                 float  time_dif = 0.0f;
                 RoutePoint startPt, endPt;
 
                 //TODO ?include check on the type of journey end...?
 
                 //First check that the difference in time indeed is not too excessive...
-                if (Math.abs((mJourneys.get(i+1).getPt(0).mTimeSt) - (mJourneys.get(i).getEnd().mTimeSt)) > time_threshold) { LogView.Debug(TAG, ">Time"); continue; }
+                if (Math.abs((mJourneys.get(i+1).getPt(0).mTimeSt) - (mJourneys.get(i).getEnd().mTimeSt)) > time_threshold) { DebugLog.Debug(TAG, ">Time"); continue; }
 
                 //Now compute the velocity between the last points in the first journey
                 double end_velocity = 0.0;
@@ -206,16 +245,16 @@ public class RoutePostProcessor
                 //Now find velocity between last point and first point of next journey
                 startPt = mJourneys.get(i).getEnd();
                 endPt = mJourneys.get(i+1).getPt(0);
-                Location.distanceBetween(startPt.mLatitude, startPt.mLongitude, endPt.mLatitude, endPt.mLongitude, dist);
+                dist = mDistance.Distance(startPt.mLatitude, startPt.mLongitude, endPt.mLatitude, endPt.mLongitude);
                 time_dif = endPt.mTimeSt - startPt.mTimeSt;
 
                 //Check that within velocity tolerances
-                if ((dist[0]/time_dif) > vel_factor*end_velocity) { LogView.Debug(TAG, ">Velo"); continue; }  //Did not pass tolerance threshold
+                if ((dist/time_dif) > vel_factor*end_velocity) { DebugLog.Debug(TAG, ">Velo"); continue; }  //Did not pass tolerance threshold
 
                 //Else, join journeys & remove second one...
                 mJourneys.get(i).appendJourney(mJourneys.get(i+1));
                 mJourneys.remove(i + 1);
-                LogView.Debug(TAG, "JoinOK");
+                DebugLog.Debug(TAG, "JoinOK");
             }
         }
     }
@@ -228,10 +267,7 @@ public class RoutePostProcessor
      */
     private float EstimateVelocity(RoutePoint start, RoutePoint end)
     {
-        float[] dist = new float[1];
-        Location.distanceBetween(start.mLatitude, start.mLongitude, end.mLatitude, end.mLongitude, dist);
-
-        return (dist[0])/(end.mTimeSt - start.mTimeSt);
+        return mDistance.Distance(start.mLatitude, start.mLongitude, end.mLatitude, end.mLongitude)/(end.mTimeSt - start.mTimeSt);
     }
 
 }
@@ -0,0 +1,95 @@
+/**
+ *   Copyright (C) 2019  Michael Camilleri
+ *
+ * 	This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ *	License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * 	version.
+ *	This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ *	warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 	You should have received a copy of the GNU General Public License along with this program. If not, see
+ *	http://www.gnu.org/licenses/.
+ *
+ *	Author: Michael Camilleri
+ *
+ */
+
+package mt.edu.um.vjagg;
+
+/**
+ * Adaptive GPS sampling: picks the location request interval, priority and batching from the detector state and speed.
+ *
+ * At vehicle speeds (or whenever the speed is unknown) fixes are requested at the base GPS_SAMPLE_RATE, which the
+ * detection thresholds were tuned for. While stationary or walking (below GPS_ADAPT_WALK_VEL, with some hysteresis so as
+ * not to flap around the threshold) the sparser GPS_ADAPT_SLOW_RATE is used instead: these are the segments which are
+ * otherwise oversampled, and which account for most of the fixes of a typical journey. Optionally (GPS_ADAPT_BALANCED),
+ * the balanced-power priority is also used while searching for a journey start at walking speed.
+ *
+ * The detection itself does not depend on the rate: segment velocities are always computed over the actual time
+ * difference (MarkovChain, OutlierFilter, KalmanSmoother), and the DownSampler averages the time-stamps along with the
+ * positions. The window-count parameters however span proportionally more time at the slow rate.
+ *
+ * While fully logging (JOUR_LOGD) fixes may also be batched (GPS_BATCH_WAIT): the provider holds them back and delivers
+ * them together (see GPSLogger.onNewLocations), so the application processor only wakes once per batch. Nothing in that
+ * state needs the fixes promptly; in the others, the start detection (and hence the journey timeout) does.
+ */
+class SamplingController
+{
+    //!< Priorities (mapped to the LocationRequest priorities by the service)
+    static final int SP_HIGH_ACCURACY = 0;
+    static final int SP_BALANCED      = 1;
+
+    private static final float HYSTERESIS = 0.8f;   //!< Drop to the slow rate only below this fraction of the walking speed
+
+    //!< Member Variables
+    private final LoggingParams mParams;
+    private long    mInterval;  //!< The current interval (ms)
+    private int     mPriority;  //!< The current priority (SP_)
+    private long    mMaxWait;   //!< The current maximum batching delay (ms: 0 if not batched)
+
+    /**
+     * \brief Constructor
+     * @param params The parameters (not copied)
+     */
+    SamplingController(LoggingParams params)
+    {
+        mParams = params;
+        Reset();
+    }
+
+    /**
+     * \brief Back to the base (dense) rate: e.g. when (re-)starting the GPS
+     */
+    void Reset()
+    {
+        mInterval = LoggingParams.GPS_SAMPLE_RATE;
+        mPriority = SP_HIGH_ACCURACY;
+        mMaxWait  = 0;
+    }
+
+    /**
+     * \brief Update the sampling from the detector
+     * @param state The detector state (GPSLogger.JOUR_)
+     * @param speed The current speed estimate (m/ms: GPSLogger.getSpeed), negative if unknown
+     * @return      True if the interval, priority or batching changed (and hence the location request should be renewed)
+     */
+    boolean Update(int state, float speed)
+    {
+        long interval = mInterval;
+        if (speed < 0 || speed > mParams.mAdaptWalkVel)    { interval = LoggingParams.GPS_SAMPLE_RATE; }
+        else if (speed < mParams.mAdaptWalkVel*HYSTERESIS) { interval = Math.max(mParams.mAdaptSlowRate, LoggingParams.GPS_SAMPLE_RATE); }
+
+        int priority = (mParams.mAdaptBalanced > 0 && state <= GPSLogger.JOUR_SRCH && interval > LoggingParams.GPS_SAMPLE_RATE) ? SP_BALANCED : SP_HIGH_ACCURACY;
+
+        long max_wait = (state == GPSLogger.JOUR_LOGD) ? mParams.mBatchWait : 0;
+
+        boolean changed = (interval != mInterval) || (priority != mPriority) || (max_wait != mMaxWait);
+        mInterval = interval;
+        mPriority = priority;
+        mMaxWait  = max_wait;
+        return changed;
+    }
+
+    long getInterval() { return mInterval; }
+    int  getPriority() { return mPriority; }
+    long getMaxWait()  { return mMaxWait; }
+}
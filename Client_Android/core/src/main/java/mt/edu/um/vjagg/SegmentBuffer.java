@@ -0,0 +1,186 @@
+/**
+ *   Copyright (C) 2019  Michael Camilleri
+ *
+ * 	This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ *	License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * 	version.
+ *	This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ *	warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 	You should have received a copy of the GNU General Public License along with this program. If not, see
+ *	http://www.gnu.org/licenses/.
+ *
+ *	Author: Michael Camilleri
+ *
+ */
+
+package mt.edu.um.vjagg;
+
+/**
+ * A WindowBuffer which additionally caches the segment (distance and time difference) between each point and the one
+ * before it. The segment is computed once, when the point enters the buffer, and stored in parallel primitive columns,
+ * so that scanning successive differences over the window does not repeat any geodesic computations.
+ *
+ * The displacement and elapsed time between any two indices are also answered directly (in O(1), irrespective of the
+ * buffer size), from the points themselves.
+ *
+ * If the kernel is in DK_PROJECTED mode, each point is also projected (once, as it enters the buffer) into the kernel's
+ * LocalProjection, and segments and displacements are then planar. Should the projection be re-anchored, the points
+ * still in the buffer are re-projected (this is rare, and costs O(size)).
+ */
+public class SegmentBuffer extends WindowBuffer
+{
+    //!< Member Variables
+    private final DistanceKernel mDistance;   //!< The kernel used to compute segment distances
+    private final float[]        mSegDist;    //!< Distance (m) from the previous point to this one
+    private final long[]         mSegTime;    //!< Time Difference (ms) from the previous point to this one
+    private final LocalProjection mProjection; //!< The projection (null if not in projected mode)
+    private final double[]       mEast;       //!< Projected Easting (m) of each point (only if projected)
+    private final double[]       mNorth;      //!< Projected Northing (m) of each point (only if projected)
+    private int                  mEpoch;      //!< The projection epoch with which the points were projected
+
+    /**
+     * \brief Constructor
+     * @param size      The buffer size
+     * @param kernel    The distance kernel to use for computing segments
+     */
+    public SegmentBuffer(int size, DistanceKernel kernel)
+    {
+        super(size);
+        mDistance = kernel;
+        mSegDist  = new float[size];
+        mSegTime  = new long[size];
+        mProjection = kernel.getProjection();
+        mEast     = (mProjection != null) ? new double[size] : null;
+        mNorth    = (mProjection != null) ? new double[size] : null;
+        mEpoch    = 0;
+    }
+
+    /**
+     * \brief Add a Point, computing the segment from the previous (most recent) point
+     * \detail The first point after a flush has no predecessor and hence gets a zero-length segment
+     */
+    @Override
+    public void AddPoint(double lat, double lon, long time)
+    {
+        //Keep track of the previous point (if any) before it is shifted
+        boolean has_prev  = getFilledFirst(1);
+        double  prev_lat  = has_prev ? getLatitude(0)  : lat;
+        double  prev_lon  = has_prev ? getLongitude(0) : lon;
+        long    prev_time = has_prev ? getTimeSt(0)    : time;
+
+        //Add the point itself
+        super.AddPoint(lat, lon, time);
+
+        //Now compute the segment
+        int raw = toRaw(0);
+        if (mProjection != null)
+        {
+            if (mProjection.Update(lat, lon) || mEpoch != mProjection.getEpoch()) { Reproject(); }
+            mEast[raw]    = mProjection.East(lon);
+            mNorth[raw]   = mProjection.North(lat);
+            mSegDist[raw] = has_prev ? LocalProjection.Distance(mEast[toRaw(1)], mNorth[toRaw(1)], mEast[raw], mNorth[raw]) : 0.0f;
+        }
+        else
+        {
+            mSegDist[raw] = has_prev ? mDistance.Distance(prev_lat, prev_lon, lat, lon) : 0.0f;
+        }
+        mSegTime[raw] = time - prev_time;
+    }
+
+    /**
+     * \brief Replace the most recent segment by the distance travelled at the specified speed over its time difference
+     * \detail Used when a filter provides a better estimate of the velocity than the finite difference of positions: all
+     *         the segment-based computations then follow the filtered speed
+     * @param speed The speed in m/ms
+     */
+    public void SetSegSpeed(float speed)
+    {
+        int raw = toRaw(0);
+        mSegDist[raw] = speed*mSegTime[raw];
+    }
+
+    /**
+     * \brief Re-project the points in the buffer (after the projection was re-anchored)
+     */
+    private void Reproject()
+    {
+        mEpoch = mProjection.getEpoch();
+        for (int i = 0; getFilledFirst(i + 1); i++)
+        {
+            int raw = toRaw(i);
+            mEast[raw]  = mProjection.East(getLongitude(i));
+            mNorth[raw] = mProjection.North(getLatitude(i));
+        }
+    }
+
+    /**
+     * \brief The projection in which getEast/getNorth are expressed (null if not projected)
+     */
+    public LocalProjection getProjection()
+    {
+        return mProjection;
+    }
+
+    /**
+     * \brief Projected Easting of the point (only valid if projected)
+     * @param index The index (0 is the most recent)
+     * @return      The easting in metres
+     */
+    public double getEast(int index)
+    {
+        return mEast[toRaw(index)];
+    }
+
+    /**
+     * \brief Projected Northing of the point (only valid if projected)
+     * @param index The index (0 is the most recent)
+     * @return      The northing in metres
+     */
+    public double getNorth(int index)
+    {
+        return mNorth[toRaw(index)];
+    }
+
+    /**
+     * \brief Distance of the segment ending at the index, i.e. between points index+1 and index
+     * @param index The index (0 is the most recent)
+     * @return      The distance in metres
+     */
+    public float getSegDistance(int index)
+    {
+        return mSegDist[toRaw(index)];
+    }
+
+    /**
+     * \brief Time difference of the segment ending at the index, i.e. between points index+1 and index
+     * @param index The index (0 is the most recent)
+     * @return      The time difference in milliseconds
+     */
+    public long getSegTime(int index)
+    {
+        return mSegTime[toRaw(index)];
+    }
+
+    /**
+     * \brief Time elapsed between two points
+     * @param start The older index
+     * @param end   The more recent index
+     * @return      The elapsed time in milliseconds
+     */
+    public long getElapsed(int start, int end)
+    {
+        return getTimeSt(end) - getTimeSt(start);
+    }
+
+    /**
+     * \brief Straight-line displacement between two points
+     * @param start The older index
+     * @param end   The more recent index
+     * @return      The displacement in metres
+     */
+    public float getDisplacement(int start, int end)
+    {
+        if (mProjection != null) { return LocalProjection.Distance(getEast(start), getNorth(start), getEast(end), getNorth(end)); }
+        return mDistance.Distance(getLatitude(start), getLongitude(start), getLatitude(end), getLongitude(end));
+    }
+}
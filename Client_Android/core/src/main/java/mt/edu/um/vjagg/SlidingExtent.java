@@ -0,0 +1,163 @@
+/**
+ *   Copyright (C) 2019  Michael Camilleri
+ *
+ * 	This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ *	License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * 	version.
+ *	This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ *	warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 	You should have received a copy of the GNU General Public License along with this program. If not, see
+ *	http://www.gnu.org/licenses/.
+ *
+ *	Author: Michael Camilleri
+ *
+ */
+
+package mt.edu.um.vjagg;
+
+/**
+ * Maintains the spatial extent (bounding box) of the last N points of a stream in O(1) amortised time per point.
+ *
+ * Each of the four bounds (min/max latitude and longitude) is kept with a monotonic deque: a point is only ever pushed
+ * and popped once, and the front of each deque is the bound over the current window. The extent is reported as the
+ * diagonal of the bounding box, which, unlike the end-to-end displacement, is not fooled by a path which loops back near
+ * its start. Nothing is allocated after construction.
+ *
+ * The points are taken from a SegmentBuffer: if it is projected, the bounds are kept in planar metres (and rebuilt from
+ * the buffer should the projection be re-anchored), otherwise in degrees (and the diagonal is measured with the kernel).
+ */
+class SlidingExtent
+{
+    /**
+     * \brief Monotonic (non-increasing) deque of values, tagged by their sequence number
+     */
+    private static final class MaxDeque
+    {
+        private final double[] mVal;    //!< Circular storage of values
+        private final long[]   mSeq;    //!< Circular storage of the sequence numbers
+        private int            mHead;   //!< Index of the front (oldest, and largest value)
+        private int            mLen;    //!< Number of elements
+
+        MaxDeque(int size)
+        {
+            mVal = new double[size];
+            mSeq = new long[size];
+            flush();
+        }
+
+        void Push(long seq, double value)
+        {
+            //Drop any (older) values which can no longer be the maximum
+            while (mLen > 0 && mVal[raw(mLen - 1)] <= value) { mLen--; }
+            mVal[raw(mLen)] = value;
+            mSeq[raw(mLen)] = seq;
+            mLen++;
+        }
+
+        void Evict(long oldest)
+        {
+            while (mLen > 0 && mSeq[mHead] < oldest) { mHead = raw(1); mLen--; }
+        }
+
+        double getMax() { return mVal[mHead]; }
+
+        void flush() { mHead = 0; mLen = 0; }
+
+        private int raw(int offset) { int i = mHead + offset; return (i >= mVal.length) ? i - mVal.length : i; }
+    }
+
+    //!< Member Variables
+    public final int     WINDOW;        //!< The number of (most recent) points over which the extent is computed
+    private final DistanceKernel mDistance;
+    private final MaxDeque mMaxLat;     //!< (Or Northing, if projected)
+    private final MaxDeque mMinLat;     //!< Holds the negated latitudes
+    private final MaxDeque mMaxLon;     //!< (Or Easting, if projected)
+    private final MaxDeque mMinLon;     //!< Holds the negated longitudes
+    private long           mCount;      //!< Number of points added since the last flush (i.e. the next sequence number)
+    private boolean        mProjected;  //!< Whether the bounds are in projected coordinates
+    private int            mEpoch;      //!< The projection epoch of the bounds
+
+    /**
+     * \brief Constructor
+     * @param window    The number of points over which to compute the extent
+     * @param kernel    The distance kernel (shared with the owner)
+     */
+    SlidingExtent(int window, DistanceKernel kernel)
+    {
+        WINDOW    = window;
+        mDistance = kernel;
+        mMaxLat   = new MaxDeque(window);
+        mMinLat   = new MaxDeque(window);
+        mMaxLon   = new MaxDeque(window);
+        mMinLon   = new MaxDeque(window);
+        flush();
+    }
+
+    /**
+     * \brief Add the most recent point of the buffer, dropping the one which falls out of the window
+     * @param window The buffer to which the point was just added (it must be passed every point)
+     */
+    void AddPoint(SegmentBuffer window)
+    {
+        LocalProjection projection = window.getProjection();
+        mProjected = (projection != null);
+        if (mProjected && mEpoch != projection.getEpoch() && mCount > 0)
+        {
+            //Re-anchored: rebuild the bounds from the points still in the window (including this one)
+            long num = Math.min(mCount + 1, WINDOW);
+            flush();
+            for (int i = (int)num - 1; i >= 0; i--) { push(window, i); }
+        }
+        else
+        {
+            push(window, 0);
+        }
+        if (mProjected) { mEpoch = projection.getEpoch(); }
+    }
+
+    /**
+     * \brief Push the point at the index of the buffer
+     */
+    private void push(SegmentBuffer window, int index)
+    {
+        double y = mProjected ? window.getNorth(index) : window.getLatitude(index);
+        double x = mProjected ? window.getEast(index)  : window.getLongitude(index);
+        long oldest = mCount - WINDOW + 1;  //Oldest sequence number still in the window (including this one)
+        mMaxLat.Evict(oldest); mMaxLat.Push(mCount,  y);
+        mMinLat.Evict(oldest); mMinLat.Push(mCount, -y);
+        mMaxLon.Evict(oldest); mMaxLon.Push(mCount,  x);
+        mMinLon.Evict(oldest); mMinLon.Push(mCount, -x);
+        mCount++;
+    }
+
+    /**
+     * \brief Indicates whether the window is full (i.e. at least WINDOW points since the last flush)
+     */
+    boolean getFilled()
+    {
+        return mCount >= WINDOW;
+    }
+
+    /**
+     * \brief The diagonal of the bounding box of the points in the window
+     * @return The extent in metres (0 if empty)
+     */
+    float getExtent()
+    {
+        if (mCount == 0) { return 0.0f; }
+        if (mProjected)  { return LocalProjection.Distance(-mMinLon.getMax(), -mMinLat.getMax(), mMaxLon.getMax(), mMaxLat.getMax()); }
+        return mDistance.Distance(-mMinLat.getMax(), -mMinLon.getMax(), mMaxLat.getMax(), mMaxLon.getMax());
+    }
+
+    /**
+     * \brief Clear the window
+     */
+    void flush()
+    {
+        mMaxLat.flush();
+        mMinLat.flush();
+        mMaxLon.flush();
+        mMinLon.flush();
+        mCount = 0;
+    }
+}
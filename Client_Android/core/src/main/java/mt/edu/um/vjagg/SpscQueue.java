@@ -0,0 +1,151 @@
+/**
+ *   Copyright (C) 2019  Michael Camilleri
+ *
+ * 	This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ *	License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * 	version.
+ *	This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ *	warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 	You should have received a copy of the GNU General Public License along with this program. If not, see
+ *	http://www.gnu.org/licenses/.
+ *
+ *	Author: Michael Camilleri
+ *
+ */
+
+package mt.edu.um.vjagg;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A bounded, lock-free, single-producer/single-consumer queue of events.
+ *
+ * Each event is a small fixed record (type, time-stamp, three doubles and an optional object reference), stored in
+ * parallel primitive columns of a power-of-2 ring, so that posting and draining fixes does not allocate. The producer
+ * only writes the tail and the consumer only the head; each keeps a cached copy of the other's index, and only re-reads
+ * it when the queue appears full (respectively empty). The tail is published with a volatile write (rather than lazySet)
+ * so that a consumer which is about to park cannot miss it (see PipelineThread).
+ *
+ * Exactly one thread may call Offer, and exactly one (other) thread may call Drain.
+ */
+class SpscQueue
+{
+    /**
+     * \brief Receives the drained events
+     */
+    interface Consumer
+    {
+        /**
+         * \brief Called for every event, in order
+         * @param type      The event type (defined by the user of the queue)
+         * @param time      The event time-stamp
+         * @param a         Event values
+         * @param b
+         * @param c
+         * @param obj       Event object (may be null)
+         * @param posted    System.nanoTime() at which the event was offered
+         */
+        void OnItem(int type, long time, double a, double b, double c, Object obj, long posted);
+    }
+
+    //!< Member Constants
+    private final int      mMask;       //!< Capacity - 1
+
+    //!< The Ring (columns)
+    private final int[]    mType;
+    private final long[]   mTime;
+    private final double[] mA;
+    private final double[] mB;
+    private final double[] mC;
+    private final Object[] mObj;
+    private final long[]   mPosted;
+
+    //!< Indices (monotonic: the slot is the index modulo the capacity)
+    private final AtomicLong mHead = new AtomicLong();  //!< Next event to read (written by the consumer)
+    private final AtomicLong mTail = new AtomicLong();  //!< Next slot to write (written by the producer)
+    private long mHeadCache;    //!< The producer's view of the head
+    private long mTailCache;    //!< The consumer's view of the tail
+
+    /**
+     * \brief Constructor
+     * @param capacity The capacity (rounded up to a power of 2)
+     */
+    SpscQueue(int capacity)
+    {
+        int size = Integer.highestOneBit(Math.max(capacity, 2) - 1) << 1;
+        mMask   = size - 1;
+        mType   = new int[size];
+        mTime   = new long[size];
+        mA      = new double[size];
+        mB      = new double[size];
+        mC      = new double[size];
+        mObj    = new Object[size];
+        mPosted = new long[size];
+    }
+
+    /**
+     * \brief Add an event (producer only)
+     * @return False if the queue is full (the event is not added)
+     */
+    boolean Offer(int type, long time, double a, double b, double c, Object obj)
+    {
+        long tail = mTail.get();
+        if (tail - mHeadCache > mMask)
+        {
+            mHeadCache = mHead.get();
+            if (tail - mHeadCache > mMask) { return false; }
+        }
+
+        int i = (int)tail & mMask;
+        mType[i]   = type;
+        mTime[i]   = time;
+        mA[i]      = a;
+        mB[i]      = b;
+        mC[i]      = c;
+        mObj[i]    = obj;
+        mPosted[i] = System.nanoTime();
+        mTail.set(tail + 1);
+        return true;
+    }
+
+    /**
+     * \brief Hand up to max events to the consumer (consumer only): the slots are only released after all are handled
+     * @return The number of events drained
+     */
+    int Drain(Consumer consumer, int max)
+    {
+        long head = mHead.get();
+        if (head >= mTailCache)
+        {
+            mTailCache = mTail.get();
+            if (head >= mTailCache) { return 0; }
+        }
+
+        long end = Math.min(mTailCache, head + max);
+        for (long h = head; h < end; h++)
+        {
+            int    i   = (int)h & mMask;
+            Object obj = mObj[i];
+            mObj[i] = null; //Do not retain it
+            consumer.OnItem(mType[i], mTime[i], mA[i], mB[i], mC[i], obj, mPosted[i]);
+        }
+        mHead.lazySet(end);
+        return (int)(end - head);
+    }
+
+    /**
+     * \brief Whether the queue is (currently) empty: exact only from the consumer
+     */
+    boolean IsEmpty()
+    {
+        return mHead.get() >= mTail.get();
+    }
+
+    /**
+     * \brief The capacity
+     */
+    int getCapacity()
+    {
+        return mMask + 1;
+    }
+}
@@ -0,0 +1,168 @@
+/**
+ *   Copyright (C) 2019  Michael Camilleri
+ *
+ * 	This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ *	License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * 	version.
+ *	This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ *	warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 	You should have received a copy of the GNU General Public License along with this program. If not, see
+ *	http://www.gnu.org/licenses/.
+ *
+ *	Author: Michael Camilleri
+ *
+ */
+
+package mt.edu.um.vjagg;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+
+/**
+ * \brief Learns per-device accelerometer thresholds from the outcome of the GPS wake-ups which they cause
+ * \detail Each pass of the accelerometer gate turns on the GPS: the wake-up was worth it if the detector went on to log a
+ *         journey (reached JOUR_LOGD), and was a false wake-up if the journey watchdog (GPS_STATE_TO) timed out first.
+ *         Both thresholds (QUICK_SAMPLE_THRESH and EXTRA_SAMPLE_THRESH) are scaled by a common factor, which is adapted
+ *         (in log-scale, so that the steps are relative) by:
+ *              log(scale) += STEP * (false - TARGET)
+ *         i.e. a false wake-up raises the thresholds and a journey lowers them, such that they settle where a fraction
+ *         TARGET of the wake-ups are false. Since a missed pass is simply checked again ACCEL_CHECK_RATE later, while a
+ *         false one costs a GPS session of at least GPS_STATE_TO, the target is low. The scale is bounded to within
+ *         [MIN_SCALE, MAX_SCALE] of the defaults, so that no run of outcomes can turn the gate off (or wide open).
+ *
+ *         The state (scale and outcome counts) is persisted in a (12-byte) binary file.
+ */
+final class ThresholdAdapter
+{
+    static final double TARGET    = 0.25;   //!< Fraction of false wake-ups aimed for
+    static final double STEP      = 0.1;    //!< Adaptation step (log-scale): at most ~8% per outcome
+    static final double MIN_SCALE = 0.5;    //!< Bounds on the scale (relative to the default thresholds)
+    static final double MAX_SCALE = 3.0;
+
+    private static final String TAG = "TA";
+
+    //======================= VARIABLES =======================//
+    private final LoggingParams mParams;    //!< The parameters being adapted (shared with the AccelLogger)
+    private final double        mQuick;     //!< The base (unscaled) quick threshold
+    private final double        mExtra;     //!< The base (unscaled) extra threshold
+    private double              mScale;     //!< The current scale
+    private int                 mWakes;     //!< Wake-ups with a known outcome
+    private int                 mFalse;     //!< Of which false
+
+    /**
+     * \brief Constructor
+     * @param params The parameters to adapt: the thresholds in it at construction are taken as the base values
+     */
+    ThresholdAdapter(LoggingParams params)
+    {
+        mParams = params;
+        mQuick  = params.mQuickSampleThresh;
+        mExtra  = params.mExtraSampleThresh;
+        mWakes  = 0;
+        mFalse  = 0;
+        setScale(1.0);
+    }
+
+    /**
+     * \brief Account for the outcome of a wake-up
+     * @param journey True if a journey was logged, false if the journey watchdog timed out without one
+     */
+    void OnOutcome(boolean journey)
+    {
+        mWakes++;
+        if (!journey) { mFalse++; }
+        setScale(mScale*Math.exp(STEP*((journey ? 0.0 : 1.0) - TARGET)));
+        DebugLog.Debug(TAG, "outcome " + journey + " scale " + mScale);
+    }
+
+    /**
+     * \brief Set the scale (clamped to the bounds) and apply it to the thresholds
+     */
+    void setScale(double scale)
+    {
+        mScale = Math.max(MIN_SCALE, Math.min(MAX_SCALE, scale));
+        mParams.mQuickSampleThresh = mQuick*mScale;
+        mParams.mExtraSampleThresh = mExtra*mScale;
+    }
+
+    double getScale()
+    {
+        return mScale;
+    }
+
+    int getWakes()
+    {
+        return mWakes;
+    }
+
+    int getFalse()
+    {
+        return mFalse;
+    }
+
+    /**
+     * \brief Restore the state (nothing is changed if the file does not exist, or cannot be read in full)
+     * @return Null on success, exception on failure
+     */
+    Exception Load(File file)
+    {
+        if (!file.exists()) { return null; }
+        try
+        {
+            DataInputStream strm = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+            try
+            {
+                double scale  = strm.readFloat();
+                int    wakes  = strm.readInt();
+                int    falses = strm.readInt();
+                mWakes = wakes;
+                mFalse = falses;
+                setScale(scale);
+            }
+            finally { strm.close(); }
+        }
+        catch (Exception e)
+        {
+            return e;
+        }
+        return null;
+    }
+
+    /**
+     * \brief Persist the state (overwriting the file)
+     * @return Null on success, exception on failure
+     */
+    Exception Store(File file)
+    {
+        return Store(file, mScale, mWakes, mFalse);
+    }
+
+    /**
+     * \brief Persist a copy of the state (e.g. taken on another thread), overwriting the file
+     * @return Null on success, exception on failure
+     */
+    static Exception Store(File file, double scale, int wakes, int falses)
+    {
+        try
+        {
+            DataOutputStream strm = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file, false)));
+            try
+            {
+                strm.writeFloat((float)scale);
+                strm.writeInt(wakes);
+                strm.writeInt(falses);
+            }
+            finally { strm.close(); }
+        }
+        catch (Exception e)
+        {
+            return e;
+        }
+        return null;
+    }
+}
@@ -0,0 +1,139 @@
+/**
+ *   Copyright (C) 2019  Michael Camilleri
+ *
+ * 	This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ *	License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * 	version.
+ *	This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ *	warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 	You should have received a copy of the GNU General Public License along with this program. If not, see
+ *	http://www.gnu.org/licenses/.
+ *
+ *	Author: Michael Camilleri
+ *
+ */
+
+package mt.edu.um.vjagg;
+
+/**
+ * Resamples the (irregular) fix stream onto a fixed time grid.
+ *
+ * The fused provider does not deliver fixes at exactly the requested interval: they can come in bursts, or be delayed,
+ * and with adaptive sampling (see SamplingController) the interval changes on purpose. Since the DownSampler groups by
+ * count, a window could then cover anything from a few seconds to a minute, which changes the meaning of the detector's
+ * window counts and velocity thresholds. This stage sits in front of it, and emits a point at every multiple of STEP
+ * (absolute time, so the grid phase is stable), linearly interpolated between the two fixes on either side of it.
+ *
+ * Fixes more than MAX_GAP apart are not interpolated across: the gap is reported (OnGap) and the grid restarts at the
+ * next fix, so that the segment spanning the gap keeps its true duration. Fixes which are not newer than the last one are
+ * ignored. The state is just the previous fix and the next grid time: nothing is allocated per fix.
+ */
+public class TimeGridResampler
+{
+    /**
+     * \brief Interface for Handling the Resampled Points
+     */
+    public interface GridHandler
+    {
+        /**
+         * \brief Called for every grid point, in time order
+         * @param lat   The interpolated Latitude
+         * @param lon   The interpolated Longitude
+         * @param time  The grid Time-Stamp (a multiple of STEP)
+         */
+        void OnGridPoint(double lat, double lon, long time);
+
+        /**
+         * \brief Called when two successive fixes are too far apart to interpolate between: no grid points are emitted in between
+         * @param from  Time-Stamp of the fix before the gap
+         * @param to    Time-Stamp of the fix after the gap
+         */
+        void OnGap(long from, long to);
+    }
+
+    //!< Member Constants
+    public final long STEP;     //!< The grid interval (ms)
+    public final long MAX_GAP;  //!< The longest interval between fixes which is interpolated across (ms)
+
+    //!< Member Variables
+    private final GridHandler mHandler;
+    private double  mLastLat;   //!< The previous fix
+    private double  mLastLon;
+    private long    mLastTime;
+    private long    mNextTick;  //!< The next grid time to emit
+    private boolean mValid;     //!< Whether there is a previous fix
+    private int     mPoints;    //!< Counters (for the lifetime of the resampler)
+    private int     mGaps;
+
+    /**
+     * \brief Constructor
+     * @param step      The grid interval (ms)
+     * @param max_gap   The longest interval between fixes which is interpolated across (ms)
+     * @param handler   Reference to the handler implementing GridHandler
+     */
+    public TimeGridResampler(long step, long max_gap, GridHandler handler)
+    {
+        STEP     = step;
+        MAX_GAP  = max_gap;
+        mHandler = handler;
+        mPoints  = 0;
+        mGaps    = 0;
+        flush();
+    }
+
+    /**
+     * \brief Add a fix, emitting all the grid points up to (and including) its time
+     * @param lat   The Latitude Value
+     * @param lon   The Longitude Value
+     * @param time  The Time-Stamp
+     */
+    public void AddPoint(double lat, double lon, long time)
+    {
+        if (mValid && time <= mLastTime) { return; } //Out of order/duplicate
+
+        //Start (or restart after a gap) at this fix
+        if (!mValid || time - mLastTime > MAX_GAP)
+        {
+            if (mValid) { mGaps++; mHandler.OnGap(mLastTime, time); }
+            mLastLat  = lat;
+            mLastLon  = lon;
+            mLastTime = time;
+            mNextTick = ((time + STEP - 1)/STEP)*STEP;
+            mValid    = true;
+        }
+
+        //Emit the grid points between the previous fix and this one
+        double scale = (time > mLastTime) ? 1.0/(time - mLastTime) : 0.0;
+        while (mNextTick <= time)
+        {
+            double frac = (mNextTick - mLastTime)*scale;
+            mPoints++;
+            mHandler.OnGridPoint(mLastLat + (lat - mLastLat)*frac, mLastLon + (lon - mLastLon)*frac, mNextTick);
+            mNextTick += STEP;
+        }
+
+        mLastLat  = lat;
+        mLastLon  = lon;
+        mLastTime = time;
+    }
+
+    /**
+     * \brief Number of grid points emitted so far
+     */
+    public int getPoints() { return mPoints; }
+
+    /**
+     * \brief Number of gaps (intervals longer than MAX_GAP) so far
+     */
+    public int getGaps() { return mGaps; }
+
+    /**
+     * \brief Clear the previous fix (e.g. on signal loss): the counters are retained
+     */
+    public void flush()
+    {
+        mValid    = false;
+        mLastTime = 0;
+        mNextTick = 0;
+    }
+}
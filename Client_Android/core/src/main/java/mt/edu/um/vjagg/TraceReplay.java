@@ -0,0 +1,404 @@
+/**
+ *   Copyright (C) 2019  Michael Camilleri
+ *
+ * 	This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ *	License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * 	version.
+ *	This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ *	warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 	You should have received a copy of the GNU General Public License along with this program. If not, see
+ *	http://www.gnu.org/licenses/.
+ *
+ *	Author: Michael Camilleri
+ *
+ */
+
+package mt.edu.um.vjagg;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * \brief Replays the raw (store-everything) logs through the detection core, as fast as they can be read
+ * \detail The VJAGG_GPS.*.txt files written by TrackingService.Write contain one event per line:
+ *              L [time] [latitude] [longitude]     - Location Fix
+ *              S [time] [satellites]               - Satellite Status (number used in fix)
+ *              A [time] [x] [y] [z]                - Accelerometer Sample
+ *         All other lines (e.g. battery/debug entries) are ignored. The events are passed on to the GPSLogger (and the
+ *         AccelLogger) exactly as the TrackingService would, but under a simulated clock which is advanced by the event
+ *         time-stamps: the service watchdogs (GPS_NOSAT_TO, GPS_STATE_TO and ACCEL_CHECK_RATE) are emulated as deadlines
+ *         on this clock, and fire (in order) before any event which comes after them. Each trace file is one service
+ *         session, and the detected journeys are passed on to the output handler: from the command line, they are appended
+ *         to the output file in the Journey.storeRoute format.
+ *
+ *         Adaptive sampling (SamplingController) is emulated by dropping the recorded fixes which come earlier than the
+ *         current interval would have requested them (the recorded rate being the base GPS_SAMPLE_RATE): this only applies
+ *         once the controller has relaxed the interval, so that at the base rate every recorded fix is replayed as is. The
+ *         priority cannot be emulated, since the accuracy of the recorded fixes is what it is.
+ *
+ *         Usage: TraceReplay [-gated] [output file] [trace file or directory]...
+ */
+class TraceReplay implements GPSLogger.JourneyHandler
+{
+    //===================== REPLAY MODES =====================//
+    static final int RM_STORE_ALL = 0;  //!< As the logs were recorded: GPS always on, with only the signal-loss watchdog (GPS_NOSAT_TO)
+    static final int RM_GATED     = 1;  //!< Full Service: the journey watchdog (GPS_STATE_TO) switches to accelerometer duty-cycling
+
+    //===================== STATE CONTROL =====================//
+    private static final int TS_OFF = 0;    //!< No session
+    private static final int TS_GPS = 1;    //!< GPS is on (location/satellite events are processed)
+    private static final int TS_ACC = 2;    //!< GPS is off and the accelerometer is duty-cycled (acceleration events are processed)
+
+    private static final long   WD_OFF = Long.MAX_VALUE;    //!< Deadline of an inactive (paused) watchdog
+    private static final long   SAMPLE_TOL = LoggingParams.GPS_SAMPLE_RATE/2;  //!< Tolerance on the (recorded) fix times when emulating the sampling interval
+    private static final String TAG    = "TR";
+
+    //======================= VARIABLES =======================//
+    private final int       mMode;          //!< The Replay Mode (one of RM_)
+    private final LoggingParams mParams;    //!< The parameters to run the detection with
+    private final GPSLogger.JourneyHandler mOutput; //!< The Journey output handler
+    private final float[]   mAccel;         //!< Re-usable accelerometer sample
+
+    private GPSLogger       mGPSLogger;     //!< The Journey Detector
+    private AccelLogger     mAccLogger;     //!< The Accelerometer Logger (only in RM_GATED)
+    private final SamplingController mSampling; //!< The (emulated) adaptive sampling
+    private long            mLastFix;       //!< Time of the last fix passed on to the detector
+    private int             mState;         //!< The (simulated) Service State
+    private long            mClock;         //!< The simulated time (never goes back)
+    private long            mGPSTimeout;    //!< Deadline of the GPS_NOSAT_TO watchdog
+    private long            mJourTimeout;   //!< Deadline of the GPS_STATE_TO watchdog
+    private long            mAccTimeout;    //!< Deadline of the ACCEL_CHECK_RATE watchdog
+    private boolean         mAccListen;     //!< Whether the accelerometer listener is (simulated to be) registered
+
+    //!< Statistics
+    private long            mEvents;        //!< Number of processed events
+    private long            mSkipped;       //!< Number of malformed lines
+    private long            mSimulated;     //!< Total simulated time (ms)
+    private long            mGPSTime;       //!< Total simulated time with the GPS on (ms)
+    private int             mJourneys;      //!< Number of journeys written
+    private long            mOutliers;      //!< Fixes rejected by the outlier filter (of loggers from previous sessions)
+    private long            mFixes;         //!< Number of fixes passed on to the detector (i.e. which would have been requested)
+
+    /**
+     * \brief Writes the journeys to file (in the Journey.storeRoute format)
+     */
+    static class FileOutput implements GPSLogger.JourneyHandler
+    {
+        private final File mFile;   //!< The file to append to
+
+        FileOutput(File file) { mFile = file; }
+
+        @Override
+        public void OnWindow() { /*Nothing to do here*/ }
+
+        @Override
+        public void OnJourneyEnd(Journey journey, int reason)
+        {
+            Exception e = journey.storeRoute(reason, mFile);
+            if (e != null) { DebugLog.Error(TAG, "store " + e.toString()); }
+        }
+    }
+
+    /**
+     * \brief Constructor (with the default parameters)
+     * @param output    The file to append the journeys to (in the Journey.storeRoute format)
+     * @param mode      The replay mode: one of RM_STORE_ALL or RM_GATED
+     */
+    TraceReplay(File output, int mode)
+    {
+        this(new LoggingParams(), mode, new FileOutput(output));
+    }
+
+    /**
+     * \brief Constructor
+     * @param params    The detection parameters
+     * @param mode      The replay mode: one of RM_STORE_ALL or RM_GATED
+     * @param output    The handler to pass the journeys on to
+     */
+    TraceReplay(LoggingParams params, int mode, GPSLogger.JourneyHandler output)
+    {
+        mMode   = mode;
+        mParams = params;
+        mOutput = output;
+        mAccel  = new float[3];
+        mState  = TS_OFF;
+        mSampling = new SamplingController(params);
+
+        mEvents = mSkipped = mSimulated = mGPSTime = 0;
+        mJourneys = 0;
+        mOutliers = 0;
+        mFixes    = 0;
+    }
+
+    //========================= Replay Control =========================//
+
+    /**
+     * \brief Replay a single trace file as one session
+     * @param trace The trace file
+     * @throws IOException On read errors
+     */
+    void Replay(File trace) throws IOException
+    {
+        BufferedReader reader = new BufferedReader(new FileReader(trace), 1 << 16);
+        try     { Replay(reader); }
+        finally { reader.close(); }
+    }
+
+    /**
+     * \brief Replay a stream of events as one session: the session starts at the first event and ends with the last
+     * @param reader The event source
+     * @throws IOException On read errors
+     */
+    void Replay(BufferedReader reader) throws IOException
+    {
+        String line;
+        while ((line = reader.readLine()) != null) { OnEvent(line); }
+        OnSessionEnd();
+    }
+
+    /**
+     * \brief Parse and dispatch a single line of the log
+     * @param line The log line
+     */
+    void OnEvent(String line)
+    {
+        if (line.length() < 3 || line.charAt(1) != ' ') { return; }
+        char type = line.charAt(0);
+        if (type != 'L' && type != 'S' && type != 'A') { return; }
+
+        try
+        {
+            String[] tok = line.trim().split(" ");
+            long     time = Long.parseLong(tok[1]);
+            switch (type)
+            {
+                case 'L': OnLocation(time, Double.parseDouble(tok[2]), Double.parseDouble(tok[3])); break;
+                case 'S': OnSatellites(time, Integer.parseInt(tok[2])); break;
+                case 'A': OnAcceleration(time, Float.parseFloat(tok[2]), Float.parseFloat(tok[3]), Float.parseFloat(tok[4])); break;
+            }
+            mEvents++;
+        }
+        catch (NumberFormatException | ArrayIndexOutOfBoundsException e)
+        {
+            DebugLog.Warn(TAG, "malformed " + line);
+            mSkipped++;
+        }
+    }
+
+    /**
+     * \brief Terminates the current session (as when the service is destroyed)
+     */
+    void OnSessionEnd()
+    {
+        if (mState == TS_GPS) { StopGPSLogger(true); }
+        if (mAccListen)       { mAccLogger.onStop(); mAccListen = false; }
+        mState = TS_OFF;
+    }
+
+    //========================= Event Handlers =========================//
+    //!< These may also be called directly (e.g. with pre-parsed events): the first event starts the session
+
+    void OnLocation(long time, double lat, double lon)
+    {
+        Advance(time);
+        if (mState != TS_GPS) { return; }   //GPS is off
+        if (mSampling.getInterval() > LoggingParams.GPS_SAMPLE_RATE && time - mLastFix < mSampling.getInterval() - SAMPLE_TOL) { return; } //Would not have been requested at the current (relaxed) rate
+        mLastFix = time;
+        mFixes++;
+
+        mGPSLogger.onNewLocation(lat, lon, time);
+        if (mGPSLogger.IsActive() && mJourTimeout != WD_OFF) { mJourTimeout = mClock + mParams.mStateTimeOut; }
+        mSampling.Update(mGPSLogger.getState(), mGPSLogger.getSpeed());
+    }
+
+    void OnSatellites(long time, int used_in_fix)
+    {
+        Advance(time);
+        if (mState != TS_GPS) { return; }
+
+        if (mGPSLogger.OnSatellites(used_in_fix) && mGPSTimeout != WD_OFF) { mGPSTimeout = mClock + mParams.mNoSatTimeOut; }
+    }
+
+    void OnAcceleration(long time, float x, float y, float z)
+    {
+        Advance(time);
+        if (!mAccListen) { return; }
+
+        //Rate-limited by the logger on the sample time (as with the sensor time-stamps in the service)
+        mAccel[0] = x; mAccel[1] = y; mAccel[2] = z;
+        switch (mAccLogger.onNewAcceleration(mAccel, mClock*1000000L))
+        {
+            case AccelLogger.RET_SLEEP:
+                mAccLogger.onStop();
+                mAccListen  = false;
+                mAccTimeout = mClock + mParams.mAccelCheckRate;
+                break;
+
+            case AccelLogger.RET_WAIT:
+                break;
+
+            case AccelLogger.RET_PASS:
+                mAccLogger.onStop();
+                mAccListen  = false;
+                mAccTimeout = WD_OFF;
+                StartGPSLogger();
+                break;
+        }
+    }
+
+    //========================= Simulated Clock =========================//
+
+    /**
+     * \brief Advance the simulated clock up to the specified time, firing any expired watchdogs (in order) on the way
+     * \detail The first event of a session starts the service. Time-stamps which go back (e.g. GPS vs system time) do not
+     *         move the clock.
+     * @param time The time of the next event
+     */
+    private void Advance(long time)
+    {
+        if (mState == TS_OFF) { OnSessionStart(time); return; }
+
+        long next;
+        while ((next = Math.min(mGPSTimeout, Math.min(mJourTimeout, mAccTimeout))) <= time)
+        {
+            Tick(next);
+            if (next == mGPSTimeout)
+            {
+                //Re-arm (as the Watchdog does): repeated losses without any intervening event do nothing unless bridging
+                //  (when they may expire the bridge), so otherwise skip straight to the first deadline after the event (this
+                //  matters for gaps of hours between sessions)
+                mGPSLogger.OnSignalLoss(next);
+                mGPSTimeout = next + mParams.mNoSatTimeOut * (mGPSLogger.IsBridging() ? 1 : 1 + (time - next)/mParams.mNoSatTimeOut);
+            }
+            else if (next == mJourTimeout)
+            {
+                StopGPSLogger(false);
+                mAccTimeout = mClock + mParams.mAccelCheckRate;
+            }
+            else
+            {
+                //Start the Accelerometer Logger (the watchdog is paused meanwhile)
+                mAccTimeout = WD_OFF;
+                mAccLogger.onStart();
+                mAccListen  = true;
+            }
+        }
+
+        if (time > mClock) { Tick(time); }
+    }
+
+    private void Tick(long time)
+    {
+        if (mState == TS_GPS) { mGPSTime += time - mClock; }
+        mSimulated += time - mClock;
+        mClock      = time;
+    }
+
+    private void OnSessionStart(long time)
+    {
+        mClock       = time;
+        mOutliers   += getSessionOutliers();
+        mGPSLogger   = new GPSLogger(mParams, this);
+        mAccLogger   = (mMode == RM_GATED) ? new AccelLogger(mParams) : null;
+        mAccListen   = false;
+        mGPSTimeout  = mJourTimeout = mAccTimeout = WD_OFF;
+        StartGPSLogger();
+    }
+
+    private void StartGPSLogger()
+    {
+        mGPSLogger.OnStart();
+        mSampling.Reset();
+        mLastFix    = Long.MIN_VALUE/2;
+        mState      = TS_GPS;
+        mGPSTimeout = mClock + mParams.mNoSatTimeOut;
+        if (mMode == RM_GATED) { mJourTimeout = mClock + mParams.mStateTimeOut; }
+    }
+
+    private void StopGPSLogger(boolean user)
+    {
+        mGPSLogger.onStop(user);
+        mState      = TS_ACC;
+        mGPSTimeout = mJourTimeout = WD_OFF;
+    }
+
+    //========================= Journey Output =========================//
+
+    @Override
+    public void OnWindow() { mOutput.OnWindow(); }
+
+    @Override
+    public void OnJourneyEnd(Journey journey, int reason)
+    {
+        if (journey.getNumPoints() < 1) { return; }
+
+        //The creation time is meaningless when replaying (and would not be unique): use the journey start instead
+        journey.setIdent(journey.getPt(0).mTimeSt);
+        mOutput.OnJourneyEnd(journey, reason);
+        mJourneys++;
+    }
+
+    //========================= Accessors =========================//
+
+    long getEvents()    { return mEvents; }
+    long getSkipped()   { return mSkipped; }
+    long getSimulated() { return mSimulated; }
+    long getGPSTime()   { return mGPSTime; }
+    int  getJourneys()  { return mJourneys; }
+    long getOutliers()  { return mOutliers + getSessionOutliers(); }
+    long getFixes()     { return mFixes; }
+
+    private long getSessionOutliers()
+    {
+        return (mGPSLogger != null && mGPSLogger.getOutliers() != null) ? mGPSLogger.getOutliers().getRejected() : 0;
+    }
+
+    //========================= Command Line =========================//
+
+    /**
+     * \brief Collect the trace files (directories are searched recursively for .txt files, in name order)
+     */
+    private static void CollectTraces(File file, ArrayList<File> traces)
+    {
+        if (file.isDirectory())
+        {
+            File[] children = file.listFiles();
+            if (children == null) { return; }
+            Arrays.sort(children);
+            for (File child : children) { CollectTraces(child, traces); }
+        }
+        else if (file.getName().endsWith(".txt"))
+        {
+            traces.add(file);
+        }
+    }
+
+    public static void main(String[] args) throws IOException
+    {
+        int arg  = 0;
+        int mode = RM_STORE_ALL;
+        if (args.length > 0 && args[0].equals("-gated")) { mode = RM_GATED; arg++; }
+        if (args.length - arg < 2)
+        {
+            System.err.println("Usage: TraceReplay [-gated] <output file> <trace file/directory>...");
+            System.exit(1);
+        }
+
+        File output = new File(args[arg++]);
+        ArrayList<File> traces = new ArrayList<>();
+        while (arg < args.length) { CollectTraces(new File(args[arg++]), traces); }
+
+        TraceReplay replay = new TraceReplay(output, mode);
+        long start = System.nanoTime();
+        for (File trace : traces) { replay.Replay(trace); }
+        long elapsed = (System.nanoTime() - start)/1000000;
+
+        System.out.println(traces.size() + " traces, " + replay.getEvents() + " events (" + replay.getSkipped() + " malformed), "
+                + replay.getJourneys() + " journeys, " + replay.getFixes() + " fixes (" + replay.getOutliers() + " outliers)");
+        System.out.println("Simulated " + replay.getSimulated()/1000 + "s in " + elapsed + "ms");
+    }
+}
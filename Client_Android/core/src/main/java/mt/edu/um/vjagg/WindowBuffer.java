@@ -0,0 +1,153 @@
+/**
+ *   Copyright (C) 2019  Michael Camilleri
+ *
+ * 	This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ *	License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * 	version.
+ *	This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ *	warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 	You should have received a copy of the GNU General Public License along with this program. If not, see
+ *	http://www.gnu.org/licenses/.
+ *
+ *	Author: Michael Camilleri
+ *
+ */
+
+package mt.edu.um.vjagg;
+
+/**
+ * Created by Michael Camilleri on 15/03/2016.
+ *
+ * [Converted to using primitives]
+ *
+ * The buffer is stored as parallel primitive columns (latitude, longitude, time-stamp) rather than an array of
+ * RoutePoint objects, so that adding points and flushing the buffer never allocates.
+ */
+public class WindowBuffer
+{
+    //!< Member Constants
+    public final int     BUFFER_SIZE;
+
+    //!< Member Variables
+    private final double[] mLatitude;   //!< Latitude column of the circular buffer
+    private final double[] mLongitude;  //!< Longitude column of the circular buffer
+    private final long[]   mTimeSt;     //!< Time-Stamp column of the circular buffer
+    private int            mWindNxt;    //!< Buffer Start index: this points to the next value to fill
+    private int            mWindFl;     //!< Indicates whether the buffer is filled (or rather how many are filled)
+
+    public WindowBuffer(int size)
+    {
+        BUFFER_SIZE = size;
+        mLatitude   = new double[size];
+        mLongitude  = new double[size];
+        mTimeSt     = new long[size];
+        flush();
+    }
+
+    /**
+     * \brief Add a Point
+     * \detail The function adds a new point to the buffer (circling as necessary): the values are copied in, so no reference is retained
+     * @param lat   The Latitude Value
+     * @param lon   The Longitude Value
+     * @param time  The Time-Stamp
+     */
+    public void AddPoint(double lat, double lon, long time)
+    {
+        //Add the point (and wrap)
+        mLatitude[mWindNxt]  = lat;
+        mLongitude[mWindNxt] = lon;
+        mTimeSt[mWindNxt]    = time;
+        mWindNxt--; if (mWindNxt < 0) { mWindNxt = BUFFER_SIZE-1; }
+        mWindFl = Math.min(mWindFl + 1, BUFFER_SIZE);
+    }
+
+    /**
+     * \brief Add a Route Point
+     * \detail Convenience overload: the values of the route-point are copied into the buffer
+     * @param rp
+     */
+    public void AddPoint(RoutePoint rp)
+    {
+        AddPoint(rp.mLatitude, rp.mLongitude, rp.mTimeSt);
+    }
+
+    /**
+     * \brief Add a point from another buffer
+     * \detail Copies the point at the (logical) index of the source buffer into this buffer
+     * @param source The buffer to copy from
+     * @param index  The index within the source buffer (0 is the most recent)
+     */
+    public void AddPoint(WindowBuffer source, int index)
+    {
+        int src = source.toRaw(index);
+        AddPoint(source.mLatitude[src], source.mLongitude[src], source.mTimeSt[src]);
+    }
+
+    /**
+     * Function automatically converts indices to the underlying structure
+     * @param index The index (0 is the most recent)
+     * @return      The Latitude at the index
+     */
+    public double getLatitude(int index)
+    {
+        return mLatitude[toRaw(index)];
+    }
+
+    /**
+     * Function automatically converts indices to the underlying structure
+     * @param index The index (0 is the most recent)
+     * @return      The Longitude at the index
+     */
+    public double getLongitude(int index)
+    {
+        return mLongitude[toRaw(index)];
+    }
+
+    /**
+     * Function automatically converts indices to the underlying structure
+     * @param index The index (0 is the most recent)
+     * @return      The Time-Stamp at the index
+     */
+    public long getTimeSt(int index)
+    {
+        return mTimeSt[toRaw(index)];
+    }
+
+    /**
+     * \brief Returns a copy of the point at the index
+     * \detail Note that this allocates a new RoutePoint, and should only be used when the point is to be stored
+     * @param index The index (0 is the most recent)
+     * @return      A new RoutePoint holding the values at the index
+     */
+    public RoutePoint getPoint(int index)
+    {
+        int raw = toRaw(index);
+        return new RoutePoint(mLatitude[raw], mLongitude[raw], mTimeSt[raw]);
+    }
+
+    /**
+     * Accessor for the mFilled Flag
+     */
+    public boolean getFilledFirst(int num)
+    {
+        return mWindFl >= num;
+    }
+
+    /**
+     * \brief Clear (flush) the buffer
+     * \detail Only the counters are reset: stale values remain in the columns but are never valid until overwritten
+     */
+    public void flush()
+    {
+        mWindNxt = BUFFER_SIZE - 1; //Start off at the maximum
+        mWindFl  = 0;
+    }
+
+    /**
+     * \brief Converts the logical index into the index into the underlying columns
+     */
+    protected int toRaw(int index)
+    {
+        return (mWindNxt + index + 1) % BUFFER_SIZE;
+    }
+}
@@ -0,0 +1,187 @@
+/**
+ *   Copyright (C) 2019  Michael Camilleri
+ *
+ * 	This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ *	License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * 	version.
+ *	This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ *	warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 	You should have received a copy of the GNU General Public License along with this program. If not, see
+ *	http://www.gnu.org/licenses/.
+ *
+ *	Author: Michael Camilleri
+ *
+ */
+
+
+package mt.edu.um.vjagg;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * \brief Checks the accelerometer gate (Welford statistic with early exit) against the original gate, which stored the
+ *        magnitudes (sqrt/pow per sample) and tested their total squared deviation from gravity at the end of each stage
+ */
+public class AccelLoggerTest
+{
+    private static final double G           = 9.81;
+    private static final double STAT_TOL    = 1.0e-4;   //!< Relative margin about the statistic (the gate squares the samples in float)
+    private static final double STAT_FLOOR  = 1.0e-3;   //!< Windows with a smaller statistic are not pinned (all relative error)
+    private static final double DRIFT       = 0.05;     //!< Maximum difference in pass rate from the original gate
+    private static final double DISAGREE    = 0.15;     //!< Maximum fraction of checks decided otherwise than by the original gate
+    private static final double STILL_PASS  = 0.02;     //!< Maximum pass rate on the still traces
+    private static final double OLD_QUICK   = 0.185;    //!< The original gate's thresholds (its extended check tested the fresh samples alone)
+    private static final double OLD_EXTRA   = 4.212;
+
+    /**
+     * \brief The original gate: the decision on the samples from start, and the number of samples it took
+     * @return {decision (RET_PASS/RET_SLEEP), samples used}, or null if the trace ends first
+     */
+    private static int[] OldGate(LoggingParams params, List<float[]> samples, int start)
+    {
+        int i = start;
+        int[]    sizes  = {params.mQuickSampleSize, params.mExtraSampleSize};
+        double[] thresh = {OLD_QUICK, OLD_EXTRA};
+        for (int stage = 0; stage < 2; stage++)
+        {
+            if (i + sizes[stage] > samples.size()) { return null; }
+            double total = 0;
+            for (int n = 0; n < sizes[stage]; n++, i++)
+            {
+                float[] a = samples.get(i);
+                total += Math.pow(Math.sqrt(Math.pow(a[0], 2) + Math.pow(a[1], 2) + Math.pow(a[2], 2)) - G, 2);
+            }
+            if (total < thresh[stage]) { return new int[]{AccelLogger.RET_SLEEP, i - start}; }
+        }
+        return new int[]{AccelLogger.RET_PASS, i - start};
+    }
+
+    /**
+     * \brief The gate under test, as driven by the service (onStart, samples until decided, onStop)
+     * @return {decision, samples used}, or null if the trace ends first
+     */
+    private static int[] NewGate(AccelLogger logger, List<float[]> samples, int start)
+    {
+        logger.onStart();
+        int ret = AccelLogger.RET_WAIT;
+        int i   = start;
+        while (ret == AccelLogger.RET_WAIT && i < samples.size()) { ret = logger.onNewAcceleration(samples.get(i++)); }
+        logger.onStop();
+        return (ret == AccelLogger.RET_WAIT) ? null : new int[]{ret, i - start};
+    }
+
+    /**
+     * \brief The quick stage tests exactly the first-order statistic sum((|a|^2 - g^2)^2)/(4g^2), with each |a|^2 - g^2
+     *        clipped to 2g*MAX_DEV: with the threshold just
+     *        above it the stage fails (at the end, since it is not allowed to settle), and just below it the stage passes
+     *        (the extended stage, with a zero threshold, then passes on its first sample)
+     */
+    @Test
+    public void quickStageTestsTheFirstOrderStatistic() throws Exception
+    {
+        LoggingParams params = new LoggingParams();
+        params.mAccelSettle       = 0.0;
+        params.mExtraSampleThresh = 0.0;
+        params.mAccelSpecLow      = 1.0;
+        AccelLogger logger = new AccelLogger(params);
+        int windows = 0;
+        for (File trace : TestData.Traces("accelerometer"))
+        {
+            List<float[]> samples = TestData.Samples(trace);
+            for (int s = 0; s + params.mQuickSampleSize + 1 <= samples.size(); s++)
+            {
+                double total = 0;
+                for (int i = s; i < s + params.mQuickSampleSize; i++)
+                {
+                    float[] a = samples.get(i);
+                    double  q = (double)a[0]*a[0] + (double)a[1]*a[1] + (double)a[2]*a[2];
+                    double  d = Math.max(-2*G*AccelLogger.MAX_DEV, Math.min(2*G*AccelLogger.MAX_DEV, q - G*G));
+                    total += d*d/(4*G*G);
+                }
+                if (total < STAT_FLOOR) { continue; }
+                windows++;
+
+                params.mQuickSampleThresh = total*(1 + STAT_TOL);
+                int[] above = NewGate(logger, samples, s);
+                assertEquals(trace + " at " + s, AccelLogger.RET_SLEEP, above[0]);
+                assertEquals(trace + " at " + s, params.mQuickSampleSize, above[1]);
+
+                params.mQuickSampleThresh = total*(1 - STAT_TOL);
+                assertEquals(trace + " at " + s, AccelLogger.RET_PASS, NewGate(logger, samples, s)[0]);
+            }
+        }
+        assertTrue(windows > 10000);
+    }
+
+    /**
+     * \brief At the defaults (without the spectral stage, which the original gate did not have), the pass rate on each
+     *        trace stays within DRIFT of the original gate's, at most DISAGREE of the checks are decided otherwise, the
+     *        still traces (table, pocket) hardly ever pass, and fewer samples are used overall
+     * \detail The decisions on individual checks do differ, by 11-14% on the vehicle traces (whose deviation hovers about
+     *         the threshold) and by 1% or less elsewhere: the extended stage tests the whole check rather than the fresh
+     *         samples alone, the samples are clipped, and a settled stage fails early. This is not down to the tuning:
+     *         scaling the original gate's thresholds by 10% either way flips at most 4% of its own decisions. The checks
+     *         are started at every sample, so that each trace is checked at all phases.
+     */
+    @Test
+    public void decisionsDriftWithinBounds() throws Exception
+    {
+        LoggingParams params = new LoggingParams();
+        params.mAccelSpecLow = 1.0;
+        AccelLogger   logger = new AccelLogger(params);
+        for (File trace : TestData.Traces("accelerometer"))
+        {
+            List<float[]> samples = TestData.Samples(trace);
+            int  checks   = 0;
+            int  old_pass = 0;
+            int  new_pass = 0;
+            int  differ   = 0;
+            long old_used = 0;
+            long new_used = 0;
+            for (int s = 0; s < samples.size(); s++)
+            {
+                int[] old_gate = OldGate(params, samples, s);
+                int[] new_gate = NewGate(logger, samples, s);
+                if (old_gate == null || new_gate == null) { break; }
+                checks++;
+                if (old_gate[0] == AccelLogger.RET_PASS) { old_pass++; }
+                if (new_gate[0] == AccelLogger.RET_PASS) { new_pass++; }
+                if (new_gate[0] != old_gate[0])          { differ++; }
+                old_used += old_gate[1];
+                new_used += new_gate[1];
+            }
+
+            String name = trace.getName();
+            assertTrue(name, checks > 50);
+            assertTrue(name + ": " + new_pass + " passes against " + old_pass + " in " + checks, Math.abs(new_pass - old_pass) <= DRIFT*checks);
+            assertTrue(name + ": " + differ + " differ in " + checks, differ <= DISAGREE*checks);
+            if (name.equals("table.txt") || name.equals("pocket.txt")) { assertTrue(name + ": " + new_pass, new_pass <= STILL_PASS*checks); }
+            assertTrue(name + ": " + new_used + " samples against " + old_used, new_used < old_used);
+        }
+    }
+
+    /**
+     * \brief A still device knocked once (a single 8m/s2 jolt early in the quick stage) passes the quick stage, but not the
+     *        extended one: the jolt counts towards the whole check, but clipped
+     */
+    @Test
+    public void singleJoltSleeps()
+    {
+        LoggingParams params = new LoggingParams();
+        params.mAccelSpecLow = 1.0;
+        AccelLogger logger = new AccelLogger(params);
+        logger.onStart();
+        int ret = AccelLogger.RET_WAIT;
+        for (int i = 0; ret == AccelLogger.RET_WAIT && i < params.mQuickSampleSize + params.mExtraSampleSize; i++)
+        {
+            ret = logger.onNewAcceleration(new float[]{0.0f, 0.1f, (float)(G + ((i == 1) ? 8.0 : 0.05))});
+        }
+        assertEquals(AccelLogger.RET_SLEEP, ret);
+    }
+}
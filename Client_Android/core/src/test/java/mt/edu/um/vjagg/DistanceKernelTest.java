@@ -0,0 +1,136 @@
+/**
+ *   Copyright (C) 2019  Michael Camilleri
+ *
+ * 	This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ *	License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * 	version.
+ *	This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ *	warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 	You should have received a copy of the GNU General Public License along with this program. If not, see
+ *	http://www.gnu.org/licenses/.
+ *
+ *	Author: Michael Camilleri
+ *
+ */
+
+
+package mt.edu.um.vjagg;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * \brief All the distance modes on the recorded traces (Figures/data/gps): the documented error bounds (against Vincenty)
+ *        on pairs of fixes up to MAX_SEP apart, and identical journeys from the detector in every mode
+ */
+public class DistanceKernelTest
+{
+    private static final double MAX_SEP   = 10000.0;    //!< Largest separation checked (m): the documented range
+    private static final double FLOAT_TOL = 1e-3;       //!< Absolute tolerance (m): the kernel returns a float
+
+    //!< Documented relative error bounds (see DistanceKernel)
+    private static final double EQUIRECT_TOL  = 3e-5;
+    private static final double HAVERSINE_TOL = 5e-3;
+    private static final double PROJECTED_TOL = 1e-3;   //!< Below the bound at the traces' latitude (~36 degrees: ~0.11%)
+
+    private static final int[] MODES = {DistanceKernel.DK_EQUIRECT, DistanceKernel.DK_HAVERSINE, DistanceKernel.DK_VINCENTY, DistanceKernel.DK_PROJECTED};
+
+    /**
+     * \brief The Vincenty reference itself: Flinders Peak to Buninyong (Vincenty, 1975), 54972.271m
+     */
+    @Test
+    public void vincentyReference()
+    {
+        double lat1 = -(37 + 57/60.0 + 3.72030/3600.0), lon1 = 144 + 25/60.0 + 29.52440/3600.0;
+        double lat2 = -(37 + 39/60.0 + 10.15610/3600.0), lon2 = 143 + 55/60.0 + 35.38390/3600.0;
+        assertEquals(54972.271, DistanceKernel.Vincenty(lat1, lon1, lat2, lon2), 1e-3);
+        assertEquals(0.0, DistanceKernel.Vincenty(lat1, lon1, lat1, lon1), 0.0);
+    }
+
+    /**
+     * \brief Each mode against Vincenty, on pairs of recorded fixes: successive ones, and (for longer separations) each fix
+     *        with those 2, 4, 8... fixes later, up to MAX_SEP
+     */
+    @Test
+    public void errorBoundsOnTraces() throws IOException
+    {
+        DistanceKernel[] kernels = new DistanceKernel[MODES.length];
+        for (int m = 0; m < MODES.length; m++) { kernels[m] = new DistanceKernel(MODES[m]); }
+        int pairs = 0;
+
+        for (File trace : TestData.Traces("gps"))
+        {
+            List<double[]> fixes = TestData.Fixes(trace);
+            for (int i = 0; i < fixes.size(); i++)
+            {
+                double[] a = fixes.get(i);
+                for (int step = 1; i + step < fixes.size(); step *= 2)
+                {
+                    double[] b = fixes.get(i + step);
+                    double ref = DistanceKernel.Vincenty(a[1], a[2], b[1], b[2]);
+                    if (ref > MAX_SEP) { break; }
+                    pairs++;
+
+                    for (int m = 0; m < MODES.length; m++)
+                    {
+                        double err = Math.abs(kernels[m].Distance(a[1], a[2], b[1], b[2]) - ref);
+                        assertTrue("Mode " + MODES[m] + ": " + err + "m over " + ref + "m in " + trace, err <= Tolerance(MODES[m])*ref + FLOAT_TOL);
+                    }
+                }
+            }
+        }
+
+        assertTrue(pairs > 10000);
+    }
+
+    private static double Tolerance(int mode)
+    {
+        switch (mode)
+        {
+            case DistanceKernel.DK_EQUIRECT:  return EQUIRECT_TOL;
+            case DistanceKernel.DK_HAVERSINE: return HAVERSINE_TOL;
+            case DistanceKernel.DK_PROJECTED: return PROJECTED_TOL;
+            default:                          return 0.0;
+        }
+    }
+
+    /**
+     * \brief Replaying the traces gives the same journeys (points, termination codes and start/end times) in every mode
+     */
+    @Test
+    public void sameJourneysInAllModes() throws IOException
+    {
+        List<String> reference = null;
+        for (int mode : MODES)
+        {
+            LoggingParams params = new LoggingParams();
+            params.Set("GPS_DIST_MODE", mode);
+
+            final List<String> journeys = new ArrayList<>();
+            TraceReplay replay = new TraceReplay(params, TraceReplay.RM_STORE_ALL, new GPSLogger.JourneyHandler()
+            {
+                @Override
+                public void OnWindow() { /*Nothing to do here*/ }
+
+                @Override
+                public void OnJourneyEnd(Journey journey, int reason)
+                {
+                    journeys.add(journey.getNumPoints() + "/" + reason + "/" + journey.getPt(0).mTimeSt + "-" + journey.getEnd().mTimeSt);
+                }
+            });
+            for (File trace : TestData.Traces("gps")) { replay.Replay(trace); }
+            replay.OnSessionEnd();
+
+            assertTrue(journeys.size() > 0);
+            if (reference == null) { reference = journeys; }
+            else                   { assertEquals("Mode " + mode, reference, journeys); }
+        }
+    }
+}
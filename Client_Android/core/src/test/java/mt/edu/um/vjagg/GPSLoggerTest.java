@@ -0,0 +1,259 @@
+/**
+ *   Copyright (C) 2019  Michael Camilleri
+ *
+ * 	This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ *	License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * 	version.
+ *	This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ *	warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 	You should have received a copy of the GNU General Public License along with this program. If not, see
+ *	http://www.gnu.org/licenses/.
+ *
+ *	Author: Michael Camilleri
+ *
+ */
+
+
+package mt.edu.um.vjagg;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * \brief Signal-loss bridging in the GPSLogger: on a synthetic journey (each way a bridge can close), and on the recorded
+ *        traces with a gap cut out of them (replayed through TraceReplay, as the service would run)
+ */
+public class GPSLoggerTest implements GPSLogger.JourneyHandler
+{
+    private static final long   START = 1477397834000L;  //!< Synthetic journey: start time
+    private static final double LAT   = 35.9;            //!< ...start position
+    private static final double LON   = 14.5;
+    private static final double SPEED = 10.0/111000.0/1000.0; //!< ...northwards at 10m/s (degrees of latitude per ms)
+    private static final long   BRIDGE = 120000;         //!< The bridging limit under test (bridging is off by default)
+
+    private GPSLogger           mLogger;
+    private List<Integer>       mReasons;   //!< The termination codes of the journeys ended so far
+    private long                mTime;      //!< The time of the last synthetic fix
+
+    @Before
+    public void setUp()
+    {
+        LoggingParams params = new LoggingParams();
+        params.Set("GPS_BRIDGE_MAX", BRIDGE);
+        mReasons = new ArrayList<>();
+        mLogger  = new GPSLogger(params, this);
+        mLogger.OnStart();
+
+        //Drive until the journey is logged
+        mTime = START;
+        while (mLogger.getState() != GPSLogger.JOUR_LOGD)
+        {
+            assertTrue("Journey not detected", mTime - START < 3600000);
+            Fix(mTime += LoggingParams.GPS_SAMPLE_RATE);
+        }
+    }
+
+    @Override
+    public void OnWindow() { /*Nothing to do here*/ }
+
+    @Override
+    public void OnJourneyEnd(Journey journey, int reason) { mReasons.add(reason); }
+
+    //!< A fix on the synthetic journey at the specified time
+    private void Fix(long time) { mLogger.onNewLocation(LAT + SPEED*(time - START), LON, time); }
+
+    /**
+     * \brief At the defaults (GPS_BRIDGE_MAX = 0), a signal loss ends the journey as before
+     */
+    @Test
+    public void offByDefault()
+    {
+        GPSLogger logger = new GPSLogger(this);
+        logger.OnStart();
+        long time = START;
+        while (logger.getState() != GPSLogger.JOUR_LOGD)
+        {
+            assertTrue("Journey not detected", time - START < 3600000);
+            time += LoggingParams.GPS_SAMPLE_RATE;
+            logger.onNewLocation(LAT + SPEED*(time - START), LON, time);
+        }
+        logger.OnSignalLoss(time + LoggingParams.GPS_NOSAT_TO);
+        assertFalse(logger.IsBridging());
+        assertEquals(1, mReasons.size());
+    }
+
+    @Test
+    public void joinsWhenTheFixesReturn()
+    {
+        mLogger.OnSignalLoss(mTime + LoggingParams.GPS_NOSAT_TO);
+        assertTrue(mLogger.IsBridging());
+
+        //The fixes return 45s after the last one, on the same course: the gap is filled in and the journey carries on
+        mTime += 45000;
+        for (int i = 0; i < 10; i++) { Fix(mTime += LoggingParams.GPS_SAMPLE_RATE); }
+        assertFalse(mLogger.IsBridging());
+        assertEquals(GPSLogger.JOUR_LOGD, mLogger.getState());
+        assertEquals(1, mLogger.getStats().mBridgeJoins);
+        assertTrue(mReasons.isEmpty());
+    }
+
+    @Test
+    public void rejectsAnImpossibleGap()
+    {
+        mLogger.OnSignalLoss(mTime + LoggingParams.GPS_NOSAT_TO);
+
+        //The fixes return 50km away after 45s: the first few are taken as outliers, until the filter accepts the new course
+        mTime += 45000;
+        for (int i = 0; i < 20 && mLogger.IsBridging(); i++) { mLogger.onNewLocation(LAT + 0.45 + SPEED*i*LoggingParams.GPS_SAMPLE_RATE, LON, mTime += LoggingParams.GPS_SAMPLE_RATE); }
+        assertFalse(mLogger.IsBridging());
+        assertEquals(1, mLogger.getStats().mBridgeRejects);
+        assertEquals(1, mReasons.size());
+    }
+
+    @Test
+    public void rejectsALongGap()
+    {
+        mLogger.OnSignalLoss(mTime + LoggingParams.GPS_NOSAT_TO);
+
+        mTime += BRIDGE + 1000;
+        Fix(mTime);
+        assertFalse(mLogger.IsBridging());
+        assertEquals(1, mLogger.getStats().mBridgeRejects);
+        assertEquals(1, mReasons.size());
+    }
+
+    /**
+     * \brief The fixes never return: the repeated signal-loss timeouts end the bridge once past the bridging limit
+     */
+    @Test
+    public void expiresWithoutFixes()
+    {
+        long loss = mTime + LoggingParams.GPS_NOSAT_TO;
+        for (long t = loss; t - mTime <= BRIDGE; t += LoggingParams.GPS_NOSAT_TO)
+        {
+            mLogger.OnSignalLoss(t);
+            mLogger.OnMotion(true);
+            assertTrue(mLogger.IsBridging());
+        }
+        mLogger.OnSignalLoss(mTime + BRIDGE + LoggingParams.GPS_NOSAT_TO);
+        assertFalse(mLogger.IsBridging());
+        assertEquals(1, mLogger.getStats().mBridgeRejects);
+        assertEquals(1, mReasons.size());
+        int reason = mReasons.get(0);
+        assertTrue(reason == Journey.TC_RE_SL || reason == Journey.TC_RE_SF);
+        assertTrue(mLogger.getState() < GPSLogger.JOUR_FIND);
+    }
+
+    /**
+     * \brief GPS_BRIDGE_STILL still checks in a row end the bridge: a moving one in between starts the count anew
+     */
+    @Test
+    public void endsOnStillEvidence()
+    {
+        mLogger.OnSignalLoss(mTime + LoggingParams.GPS_NOSAT_TO);
+        for (int i = 1; i < LoggingParams.GPS_BRIDGE_STILL; i++) { mLogger.OnMotion(false); }
+        mLogger.OnMotion(true);
+        for (int i = 1; i < LoggingParams.GPS_BRIDGE_STILL; i++) { mLogger.OnMotion(false); }
+        assertTrue(mLogger.IsBridging());
+
+        mLogger.OnMotion(false);
+        assertFalse(mLogger.IsBridging());
+        assertEquals(1, mReasons.size());
+    }
+
+    /**
+     * \brief A journey stopped by the service while bridging is reported as ending on the loss
+     */
+    @Test
+    public void stopWhileBridging()
+    {
+        mLogger.OnSignalLoss(mTime + LoggingParams.GPS_NOSAT_TO);
+        mLogger.onStop(false);
+        assertEquals(1, mReasons.size());
+        int reason = mReasons.get(0);
+        assertTrue(reason == Journey.TC_RE_SL || reason == Journey.TC_RE_SF);
+    }
+
+    //========================= Gap-Cut Replay =========================//
+
+    /**
+     * \brief Replay each (long enough) recorded journey with the middle gap ms cut out of it (all events)
+     * @return The number of journeys per trace
+     */
+    private static List<Integer> CutReplay(long gap, long bridge) throws IOException
+    {
+        LoggingParams params = new LoggingParams();
+        params.Set("GPS_BRIDGE_MAX", bridge);
+
+        ArrayList<Integer> counts = new ArrayList<>();
+        for (File trace : TestData.Traces("gps/gps_dynamics"))
+        {
+            List<double[]> fixes = TestData.Fixes(trace);
+            long first = (long)fixes.get(0)[0], last = (long)fixes.get(fixes.size() - 1)[0];
+            if (last - first < gap + 60000) { continue; }
+            long cut = first + (last - first)/2;
+
+            StringBuilder kept = new StringBuilder();
+            for (String line : TestData.Lines(trace))
+            {
+                String[] tok = line.split(" ");
+                if (tok.length > 1 && !tok[0].equals("P"))
+                {
+                    long time = Long.parseLong(tok[1]);
+                    if (time >= cut && time < cut + gap) { continue; }
+                }
+                kept.append(line).append('\n');
+            }
+
+            final int[] journeys = {0};
+            TraceReplay replay = new TraceReplay(params, TraceReplay.RM_STORE_ALL, new GPSLogger.JourneyHandler()
+            {
+                @Override
+                public void OnWindow() { /*Nothing to do here*/ }
+
+                @Override
+                public void OnJourneyEnd(Journey journey, int reason) { journeys[0]++; }
+            });
+            replay.Replay(new BufferedReader(new StringReader(kept.toString())));
+            counts.add(journeys[0]);
+        }
+        return counts;
+    }
+
+    private static void assertAll(int expected, List<Integer> counts)
+    {
+        assertFalse(counts.isEmpty());
+        for (int count : counts) { assertEquals(expected, count); }
+    }
+
+    /**
+     * \brief A 45s gap splits every journey in two without bridging, and none with it
+     */
+    @Test
+    public void bridgesCutTraces() throws IOException
+    {
+        assertAll(2, CutReplay(45000, 0));
+        assertAll(1, CutReplay(45000, BRIDGE));
+    }
+
+    /**
+     * \brief A gap longer than GPS_BRIDGE_MAX is not bridged
+     */
+    @Test
+    public void rejectsLongCutTraces() throws IOException
+    {
+        assertAll(2, CutReplay(60000, 60000));
+        assertAll(1, CutReplay(60000, 120000));
+    }
+}
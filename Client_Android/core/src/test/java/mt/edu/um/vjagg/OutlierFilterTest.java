@@ -0,0 +1,168 @@
+/**
+ *   Copyright (C) 2019  Michael Camilleri
+ *
+ * 	This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ *	License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * 	version.
+ *	This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ *	warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 	You should have received a copy of the GNU General Public License along with this program. If not, see
+ *	http://www.gnu.org/licenses/.
+ *
+ *	Author: Michael Camilleri
+ *
+ */
+
+
+package mt.edu.um.vjagg;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * \brief Checks the OutlierFilter (two-heap sliding median) against a brute-force reference, which keeps the window in
+ *        insertion order and sorts a copy of it for every median
+ */
+public class OutlierFilterTest
+{
+    private static final int INSERTS = 20000;   //!< Speeds inserted per window size
+
+    /**
+     * \brief The reference filter: the same decisions as OutlierFilter, with the median computed by sorting
+     */
+    private static final class Reference
+    {
+        final int            mWindow;
+        final float          mFactor;
+        final float          mMinVel;
+        final float          mMaxVel;
+        final DistanceKernel mDistance;
+        final ArrayDeque<Double> mSpeeds = new ArrayDeque<>();
+        double  mLat, mLon;
+        long    mTime;
+        boolean mValid  = false;
+        int     mConsec = 0;
+
+        Reference(int window, float factor, float min_vel, float max_vel, DistanceKernel kernel)
+        {
+            mWindow = window; mFactor = factor; mMinVel = min_vel; mMaxVel = max_vel; mDistance = kernel;
+        }
+
+        boolean Accept(double lat, double lon, long time)
+        {
+            if (!mValid) { Restart(lat, lon, time); return true; }
+
+            long  diff  = time - mTime;
+            float speed = (diff > 0) ? mDistance.Distance(mLat, mLon, lat, lon)/diff : Float.POSITIVE_INFINITY;
+            boolean reject = speed > mMaxVel || ((speed > mMinVel) && !mSpeeds.isEmpty() && (speed > mFactor*getMedian()));
+
+            if (reject && mConsec < OutlierFilter.MAX_CONSEC) { mConsec++; return false; }
+            if (reject) { Restart(lat, lon, time); return true; }
+
+            if (mSpeeds.size() == mWindow) { mSpeeds.removeFirst(); }
+            mSpeeds.addLast((double)speed);
+            mLat = lat; mLon = lon; mTime = time;
+            mConsec = 0;
+            return true;
+        }
+
+        double getMedian()
+        {
+            if (mSpeeds.isEmpty()) { return 0.0; }
+            double[] sorted = new double[mSpeeds.size()];
+            int i = 0;
+            for (double speed : mSpeeds) { sorted[i++] = speed; }
+            Arrays.sort(sorted);
+            int n = sorted.length;
+            return (n % 2 == 1) ? sorted[n/2] : 0.5*(sorted[n/2 - 1] + sorted[n/2]);
+        }
+
+        void flush()
+        {
+            mValid = false;
+            mConsec = 0;
+            mSpeeds.clear();
+        }
+
+        private void Restart(double lat, double lon, long time)
+        {
+            flush();
+            mLat = lat; mLon = lon; mTime = time;
+            mValid = true;
+        }
+    }
+
+    /**
+     * \brief Every speed is accepted (no rejection thresholds), so that the window goes through every insertion/removal
+     *        path: the steps are quantised (to get many ties, including zero speeds), and the window is flushed now and then
+     */
+    @Test
+    public void medianMatchesBruteForce()
+    {
+        DistanceKernel kernel = new DistanceKernel(DistanceKernel.DK_EQUIRECT);
+        Random         random = new Random(42);
+        for (int window : new int[]{1, 2, 3, 8, 9, 31})
+        {
+            OutlierFilter filter = new OutlierFilter(window, 1.0f, Float.MAX_VALUE, Float.POSITIVE_INFINITY, kernel);
+            Reference     ref    = new Reference(window, 1.0f, Float.MAX_VALUE, Float.POSITIVE_INFINITY, kernel);
+            double lat  = 35.9;
+            long   time = 0;
+            for (int i = 0; i < INSERTS; i++)
+            {
+                if (random.nextInt(3000) == 0) { filter.flush(); ref.flush(); }
+                lat  += 1.0e-5*random.nextInt(12);
+                time += 1000;
+                assertTrue(filter.Accept(lat, 14.5, time));
+                ref.Accept(lat, 14.5, time);
+                assertEquals("Window " + window + " insertion " + i, ref.getMedian(), filter.getMedian(), 0.0);
+            }
+            assertEquals(INSERTS, filter.getAccepted());
+        }
+    }
+
+    /**
+     * \brief With the default parameters on the recorded traces, every decision and every median is the same as the
+     *        reference's: runs of 1-6 displaced fixes are injected, so that both rejections and forced acceptances occur
+     */
+    @Test
+    public void decisionsMatchBruteForce() throws Exception
+    {
+        LoggingParams  params = new LoggingParams();
+        DistanceKernel kernel = new DistanceKernel(params.mDistMode);
+        Random         random = new Random(7);
+        long fixes = 0;
+        long forced = 0;
+        long rejected = 0;
+        for (File trace : TestData.Traces("gps"))
+        {
+            OutlierFilter filter = new OutlierFilter(params.mOutWindow, params.mOutFactor, params.mOutMinVel, params.mOutMaxVel, kernel);
+            Reference     ref    = new Reference(params.mOutWindow, params.mOutFactor, params.mOutMinVel, params.mOutMaxVel, kernel);
+            List<double[]> trace_fixes = TestData.Fixes(trace);
+            int    run    = 0;  //Remaining displaced fixes
+            double offset = 0.0;
+            for (int i = 0; i < trace_fixes.size(); i++)
+            {
+                double[] fix = trace_fixes.get(i);
+                if (run == 0 && random.nextInt(50) == 0) { run = 1 + random.nextInt(6); offset = 0.01*(1 + random.nextInt(3)); }
+                double   lat = fix[1] + ((run > 0) ? offset : 0.0);   //A jump of 1-3km
+                if (run > 0) { run--; }
+                assertEquals(trace + " fix " + i, ref.Accept(lat, fix[2], (long)fix[0]), filter.Accept(lat, fix[2], (long)fix[0]));
+                assertEquals(trace + " fix " + i, ref.getMedian(), filter.getMedian(), 0.0);
+            }
+            fixes    += trace_fixes.size();
+            forced   += filter.getForced();
+            rejected += filter.getRejected();
+        }
+        assertTrue(fixes > 5000);
+        assertTrue(rejected > 0);
+        assertTrue(forced > 0);
+    }
+}
@@ -0,0 +1,192 @@
+/**
+ *   Copyright (C) 2019  Michael Camilleri
+ *
+ * 	This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ *	License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * 	version.
+ *	This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ *	warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 	You should have received a copy of the GNU General Public License along with this program. If not, see
+ *	http://www.gnu.org/licenses/.
+ *
+ *	Author: Michael Camilleri
+ *
+ */
+
+
+package mt.edu.um.vjagg;
+
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * \brief Stress tests of the SpscQueue ring and the PipelineThread park/unpark handshake: ordering, no loss (with Put),
+ *        counted drops (with Post), and Stop draining everything posted before it
+ */
+public class PipelineThreadTest
+{
+    private static final int EVENTS = 2000000;  //!< Events per stress run
+    private static final int ROUNDS = 2000;     //!< Start/Stop cycles
+
+    /**
+     * \brief Checks that the events arrive in order, with all their fields (the time-stamp is the sequence number)
+     */
+    private static final class Checker implements PipelineThread.EventHandler
+    {
+        long mNext  = 0;        //!< The next sequence number expected
+        long mError = -1;       //!< The first sequence number which arrived out of order/corrupted (-1 if none)
+
+        @Override
+        public void OnEvent(int type, long time, double a, double b, double c, Object obj)
+        {
+            boolean ok = (time == mNext) && (type == (int)(time & 7)) && (a == time) && (b == -time) && (c == 0.5*time) && (obj == Obj(time));
+            if (!ok && mError < 0) { mError = time; }
+            mNext++;
+        }
+
+        //!< The object posted with event i (only on some, so that both paths are exercised)
+        Object Obj(long i) { return ((i & 1023) == 0) ? this : null; }
+    }
+
+    @Test
+    public void queueWrapsInOrder()
+    {
+        SpscQueue queue = new SpscQueue(5);
+        assertEquals(8, queue.getCapacity());
+
+        final long[] next = {0};
+        SpscQueue.Consumer consumer = new SpscQueue.Consumer()
+        {
+            @Override
+            public void OnItem(int type, long time, double a, double b, double c, Object obj, long posted)
+            {
+                assertEquals(next[0]++, time);
+                assertEquals((int)time, type);
+                assertEquals(time, a, 0.0);
+            }
+        };
+
+        long offered = 0;
+        for (int round = 0; round < 1000; round++)
+        {
+            int burst = round % 11;
+            for (int i = 0; i < burst; i++)
+            {
+                boolean ok = queue.Offer((int)offered, offered, offered, 0, 0, null);
+                assertEquals(offered - next[0] < 8, ok);    //Accepted exactly while below the capacity
+                if (ok) { offered++; }
+            }
+            queue.Drain(consumer, 1 + round % 5);
+        }
+        while (queue.Drain(consumer, 3) > 0) { /*Drain the rest*/ }
+        assertTrue(queue.IsEmpty());
+        assertEquals(offered, next[0]);
+    }
+
+    /**
+     * \brief A small queue under a fast producer: Put must wait rather than lose (or reorder) anything
+     */
+    @Test
+    public void putLosesNothing()
+    {
+        Checker checker = new Checker();
+        PipelineThread thread = new PipelineThread("test-put", 16, checker);
+        thread.Start();
+        for (long i = 0; i < EVENTS; i++)
+        {
+            assertTrue(thread.Put((int)(i & 7), i, i, -i, 0.5*i, checker.Obj(i)));
+        }
+        thread.Stop();
+
+        assertEquals(-1, checker.mError);
+        assertEquals(EVENTS, checker.mNext);
+        assertEquals(EVENTS, thread.getHandled());
+        assertEquals(0, thread.getDropped());
+    }
+
+    /**
+     * \brief A stalled worker: Post drops (and counts) once the queue is full, and everything accepted is still handled
+     */
+    @Test
+    public void postCountsDrops() throws InterruptedException
+    {
+        final CountDownLatch stall = new CountDownLatch(1);
+        final long[] handled = {0};
+        PipelineThread thread = new PipelineThread("test-post", 64, new PipelineThread.EventHandler()
+        {
+            @Override
+            public void OnEvent(int type, long time, double a, double b, double c, Object obj)
+            {
+                try { stall.await(); } catch (InterruptedException e) { Thread.currentThread().interrupt(); }
+                assertEquals(handled[0]++, time);
+            }
+        });
+        thread.Start();
+
+        long accepted = 0;
+        for (int i = 0; i < 1000; i++)
+        {
+            if (thread.Post(0, accepted, 0, 0, 0, null)) { accepted++; }
+        }
+        assertEquals(64, accepted); //The slots of the batch being handled are only released after it
+        stall.countDown();
+        thread.Stop();
+
+        assertEquals(accepted, handled[0]);
+        assertEquals(1000 - accepted, thread.getDropped());
+    }
+
+    /**
+     * \brief Repeated start/post/stop cycles, with pauses so that the worker parks (and is unparked) in between: Stop must
+     *        only return once everything posted before it has been handled
+     */
+    @Test
+    public void stopDrainsEverything() throws InterruptedException
+    {
+        for (int round = 0; round < ROUNDS; round++)
+        {
+            Checker checker = new Checker();
+            PipelineThread thread = new PipelineThread("test-stop", 32, checker);
+            thread.Start();
+
+            long posted = 0;
+            for (int burst = 0; burst < 4; burst++)
+            {
+                for (int i = 0; i < (round + burst) % 50; i++, posted++)
+                {
+                    assertTrue(thread.Put((int)(posted & 7), posted, posted, -posted, 0.5*posted, checker.Obj(posted)));
+                }
+                if ((round & 3) == 0) { Thread.sleep(0, 100000); }  //Let the worker park
+                else                  { Thread.yield(); }
+            }
+            thread.Stop();
+
+            assertEquals(-1, checker.mError);
+            assertEquals(posted, checker.mNext);
+            assertEquals(posted, thread.getHandled());
+        }
+    }
+
+    /**
+     * \brief Put on a worker which has exited fails (and counts the drop) rather than waiting forever
+     */
+    @Test
+    public void putFailsOnDeadWorker()
+    {
+        Checker checker = new Checker();
+        PipelineThread thread = new PipelineThread("test-dead", 2, checker);
+        thread.Start();
+        thread.Stop();
+
+        assertTrue(thread.Put(0, 0, 0, 0, 0, checker));     //Still room in the queue (nobody will handle it)
+        assertTrue(thread.Put(1, 1, 1, -1, 0.5, null));
+        assertFalse(thread.Put(2, 2, 2, -2, 1.0, null));
+        assertEquals(1, thread.getDropped());
+        assertEquals(0, checker.mNext);
+    }
+}
@@ -0,0 +1,133 @@
+/**
+ *   Copyright (C) 2019  Michael Camilleri
+ *
+ * 	This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ *	License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * 	version.
+ *	This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ *	warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 	You should have received a copy of the GNU General Public License along with this program. If not, see
+ *	http://www.gnu.org/licenses/.
+ *
+ *	Author: Michael Camilleri
+ *
+ */
+
+
+package mt.edu.um.vjagg;
+
+import org.junit.Assume;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * \brief Access to the recorded traces under Figures/data (shared by the tests)
+ * \detail The directory is looked up from the working directory upwards, so that the tests run both from the module (as
+ *         gradle does) and from the repository root. Tests which need it are skipped (rather than failed) if it is absent.
+ */
+final class TestData
+{
+    private TestData() { }
+
+    /**
+     * \brief The Figures/data sub-directory (or file), skipping the calling test if it cannot be found
+     * @param sub The path under Figures/data
+     */
+    static File Dir(String sub)
+    {
+        for (File dir = new File(System.getProperty("user.dir")).getAbsoluteFile(); dir != null; dir = dir.getParentFile())
+        {
+            File data = new File(dir, "Figures" + File.separator + "data" + File.separator + sub);
+            if (data.exists()) { return data; }
+        }
+        Assume.assumeTrue("Figures/data/" + sub + " not found", false);
+        return null;
+    }
+
+    /**
+     * \brief All the trace (.txt) files under the Figures/data sub-directory, in a fixed order
+     */
+    static List<File> Traces(String sub)
+    {
+        ArrayList<File> traces = new ArrayList<>();
+        Collect(Dir(sub), traces);
+        return traces;
+    }
+
+    private static void Collect(File file, List<File> traces)
+    {
+        if (file.isDirectory())
+        {
+            File[] children = file.listFiles();
+            Arrays.sort(children);
+            for (File child : children) { Collect(child, traces); }
+        }
+        else if (file.getName().endsWith(".txt"))
+        {
+            traces.add(file);
+        }
+    }
+
+    /**
+     * \brief The lines of a trace
+     */
+    static List<String> Lines(File trace) throws IOException
+    {
+        ArrayList<String> lines = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new FileReader(trace));
+        try
+        {
+            String line;
+            while ((line = reader.readLine()) != null) { lines.add(line); }
+        }
+        finally { reader.close(); }
+        return lines;
+    }
+
+    /**
+     * \brief The location fixes (L lines) of a trace
+     * @return The fixes as {time, latitude, longitude}
+     */
+    static List<double[]> Fixes(File trace) throws IOException
+    {
+        ArrayList<double[]> fixes = new ArrayList<>();
+        for (String line : Lines(trace))
+        {
+            String[] tok = line.split(" ");
+            if (tok.length == 4 && tok[0].equals("L"))
+            {
+                fixes.add(new double[]{Long.parseLong(tok[1]), Double.parseDouble(tok[2]), Double.parseDouble(tok[3])});
+            }
+        }
+        return fixes;
+    }
+
+    /**
+     * \brief The accelerometer samples (A lines, or bare "time x y z" lines) of a trace, thinned to at most one every
+     *        ACCEL_SAMPLE_RATE_T (as the sensor delivers them to the gate)
+     * @return The samples as {x, y, z}
+     */
+    static List<float[]> Samples(File trace) throws IOException
+    {
+        ArrayList<float[]> samples = new ArrayList<>();
+        long last = Long.MIN_VALUE;
+        for (String line : Lines(trace))
+        {
+            String[] tok = line.split(" ");
+            int      off = (tok.length == 5 && tok[0].equals("A")) ? 1 : (tok.length == 4 && !tok[0].equals("L")) ? 0 : -1;
+            if (off < 0) { continue; }
+
+            long time = Long.parseLong(tok[off]);
+            if (last != Long.MIN_VALUE && time - last < LoggingParams.ACCEL_SAMPLE_RATE_T) { continue; }
+            last = time;
+            samples.add(new float[]{Float.parseFloat(tok[off + 1]), Float.parseFloat(tok[off + 2]), Float.parseFloat(tok[off + 3])});
+        }
+        return samples;
+    }
+}
@@ -0,0 +1,179 @@
+/**
+ *   Copyright (C) 2019  Michael Camilleri
+ *
+ * 	This program is free software: you can redistribute it and/or modify it under the terms of the GNU General Public
+ *	License as published by the Free Software Foundation, either version 3 of the License, or (at your option) any later
+ * 	version.
+ *	This program is distributed in the hope that it will be useful, but WITHOUT ANY WARRANTY; without even the implied
+ *	warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE. See the GNU General Public License for more details.
+ * 	You should have received a copy of the GNU General Public License along with this program. If not, see
+ *	http://www.gnu.org/licenses/.
+ *
+ *	Author: Michael Camilleri
+ *
+ */
+
+
+package mt.edu.um.vjagg;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * \brief The ThresholdAdapter update rule (step sizes, bounds and equilibrium) and its persisted state
+ */
+public class ThresholdAdapterTest
+{
+    private static final double TOL = 1.0e-9;   //!< Tolerance on the (double) scale
+    private static final double F_TOL = 1.0e-6; //!< Tolerance on the scale after a round trip (it is stored as a float)
+
+    private LoggingParams    mParams;
+    private ThresholdAdapter mAdapter;
+    private File             mFile;     //!< Scratch state file
+
+    @Before
+    public void setUp() throws IOException
+    {
+        mParams  = new LoggingParams();
+        mAdapter = new ThresholdAdapter(mParams);
+        mFile    = File.createTempFile("threshold", ".dat");
+        if (!mFile.delete()) { throw new IOException("Cannot clear " + mFile); }
+    }
+
+    @After
+    public void tearDown()
+    {
+        if (mFile.exists() && !mFile.delete()) { mFile.deleteOnExit(); }
+    }
+
+    //!< The thresholds follow the scale
+    private void assertScale(double scale, double tol)
+    {
+        assertEquals(scale, mAdapter.getScale(), tol);
+        assertEquals(LoggingParams.QUICK_SAMPLE_THRESH*scale, mParams.mQuickSampleThresh, LoggingParams.QUICK_SAMPLE_THRESH*tol);
+        assertEquals(LoggingParams.EXTRA_SAMPLE_THRESH*scale, mParams.mExtraSampleThresh, LoggingParams.EXTRA_SAMPLE_THRESH*tol);
+    }
+
+    /**
+     * \brief A journey scales the thresholds by exp(-STEP*TARGET), a false wake-up by exp(STEP*(1 - TARGET))
+     */
+    @Test
+    public void stepsPerOutcome()
+    {
+        assertScale(1.0, TOL);
+        mAdapter.OnOutcome(true);
+        double scale = Math.exp(-ThresholdAdapter.STEP*ThresholdAdapter.TARGET);
+        assertScale(scale, TOL);
+        mAdapter.OnOutcome(false);
+        scale *= Math.exp(ThresholdAdapter.STEP*(1 - ThresholdAdapter.TARGET));
+        assertScale(scale, TOL);
+        assertEquals(2, mAdapter.getWakes());
+        assertEquals(1, mAdapter.getFalse());
+    }
+
+    /**
+     * \brief No run of outcomes takes the scale outside [MIN_SCALE, MAX_SCALE], and it moves off a bound at once
+     */
+    @Test
+    public void clampsToTheBounds()
+    {
+        for (int i = 0; i < 1000; i++) { mAdapter.OnOutcome(false); }
+        assertScale(ThresholdAdapter.MAX_SCALE, TOL);
+        mAdapter.OnOutcome(true);
+        assertScale(ThresholdAdapter.MAX_SCALE*Math.exp(-ThresholdAdapter.STEP*ThresholdAdapter.TARGET), TOL);
+
+        for (int i = 0; i < 1000; i++) { mAdapter.OnOutcome(true); }
+        assertScale(ThresholdAdapter.MIN_SCALE, TOL);
+        mAdapter.OnOutcome(false);
+        assertScale(ThresholdAdapter.MIN_SCALE*Math.exp(ThresholdAdapter.STEP*(1 - ThresholdAdapter.TARGET)), TOL);
+
+        mAdapter.setScale(100.0);
+        assertScale(ThresholdAdapter.MAX_SCALE, TOL);
+        mAdapter.setScale(0.0);
+        assertScale(ThresholdAdapter.MIN_SCALE, TOL);
+    }
+
+    /**
+     * \brief At a false fraction of TARGET (one in four) the scale holds wherever it is, and it drifts towards the upper
+     *        (lower) bound at any higher (lower) fraction
+     */
+    @Test
+    public void settlesAtTheTarget()
+    {
+        int period = (int)Math.round(1.0/ThresholdAdapter.TARGET);
+        for (double start : new double[]{ThresholdAdapter.MIN_SCALE*1.5, 1.0, ThresholdAdapter.MAX_SCALE/1.5})
+        {
+            mAdapter.setScale(start);
+            for (int i = 0; i < 100*period; i++) { mAdapter.OnOutcome(i % period != 0); }
+            assertScale(start, TOL);
+        }
+
+        mAdapter.setScale(1.0);
+        for (int i = 0; i < 100*period; i++) { mAdapter.OnOutcome(i % (period - 1) != 0); }
+        assertScale(ThresholdAdapter.MAX_SCALE, TOL);
+        for (int i = 0; i < 100*period; i++) { mAdapter.OnOutcome(i % (period + 1) != 0); }
+        assertScale(ThresholdAdapter.MIN_SCALE, TOL);
+    }
+
+    /**
+     * \brief The state survives a Store/Load into a fresh adapter (the scale to float precision)
+     */
+    @Test
+    public void roundTrip()
+    {
+        for (int i = 0; i < 7; i++) { mAdapter.OnOutcome(i % 3 == 0); }
+        assertNull(mAdapter.Store(mFile));
+
+        double scale = mAdapter.getScale();
+        mParams  = new LoggingParams();
+        mAdapter = new ThresholdAdapter(mParams);
+        assertNull(mAdapter.Load(mFile));
+        assertScale(scale, F_TOL);
+        assertEquals(7, mAdapter.getWakes());
+        assertEquals(4, mAdapter.getFalse());
+    }
+
+    /**
+     * \brief A missing file is not an error (the first run), and leaves the defaults
+     */
+    @Test
+    public void loadsMissingFile()
+    {
+        assertNull(mAdapter.Load(mFile));
+        assertScale(1.0, TOL);
+        assertEquals(0, mAdapter.getWakes());
+        assertEquals(0, mAdapter.getFalse());
+    }
+
+    /**
+     * \brief A truncated file (here, cut in the outcome counts) is reported, and leaves the state as it was
+     */
+    @Test
+    public void rejectsTruncatedFile() throws IOException
+    {
+        DataOutputStream strm = new DataOutputStream(new FileOutputStream(mFile));
+        try
+        {
+            strm.writeFloat(2.0f);
+            strm.writeInt(5);
+        }
+        finally { strm.close(); }
+
+        mAdapter.OnOutcome(false);
+        double scale = mAdapter.getScale();
+        assertNotNull(mAdapter.Load(mFile));
+        assertScale(scale, TOL);
+        assertEquals(1, mAdapter.getWakes());
+        assertEquals(1, mAdapter.getFalse());
+    }
+}